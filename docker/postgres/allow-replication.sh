@@ -0,0 +1,4 @@
+#!/bin/bash
+# Lets the postgres-replica service of compose.yaml stream the WAL of this database.
+set -e
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,62 @@
+package com.midas.app.mappers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.midas.app.models.Account;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * AccountDtoSerializationBenchmark measures the list endpoint response path: mapping every row to
+ * an AccountDto and serializing the list with the same Jackson configuration as Spring MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountDtoSerializationBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int size;
+
+  private List<Account> accounts;
+  private List<AccountDto> accountDtos;
+  private ObjectWriter writer;
+
+  @Setup
+  public void setup() {
+    accounts =
+        IntStream.range(0, size)
+            .mapToObj(
+                i ->
+                    Account.builder()
+                        .id(UUID.randomUUID())
+                        .firstName("Chandler" + i)
+                        .lastName("Bing" + i)
+                        .email("cbing" + i + "@friends.com")
+                        .providerId("cus_" + i)
+                        .providerType(ProviderTypeEnumDto.STRIPE)
+                        .createdAt(OffsetDateTime.now())
+                        .updatedAt(OffsetDateTime.now())
+                        .build())
+            .toList();
+    accountDtos = accounts.stream().map(Mapper::toAccountDto).toList();
+    writer = Jackson2ObjectMapperBuilder.json().build().writerFor(List.class);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return writer.writeValueAsBytes(accountDtos);
+  }
+
+  @Benchmark
+  public byte[] mapAndSerialize() throws JsonProcessingException {
+    return writer.writeValueAsBytes(accounts.stream().map(Mapper::toAccountDto).toList());
+  }
+}
@@ -0,0 +1,66 @@
+package com.midas.app.mappers;
+
+import com.midas.app.models.Account;
+import com.midas.app.providers.payment.CreateAccount;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import com.stripe.model.Customer;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.BeanUtils;
+
+/** MapperBenchmark measures the per-request conversions done on every create and update. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+  private Account account;
+  private Customer customer;
+
+  @Setup
+  public void setup() {
+    account =
+        Account.builder()
+            .id(UUID.randomUUID())
+            .firstName("Chandler")
+            .lastName("Bing")
+            .email("cbing@friends.com")
+            .providerId("cus_fhihaewhrYSDyg")
+            .providerType(ProviderTypeEnumDto.STRIPE)
+            .createdAt(OffsetDateTime.now())
+            .updatedAt(OffsetDateTime.now())
+            .build();
+
+    customer = new Customer();
+    customer.setId("cus_fhihaewhrYSDyg");
+    customer.setName("Chandler Bing");
+    customer.setEmail("cbing@friends.com");
+  }
+
+  @Benchmark
+  public AccountDto toAccountDto() {
+    return Mapper.toAccountDto(account);
+  }
+
+  @Benchmark
+  public Account toAccount() {
+    return Mapper.toAccount(customer, ProviderTypeEnumDto.STRIPE);
+  }
+
+  /** copyProperties is the reflective Account to CreateAccount copy, kept as a reference. */
+  @Benchmark
+  public CreateAccount copyProperties() {
+    CreateAccount accountDetails = new CreateAccount();
+    BeanUtils.copyProperties(account, accountDetails);
+    return accountDetails;
+  }
+
+  /** toCreateAccount is the generated Account to CreateAccount copy done by the activities. */
+  @Benchmark
+  public CreateAccount toCreateAccount() {
+    return AccountMapper.INSTANCE.toCreateAccount(account);
+  }
+}
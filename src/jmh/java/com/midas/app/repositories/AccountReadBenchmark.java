@@ -0,0 +1,113 @@
+package com.midas.app.repositories;
+
+import com.midas.app.mappers.Mapper;
+import com.midas.app.models.Account;
+import com.midas.generated.model.AccountDto;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AccountReadBenchmark compares reading a page of accounts as entities mapped to dtos with reading
+ * it through AccountViewRepository, on the Postgres of compose.yaml. The gc profiler reports the
+ * bytes allocated per page as gc.alloc.rate.norm. The database is taken from
+ * BENCHMARK_DATASOURCE_URL, and filled with ACCOUNTS accounts when it has fewer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountReadBenchmark {
+  private static final int ACCOUNTS = 10_000;
+
+  @Param({"20", "100"})
+  private int limit;
+
+  private ConfigurableApplicationContext context;
+  private AccountRepository accountRepository;
+  private AccountViewRepository accountViewRepository;
+  private TransactionTemplate readOnly;
+
+  /** BenchmarkApplication starts only the persistence part of the application. */
+  @SpringBootConfiguration
+  @ImportAutoConfiguration({
+    DataSourceAutoConfiguration.class,
+    JdbcTemplateAutoConfiguration.class,
+    HibernateJpaAutoConfiguration.class,
+    TransactionAutoConfiguration.class
+  })
+  @EntityScan(basePackageClasses = Account.class)
+  @EnableJpaRepositories(basePackageClasses = AccountRepository.class)
+  @Import(AccountViewRepository.class)
+  static class BenchmarkApplication {}
+
+  @Setup
+  public void setup() {
+    context =
+        new SpringApplicationBuilder(BenchmarkApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "spring.datasource.url=${BENCHMARK_DATASOURCE_URL:"
+                    + "jdbc:postgresql://localhost:5432/mydatabase}",
+                "spring.datasource.username=myuser",
+                "spring.datasource.password=secret",
+                "spring.jpa.hibernate.ddl-auto=update",
+                "spring.jpa.open-in-view=false",
+                "spring.jpa.properties.hibernate.jdbc.time_zone=UTC")
+            .run();
+    accountRepository = context.getBean(AccountRepository.class);
+    accountViewRepository = context.getBean(AccountViewRepository.class);
+    readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    readOnly.setReadOnly(true);
+
+    var jdbcTemplate = context.getBean(JdbcTemplate.class);
+    var count = jdbcTemplate.queryForObject("select count(*) from accounts", Long.class);
+    if (count < ACCOUNTS) {
+      jdbcTemplate.update(
+          "insert into accounts"
+              + " (id, first_name, last_name, email, provider_id, provider_type, version,"
+              + " created_at, updated_at)"
+              + " select gen_random_uuid(), 'First' || i, 'Last' || i,"
+              + " 'benchmark' || i || '@example.com', 'cus_' || i, 0, 0, now(), now()"
+              + " from generate_series(?, ?) i",
+          count + 1,
+          (long) ACCOUNTS);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  /** entities is the former read path: managed entities, then the MapStruct mapping. */
+  @Benchmark
+  public List<AccountDto> entities() {
+    return readOnly.execute(
+        status ->
+            accountRepository.findFirstPage(PageRequest.ofSize(limit)).stream()
+                .map(Mapper::toAccountDto)
+                .toList());
+  }
+
+  /** projection maps the result set straight into dtos. */
+  @Benchmark
+  public List<AccountDto> projection() {
+    return readOnly.execute(status -> accountViewRepository.findPage(null, limit));
+  }
+}
@@ -0,0 +1,24 @@
+package com.midas.app.services;
+
+import com.midas.app.workflows.CreateAccountWorkflow;
+import com.midas.app.workflows.WorkflowMemo;
+import io.temporal.client.WorkflowOptions;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** WorkflowOptionsBenchmark measures the options built before every workflow start. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WorkflowOptionsBenchmark {
+
+  private String workflowId = "cbing@friends.com";
+  private Map<String, Object> memo = Map.of(WorkflowMemo.LOCAL_SAVE_ACTIVITY, true);
+
+  @Benchmark
+  public WorkflowOptions buildWorkflowOptions() {
+    return AccountServiceImpl.buildWorkflowOptions(
+        CreateAccountWorkflow.QUEUE_NAME, workflowId, memo);
+  }
+}
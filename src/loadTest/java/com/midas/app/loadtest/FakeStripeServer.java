@@ -0,0 +1,187 @@
+package com.midas.app.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FakeStripeServer is a local stand-in for the Stripe customers API, with injected latency and
+ * failures. It implements create, update and list of customers, which is all StripePaymentProvider
+ * uses, and keeps customers in memory.
+ *
+ * <p>Latency follows a log-normal distribution given by its median and 99th percentile, which is
+ * close to the long-tailed latency of real remote APIs. A fraction of the requests fails with 500,
+ * and another fraction is rate limited with 429.
+ */
+public class FakeStripeServer implements AutoCloseable {
+  /** Z_99 is the standard normal quantile of the 99th percentile */
+  private static final double Z_99 = 2.326;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Map<String, Map<String, Object>> customers = new ConcurrentSkipListMap<>();
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final AtomicLong requests = new AtomicLong();
+
+  private final AtomicLong injectedFailures = new AtomicLong();
+
+  private final double latencyMu;
+
+  private final double latencySigma;
+
+  private final double errorRate;
+
+  private final double rateLimitRate;
+
+  private final HttpServer server;
+
+  /**
+   * FakeStripeServer starts a server on a free local port.
+   *
+   * @param medianLatency median of the injected latency
+   * @param p99Latency 99th percentile of the injected latency
+   * @param errorRate fraction of requests answered 500
+   * @param rateLimitRate fraction of requests answered 429
+   */
+  public FakeStripeServer(
+      Duration medianLatency, Duration p99Latency, double errorRate, double rateLimitRate)
+      throws IOException {
+    this.latencyMu = Math.log(Math.max(1, medianLatency.toMillis()));
+    this.latencySigma =
+        Math.max(0, Math.log(Math.max(1, p99Latency.toMillis())) - latencyMu) / Z_99;
+    this.errorRate = errorRate;
+    this.rateLimitRate = rateLimitRate;
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/v1/customers", this::handle);
+    server.start();
+  }
+
+  /** baseUrl is the url to configure as stripe.api-base */
+  public String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public long requests() {
+    return requests.get();
+  }
+
+  public long injectedFailures() {
+    return injectedFailures.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      requests.incrementAndGet();
+      sleepLatency();
+
+      var random = ThreadLocalRandom.current().nextDouble();
+      if (random < errorRate) {
+        injectedFailures.incrementAndGet();
+        respond(exchange, 500, error("api_error", "Injected failure"));
+        return;
+      }
+      if (random < errorRate + rateLimitRate) {
+        injectedFailures.incrementAndGet();
+        exchange.getResponseHeaders().add("Retry-After", "1");
+        respond(exchange, 429, error("rate_limit_error", "Injected rate limit"));
+        return;
+      }
+
+      var path = exchange.getRequestURI().getPath();
+      var method = exchange.getRequestMethod();
+      if (path.equals("/v1/customers") && method.equals("POST")) {
+        var customer = new ConcurrentHashMap<String, Object>(form(exchange));
+        customer.put("id", "cus_load" + sequence.incrementAndGet());
+        customer.put("object", "customer");
+        customer.put("created", System.currentTimeMillis() / 1000);
+        customer.put("livemode", false);
+        customers.put((String) customer.get("id"), customer);
+        respond(exchange, 200, customer);
+      } else if (path.equals("/v1/customers") && method.equals("GET")) {
+        respond(exchange, 200, list());
+      } else if (path.startsWith("/v1/customers/") && method.equals("POST")) {
+        var customer = customers.get(path.substring("/v1/customers/".length()));
+        if (customer == null) {
+          respond(exchange, 404, error("invalid_request_error", "No such customer"));
+          return;
+        }
+        customer.putAll(form(exchange));
+        respond(exchange, 200, customer);
+      } else {
+        respond(exchange, 404, error("invalid_request_error", "Unrecognized request URL"));
+      }
+    }
+  }
+
+  /** list returns every customer in a single page, enough for the load test traffic */
+  private Map<String, Object> list() {
+    return Map.of(
+        "object",
+        "list",
+        "url",
+        "/v1/customers",
+        "has_more",
+        false,
+        "data",
+        List.copyOf(customers.values()));
+  }
+
+  private void sleepLatency() {
+    long millis =
+        Math.round(
+            Math.exp(latencyMu + latencySigma * ThreadLocalRandom.current().nextGaussian()));
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Map<String, String> form(HttpExchange exchange) throws IOException {
+    var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    Map<String, String> form = new HashMap<>();
+    for (var pair : body.split("&")) {
+      int separator = pair.indexOf('=');
+      if (separator > 0) {
+        form.put(
+            URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+            URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return form;
+  }
+
+  private static Map<String, Object> error(String type, String message) {
+    return Map.of("error", Map.of("type", type, "message", message));
+  }
+
+  private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+    var bytes = objectMapper.writeValueAsBytes(body);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.getResponseHeaders().add("Request-Id", "req_" + requests.get());
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+}
@@ -0,0 +1,243 @@
+package com.midas.app.loadtest;
+
+import com.midas.app.MidasApplication;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * LoadTest benchmarks the account endpoints offline. It starts a FakeStripeServer, runs the app
+ * against it with Temporal's in-process test server (Postgres comes from Docker Compose as in
+ * development), drives a mix of create, update and list requests from concurrent clients for a
+ * fixed duration and prints the throughput and latency percentiles of every operation.
+ *
+ * <p>Options are given as key=value arguments, see DEFAULTS.
+ */
+public class LoadTest {
+  static final Map<String, String> DEFAULTS =
+      Map.of(
+          "duration", "60s",
+          "concurrency", "50",
+          "create-weight", "20",
+          "update-weight", "30",
+          "list-weight", "50",
+          "stripe-latency-median", "80ms",
+          "stripe-latency-p99", "400ms",
+          "stripe-error-rate", "0.01",
+          "stripe-rate-limit-rate", "0.0");
+
+  private static final Pattern ACCOUNT_ID = Pattern.compile("\"id\"\\s*:\\s*\"([0-9a-f-]{36})\"");
+
+  private final Map<String, String> options;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final List<String> accountIds = new CopyOnWriteArrayList<>();
+
+  private final HttpClient httpClient;
+
+  private final String baseUrl;
+
+  LoadTest(Map<String, String> options, String baseUrl, ExecutorService executor) {
+    this.options = options;
+    this.baseUrl = baseUrl;
+    this.httpClient =
+        HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>(DEFAULTS);
+    for (var arg : args) {
+      var pair = arg.split("=", 2);
+      if (pair.length != 2 || !DEFAULTS.containsKey(pair[0])) {
+        throw new IllegalArgumentException("Unknown option " + arg + ", options are " + DEFAULTS);
+      }
+      options.put(pair[0], pair[1]);
+    }
+
+    try (var stripe =
+            new FakeStripeServer(
+                DurationStyle.detectAndParse(options.get("stripe-latency-median")),
+                DurationStyle.detectAndParse(options.get("stripe-latency-p99")),
+                Double.parseDouble(options.get("stripe-error-rate")),
+                Double.parseDouble(options.get("stripe-rate-limit-rate")));
+        var app =
+            new SpringApplicationBuilder(MidasApplication.class)
+                .properties(
+                    "server.port=0",
+                    "stripe.api-key=sk_test_load",
+                    "stripe.api-base=" + stripe.baseUrl(),
+                    "spring.temporal.test-server.enabled=true",
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN",
+                    "logging.level.okhttp3.logging.HttpLoggingInterceptor=WARN")
+                .run();
+        var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var port = app.getEnvironment().getProperty("local.server.port");
+      var loadTest = new LoadTest(options, "http://localhost:" + port, executor);
+      var elapsed = loadTest.run(executor);
+      loadTest.report(elapsed, stripe);
+    }
+  }
+
+  /**
+   * run drives requests from concurrency clients until duration has elapsed.
+   *
+   * @param executor runs one virtual thread per client
+   * @return Duration actual duration of the run
+   */
+  Duration run(ExecutorService executor) throws InterruptedException {
+    int concurrency = Integer.parseInt(options.get("concurrency"));
+    long deadline =
+        System.nanoTime() + DurationStyle.detectAndParse(options.get("duration")).toNanos();
+    int createWeight = Integer.parseInt(options.get("create-weight"));
+    int updateWeight = Integer.parseInt(options.get("update-weight"));
+    int totalWeight = createWeight + updateWeight + Integer.parseInt(options.get("list-weight"));
+
+    long start = System.nanoTime();
+    List<Future<?>> clients = new ArrayList<>();
+    for (int i = 0; i < concurrency; i++) {
+      clients.add(
+          executor.submit(
+              () -> {
+                while (System.nanoTime() < deadline) {
+                  int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+                  if (pick < createWeight || accountIds.isEmpty()) {
+                    createAccount();
+                  } else if (pick < createWeight + updateWeight) {
+                    updateAccount();
+                  } else {
+                    listAccounts();
+                  }
+                }
+              }));
+    }
+    for (var client : clients) {
+      try {
+        client.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Load test client failed", e.getCause());
+      }
+    }
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  private void createAccount() {
+    var body =
+        """
+        {"firstName": "Load", "lastName": "Test", "email": "load-%s@midas.test",
+         "providerType": "stripe"}
+        """
+            .formatted(UUID.randomUUID());
+    var response =
+        send(
+            "create",
+            HttpRequest.newBuilder(URI.create(baseUrl + "/accounts"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+    if (response != null && response.statusCode() == 201) {
+      var matcher = ACCOUNT_ID.matcher(response.body());
+      if (matcher.find()) {
+        accountIds.add(matcher.group(1));
+      }
+    }
+  }
+
+  private void updateAccount() {
+    var accountId = accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+    var body = "{\"firstName\": \"Load" + ThreadLocalRandom.current().nextInt(1000) + "\"}";
+    send(
+        "update",
+        HttpRequest.newBuilder(URI.create(baseUrl + "/accounts/" + accountId))
+            .header("Content-Type", "application/json")
+            .method("PATCH", HttpRequest.BodyPublishers.ofString(body)));
+  }
+
+  private void listAccounts() {
+    send("list", HttpRequest.newBuilder(URI.create(baseUrl + "/accounts?limit=20")).GET());
+  }
+
+  /**
+   * send sends a request and records its latency, tagged with the operation and the outcome.
+   *
+   * @param operation name of the operation
+   * @param request request to send
+   * @return HttpResponse<String> null if no response was received
+   */
+  private HttpResponse<String> send(String operation, HttpRequest.Builder request) {
+    long start = System.nanoTime();
+    String outcome = "error";
+    try {
+      var response =
+          httpClient.send(
+              request.timeout(Duration.ofSeconds(60)).build(),
+              HttpResponse.BodyHandlers.ofString());
+      outcome = response.statusCode() < 400 ? "success" : "error";
+      return response;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      Timer.builder("loadtest.requests")
+          .tag("operation", operation)
+          .tag("outcome", outcome)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .register(meterRegistry)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * report prints throughput and latency percentiles per operation and outcome.
+   *
+   * @param elapsed actual duration of the run
+   * @param stripe fake Stripe server, for its request and failure counts
+   */
+  void report(Duration elapsed, FakeStripeServer stripe) {
+    System.out.printf(
+        "%n%-8s %-8s %10s %10s %10s %10s %10s%n",
+        "op", "outcome", "count", "req/s", "p50 ms", "p95 ms", "p99 ms");
+    for (var timer : meterRegistry.find("loadtest.requests").timers()) {
+      var snapshot = timer.takeSnapshot();
+      Map<Double, Double> percentiles = new HashMap<>();
+      for (ValueAtPercentile value : snapshot.percentileValues()) {
+        percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS));
+      }
+      System.out.printf(
+          "%-8s %-8s %10d %10.1f %10.1f %10.1f %10.1f%n",
+          timer.getId().getTag("operation"),
+          timer.getId().getTag("outcome"),
+          snapshot.count(),
+          snapshot.count() / (elapsed.toMillis() / 1000.0),
+          percentiles.get(0.5),
+          percentiles.get(0.95),
+          percentiles.get(0.99));
+    }
+    System.out.printf(
+        "%nstripe: %d requests, %d injected failures%n",
+        stripe.requests(), stripe.injectedFailures());
+  }
+}
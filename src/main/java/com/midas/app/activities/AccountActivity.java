@@ -1,8 +1,13 @@
 package com.midas.app.activities;
 
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountField;
+import com.midas.app.models.BatchItemResult;
 import io.temporal.activity.ActivityInterface;
 import io.temporal.activity.ActivityMethod;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
 
 @ActivityInterface
 public interface AccountActivity {
@@ -15,11 +20,29 @@ public interface AccountActivity {
   @ActivityMethod
   Account saveAccount(Account account);
 
+  /**
+   * saveAccounts saves new accounts in the data store with batched inserts.
+   *
+   * @param accounts are the accounts to be saved
+   * @return List<BatchItemResult> one result per account, indexed by position in accounts
+   */
+  @ActivityMethod
+  List<BatchItemResult> saveAccounts(List<Account> accounts);
+
+  /**
+   * checkAccountVersion checks that an account was not changed since it was read, so that a stale
+   * update is rejected before it reaches the payment provider.
+   *
+   * @param account is the account to be updated, with the version it was read at
+   */
+  @ActivityMethod
+  void checkAccountVersion(Account account);
+
   /**
    * createPaymentAccount creates a payment account in the system or provider.
    *
    * @param account is the account to be created
-   * @return Account
+   * @return Account with the time of the provider write in providerSyncedAt
    */
   @ActivityMethod
   Account createPaymentAccount(Account account);
@@ -28,7 +51,9 @@ public interface AccountActivity {
    * updatePaymentAccount updates a payment account in payment provider system.
    *
    * @param account is the account to be updated
+   * @param changedFields fields to send to the provider, null to send all of them
+   * @return OffsetDateTime time of the provider write, provider events older than it are stale
    */
   @ActivityMethod
-  void updatePaymentAccount(Account account);
+  OffsetDateTime updatePaymentAccount(Account account, Set<AccountField> changedFields);
 }
@@ -1,62 +1,385 @@
 package com.midas.app.activities;
 
+import com.midas.app.config.CacheConfiguration;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.exceptions.ResourceConflictException;
+import com.midas.app.mappers.AccountMapper;
+import com.midas.app.metrics.AccountMetrics;
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountEventType;
+import com.midas.app.models.AccountField;
+import com.midas.app.models.BatchItemResult;
 import com.midas.app.providers.payment.CreateAccount;
 import com.midas.app.providers.payment.PaymentProviderFactory;
 import com.midas.app.repositories.AccountRepository;
+import com.midas.app.services.AccountEventService;
 import com.midas.app.workflows.CreateAccountWorkflow;
+import com.midas.app.workflows.CreateAccountsBatchWorkflow;
 import com.midas.app.workflows.UpdateAccountWorkflow;
+import io.temporal.activity.Activity;
+import io.temporal.activity.ActivityInfo;
 import io.temporal.spring.boot.ActivityImpl;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.BeanUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
-@ActivityImpl(taskQueues = {CreateAccountWorkflow.QUEUE_NAME, UpdateAccountWorkflow.QUEUE_NAME})
+@ActivityImpl(
+    taskQueues = {
+      CreateAccountWorkflow.QUEUE_NAME,
+      UpdateAccountWorkflow.QUEUE_NAME,
+      CreateAccountsBatchWorkflow.QUEUE_NAME
+    })
 @RequiredArgsConstructor
 @Component
 public class AccountActivityImpl implements AccountActivity {
+  /** UNIQUE_EMAIL_INDEX is the unique index on lower(email), see schema.sql */
+  static final String UNIQUE_EMAIL_INDEX = "uk_accounts_email_lower";
 
   private final PaymentProviderFactory paymentProviderFactory;
   private final AccountRepository accountRepository;
+  private final CacheManager cacheManager;
+  private final AccountMetrics accountMetrics;
+  private final AccountEventService accountEventService;
+  private final TransactionTemplate transactionTemplate;
 
   /**
-   * saveAccount saves an account in the data store.
+   * saveAccount saves an account in the data store. The unique index on lower(email) is the source
+   * of truth for duplicates, a violation is reported as ResourceAlreadyExistsException while other
+   * integrity violations are thrown as they are. The event
+   * of the change is written to the account_events outbox in the same transaction.
    *
    * @param account is the account to be saved
    * @return Account
    */
   @Override
   public Account saveAccount(Account account) {
-    return accountRepository.save(account);
+    return accountMetrics.recordActivity("saveAccount", () -> save(account));
   }
 
   /**
-   * createPaymentAccount creates a payment account in the system or provider.
+   * saveAccounts saves new accounts in the data store. All accounts are inserted in one
+   * transaction using JDBC batching. If any of them violates the email uniqueness the batch is
+   * rolled back and the accounts are saved one by one to find out which ones are duplicates. Their
+   * events are written to the account_events outbox in the same transaction.
+   *
+   * @param accounts are the accounts to be saved
+   * @return List<BatchItemResult> one result per account, indexed by position in accounts
+   */
+  @Override
+  public List<BatchItemResult> saveAccounts(List<Account> accounts) {
+    return accountMetrics.recordActivity("saveAccounts", () -> saveAll(accounts));
+  }
+
+  /**
+   * checkAccountVersion checks that an account was not changed since it was read, so that a stale
+   * update is rejected before it reaches the payment provider. The stored version is read from the
+   * primary; the save still carries the version, which covers a change made after this check.
+   *
+   * @param account is the account to be updated, with the version it was read at
+   * @throws ResourceConflictException if the account was changed since it was read
+   */
+  @Override
+  public void checkAccountVersion(Account account) {
+    accountMetrics.recordActivity(
+        "checkAccountVersion",
+        () -> {
+          var version = accountRepository.findVersionById(account.getId());
+          if (version.isEmpty() || !version.get().equals(account.getVersion())) {
+            // the cached copy may be the stale one the update was based on
+            evictCachedAccount(account);
+            throw concurrentModification(account);
+          }
+          return null;
+        });
+  }
+
+  /**
+   * createPaymentAccount creates a payment account in the system or provider. The account returned
+   * carries the time of the provider write in providerSyncedAt.
    *
    * @param account is the account to be created
    * @return Account
    */
   @Override
   public Account createPaymentAccount(Account account) {
-    CreateAccount accountDetails = new CreateAccount();
-    // Copy properties values from Account object to CreateAccount object
-    BeanUtils.copyProperties(account, accountDetails);
-    return paymentProviderFactory.create(account.getProviderType()).createAccount(accountDetails);
+    return accountMetrics.recordActivity(
+        "createPaymentAccount",
+        () -> {
+          CreateAccount accountDetails = AccountMapper.INSTANCE.toCreateAccount(account);
+          var idempotencyKey = paymentIdempotencyKey(createScope(accountDetails));
+          var syncedAt = providerWriteTime();
+          var created =
+              paymentProviderFactory
+                  .create(account.getProviderType())
+                  .createAccount(accountDetails, idempotencyKey);
+          created.setProviderSyncedAt(syncedAt);
+          return created;
+        });
   }
 
   /**
    * updatePaymentAccount updates a payment account in payment provider system.
    *
    * @param account is the account to be updated
+   * @param changedFields fields to send to the provider, null to send all of them
+   * @return OffsetDateTime time of the provider write, see providerWriteTime
    */
   @Override
-  public void updatePaymentAccount(Account account) {
-    CreateAccount accountDetails = new CreateAccount();
-    // Copy properties values from Account object to CreateAccount object
-    BeanUtils.copyProperties(account, accountDetails);
-    accountDetails.setUserId(account.getId().toString());
-    paymentProviderFactory
-        .create(account.getProviderType())
-        .updateAccount(accountDetails, account.getProviderId());
+  public OffsetDateTime updatePaymentAccount(Account account, Set<AccountField> changedFields) {
+    return accountMetrics.recordActivity(
+        "updatePaymentAccount",
+        () -> {
+          CreateAccount accountDetails = providerChanges(account, changedFields);
+          var syncedAt = providerWriteTime();
+          paymentProviderFactory
+              .create(account.getProviderType())
+              .updateAccount(
+                  accountDetails,
+                  account.getProviderId(),
+                  paymentIdempotencyKey(updateScope(account, accountDetails)));
+          return syncedAt;
+        });
+  }
+
+  /**
+   * providerWriteTime returns the time of a provider write about to be made, to be stored in
+   * providerSyncedAt. It is taken before the call and truncated to seconds, the precision of
+   * provider events, so that every event of a change made after the write, including one in the
+   * same second, is applied rather than taken for stale.
+   *
+   * @return OffsetDateTime
+   */
+  static OffsetDateTime providerWriteTime() {
+    return OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS);
+  }
+
+  /**
+   * providerChanges maps an account to the details sent to its payment provider, leaving out the
+   * fields that did not change. The provider keeps a single name, so a change to either part of
+   * the name sends both.
+   *
+   * @param account is the account to be updated
+   * @param changedFields fields to send to the provider, null to send all of them
+   * @return CreateAccount
+   */
+  static CreateAccount providerChanges(Account account, Set<AccountField> changedFields) {
+    CreateAccount details = AccountMapper.INSTANCE.toCreateAccount(account);
+    if (changedFields == null) {
+      return details;
+    }
+    if (!changedFields.contains(AccountField.FIRST_NAME)
+        && !changedFields.contains(AccountField.LAST_NAME)) {
+      details.setFirstName(null);
+      details.setLastName(null);
+    }
+    if (!changedFields.contains(AccountField.EMAIL)) {
+      details.setEmail(null);
+    }
+    return details;
+  }
+
+  /**
+   * paymentIdempotencyKey derives the payment provider idempotency key of a call made by the
+   * running activity, see paymentIdempotencyKey(ActivityInfo, String...).
+   *
+   * @param scope identifies the call among the provider calls of the workflow
+   * @return String
+   */
+  static String paymentIdempotencyKey(String... scope) {
+    return paymentIdempotencyKey(Activity.getExecutionContext().getInfo(), scope);
+  }
+
+  /**
+   * paymentIdempotencyKey derives the payment provider idempotency key of a call from the workflow
+   * id and activity type of the activity making it, and from the scope of the call. The run id and
+   * activity id are left out on purpose: a workflow retried by its retry policy starts a new run,
+   * with new activity ids, and must replay the calls of the failed run rather than create duplicate
+   * customers. The scope tells apart the calls sharing a workflow id, such as the accounts of a
+   * batch or the successive updates of an account. The key is hashed to a UUID to fit provider
+   * length limits, since the workflow id can be an email.
+   *
+   * @param info info of the running activity
+   * @param scope identifies the call among the provider calls of the workflow
+   * @return String
+   */
+  static String paymentIdempotencyKey(ActivityInfo info, String... scope) {
+    var key = String.join("/", info.getWorkflowId(), info.getActivityType());
+    if (scope.length > 0) {
+      key += "/" + String.join("/", scope);
+    }
+    return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  /**
+   * createScope identifies the creation of a payment account by the details sent, so that a retry
+   * replays it and a request with other details for the same email is a new call.
+   *
+   * @param details details sent to the provider
+   * @return String[]
+   */
+  static String[] createScope(CreateAccount details) {
+    return new String[] {
+      details.getEmail().toLowerCase(Locale.ROOT),
+      String.valueOf(details.getFirstName()),
+      String.valueOf(details.getLastName())
+    };
+  }
+
+  /**
+   * updateScope identifies an update of a payment account by the version of the account it is
+   * based on, which changes with every saved update, and by the details sent. An update whose save
+   * failed leaves the version unchanged, the next update of that version sends other details and
+   * must not reuse the key, which the provider would reject.
+   *
+   * @param account account to be updated
+   * @param details details sent to the provider
+   * @return String[]
+   */
+  static String[] updateScope(Account account, CreateAccount details) {
+    return new String[] {
+      account.getProviderId(),
+      String.valueOf(account.getVersion()),
+      String.valueOf(details.getEmail()),
+      String.valueOf(details.getFirstName()),
+      String.valueOf(details.getLastName())
+    };
+  }
+
+  private Account save(Account account) {
+    // an account without version has never been saved
+    var type = account.getVersion() == null ? AccountEventType.CREATED : AccountEventType.UPDATED;
+    try {
+      var saved =
+          transactionTemplate.execute(
+              status -> {
+                var result = accountRepository.saveAndFlush(account);
+                accountEventService.record(type, List.of(result));
+                return result;
+              });
+      refreshCaches(saved);
+      return saved;
+    } catch (DataIntegrityViolationException e) {
+      if (!violatesUniqueEmail(e)) {
+        throw e;
+      }
+      throw new ResourceAlreadyExistsException(
+          String.format("Account with email %s is already present", account.getEmail()));
+    } catch (OptimisticLockingFailureException e) {
+      // the cached copy may be the stale one the update was based on
+      evictCachedAccount(account);
+      throw concurrentModification(account);
+    }
+  }
+
+  /**
+   * violatesUniqueEmail tells whether an integrity violation is a duplicate email. The name of the
+   * violated constraint is extracted by Hibernate, the database message is checked for drivers it
+   * cannot extract it from.
+   *
+   * @param e integrity violation of a save
+   * @return boolean
+   */
+  static boolean violatesUniqueEmail(DataIntegrityViolationException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ConstraintViolationException violation
+          && violation.getConstraintName() != null) {
+        return UNIQUE_EMAIL_INDEX.equalsIgnoreCase(violation.getConstraintName());
+      }
+      if (cause.getMessage() != null && cause.getMessage().contains(UNIQUE_EMAIL_INDEX)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ResourceConflictException concurrentModification(Account account) {
+    return new ResourceConflictException(
+        String.format("Account %s was modified concurrently", account.getId()));
+  }
+
+  private List<BatchItemResult> saveAll(List<Account> accounts) {
+    List<BatchItemResult> results = new ArrayList<>(accounts.size());
+    try {
+      var saved =
+          transactionTemplate.execute(
+              status -> {
+                var result = accountRepository.saveAllAndFlush(accounts);
+                accountEventService.record(AccountEventType.CREATED, result);
+                return result;
+              });
+      for (int i = 0; i < saved.size(); i++) {
+        refreshCaches(saved.get(i));
+        results.add(BatchItemResult.succeeded(i, saved.get(i)));
+      }
+      return results;
+    } catch (DataIntegrityViolationException e) {
+      if (!violatesUniqueEmail(e)) {
+        throw e;
+      }
+      // at least one duplicate, fall back to saving the accounts one by one
+      results.clear();
+    }
+
+    for (int i = 0; i < accounts.size(); i++) {
+      var account = accounts.get(i);
+      // the rolled back batch has already assigned ids and versions, clear them so that the
+      // account is inserted rather than merged
+      account.setId(null);
+      account.setVersion(null);
+      try {
+        results.add(BatchItemResult.succeeded(i, save(account)));
+      } catch (ResourceAlreadyExistsException e) {
+        results.add(BatchItemResult.failed(i, e.getApiError().getMessage()));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * refreshCaches stores a freshly saved account in the account caches. If the email changed, the
+   * entry of the previous email is evicted so that it is reported as available again.
+   *
+   * @param saved account as saved in the data store
+   */
+  private void refreshCaches(Account saved) {
+    Cache byId = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID);
+    Cache byEmail = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_EMAIL);
+    if (byId == null || byEmail == null) {
+      return;
+    }
+
+    var previous = byId.get(saved.getId(), Account.class);
+    if (previous != null && !previous.getEmail().equalsIgnoreCase(saved.getEmail())) {
+      byEmail.evict(previous.getEmail().toLowerCase(Locale.ROOT));
+    }
+    byId.put(saved.getId(), saved);
+    byEmail.put(saved.getEmail().toLowerCase(Locale.ROOT), saved);
+  }
+
+  /**
+   * evictCachedAccount removes an account from the id cache so that the next read loads the
+   * stored version.
+   *
+   * @param account account to evict
+   */
+  private void evictCachedAccount(Account account) {
+    Cache byId = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID);
+    if (byId != null && account.getId() != null) {
+      byId.evict(account.getId());
+    }
   }
 }
@@ -0,0 +1,27 @@
+package com.midas.app.activities;
+
+import com.midas.app.models.ReconciliationChunk;
+import com.midas.app.models.ReconciliationState;
+import io.temporal.activity.ActivityInterface;
+import io.temporal.activity.ActivityMethod;
+
+@ActivityInterface
+public interface ReconciliationActivity {
+  /**
+   * reconcileCustomers compares the next chunk of payment provider customers with their accounts.
+   *
+   * @param state checkpoint of the reconciliation
+   * @return ReconciliationChunk
+   */
+  @ActivityMethod
+  ReconciliationChunk reconcileCustomers(ReconciliationState state);
+
+  /**
+   * reconcileAccounts looks for accounts without a customer in the next chunk of accounts.
+   *
+   * @param state checkpoint of the reconciliation
+   * @return ReconciliationChunk
+   */
+  @ActivityMethod
+  ReconciliationChunk reconcileAccounts(ReconciliationState state);
+}
@@ -0,0 +1,213 @@
+package com.midas.app.activities;
+
+import com.midas.app.mappers.AccountMapper;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountCursor;
+import com.midas.app.models.ReconciliationChunk;
+import com.midas.app.models.ReconciliationReport;
+import com.midas.app.models.ReconciliationState;
+import com.midas.app.providers.payment.PaymentProviderFactory;
+import com.midas.app.repositories.AccountRepository;
+import com.midas.app.services.AccountSyncService;
+import com.midas.app.workflows.ReconcileAccountsWorkflow;
+import io.temporal.activity.Activity;
+import io.temporal.spring.boot.ActivityImpl;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+@ActivityImpl(taskQueues = ReconcileAccountsWorkflow.QUEUE_NAME)
+@RequiredArgsConstructor
+@Component
+public class ReconciliationActivityImpl implements ReconciliationActivity {
+  private final Logger logger = LoggerFactory.getLogger(ReconciliationActivityImpl.class);
+
+  private final PaymentProviderFactory paymentProviderFactory;
+  private final AccountRepository accountRepository;
+  private final AccountMetrics accountMetrics;
+  private final AccountSyncService accountSyncService;
+
+  /**
+   * reconcileCustomers reads the next chunk of customers through the provider auto-pagination and
+   * loads their accounts with a single query on provider_id. Mismatches are reported and, when
+   * repairing, the newer side wins. Every change of an account is written to the provider first,
+   * so an account with providerSyncedAt already reflects its latest write, and a customer that
+   * differs from it changed afterwards, typically through a lost webhook event. Such customers are
+   * applied to their accounts through the AccountSyncService, as of the time of the read, so that a
+   * change that reached an account meanwhile is kept. Only accounts that never recorded a provider
+   * change are written back to the provider, at no more than repairRatePerSecond. Accounts found
+   * are marked with the start of the reconciliation for the accounts pass.
+   *
+   * @param state checkpoint of the reconciliation
+   * @return ReconciliationChunk
+   */
+  @Override
+  public ReconciliationChunk reconcileCustomers(ReconciliationState state) {
+    var provider = paymentProviderFactory.create(state.getProviderType());
+    // taken before the read and truncated like provider event times, so that an event of a change
+    // made during the read is still applied afterwards
+    var readAt = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS);
+    var customers = provider.listAccounts(state.getProviderCursor(), state.getChunkSize());
+
+    var report = new ReconciliationReport();
+    report.setCustomersScanned(customers.size());
+    if (customers.isEmpty()) {
+      return new ReconciliationChunk(report, null);
+    }
+
+    Map<String, Account> accounts =
+        accountRepository
+            .findByProviderIdIn(customers.stream().map(Account::getProviderId).toList())
+            .stream()
+            .collect(Collectors.toMap(Account::getProviderId, Function.identity()));
+
+    long repairIntervalNanos =
+        (long) (TimeUnit.SECONDS.toNanos(1) / state.getRepairRatePerSecond());
+    long nextRepairNanos = System.nanoTime();
+    List<Account> newerCustomers = new ArrayList<>();
+    for (var customer : customers) {
+      var account = accounts.get(customer.getProviderId());
+      if (account == null) {
+        report.setCustomersWithoutAccount(report.getCustomersWithoutAccount() + 1);
+        logger.warn("customer {} has no account", customer.getProviderId());
+        continue;
+      }
+      if (!differs(account, customer)) {
+        continue;
+      }
+
+      report.setMismatched(report.getMismatched() + 1);
+      logger.warn("account {} differs from customer {}", account.getId(), customer.getProviderId());
+      if (!state.isRepair()) {
+        continue;
+      }
+      if (account.getProviderSyncedAt() != null) {
+        customer.setProviderSyncedAt(readAt);
+        newerCustomers.add(customer);
+      } else {
+        nextRepairNanos = throttle(nextRepairNanos, repairIntervalNanos);
+        provider.updateAccount(
+            AccountMapper.INSTANCE.toCreateAccount(account),
+            account.getProviderId(),
+            // one repair per account and version in a reconciliation
+            AccountActivityImpl.paymentIdempotencyKey(
+                account.getProviderId(),
+                String.valueOf(account.getVersion()),
+                state.getStartedAt().toString()));
+        report.setRepaired(report.getRepaired() + 1);
+        Activity.getExecutionContext().heartbeat(customer.getProviderId());
+      }
+    }
+
+    if (!newerCustomers.isEmpty()) {
+      accountSyncService.applyProviderUpdates(provider.providerName(), newerCustomers);
+      report.setApplied(newerCustomers.size());
+    }
+    accountRepository.markReconciled(accounts.keySet(), state.getStartedAt());
+    accountMetrics.reconciliation(provider.providerName(), report);
+
+    var nextCursor =
+        customers.size() < state.getChunkSize() ? null : customers.getLast().getProviderId();
+    return new ReconciliationChunk(report, nextCursor);
+  }
+
+  /**
+   * reconcileAccounts reads the next chunk of accounts in keyset order. Accounts without provider
+   * id never reached the provider, accounts not marked by the customers pass of this
+   * reconciliation have no customer anymore. Accounts created after the reconciliation started are
+   * skipped since the customers pass may have run before them.
+   *
+   * @param state checkpoint of the reconciliation
+   * @return ReconciliationChunk
+   */
+  @Override
+  public ReconciliationChunk reconcileAccounts(ReconciliationState state) {
+    var pageable = PageRequest.ofSize(state.getChunkSize());
+    List<Account> accounts;
+    if (state.getAccountCursor() == null) {
+      accounts = accountRepository.findFirstPage(pageable);
+    } else {
+      var position = AccountCursor.decode(state.getAccountCursor());
+      accounts =
+          accountRepository.findPageAfter(position.getCreatedAt(), position.getId(), pageable);
+    }
+
+    var report = new ReconciliationReport();
+    report.setAccountsScanned(accounts.size());
+    for (var account : accounts) {
+      if (account.getProviderType() != state.getProviderType()
+          || account.getCreatedAt().isAfter(state.getStartedAt())) {
+        continue;
+      }
+      if (account.getProviderId() == null) {
+        report.setAccountsWithoutProvider(report.getAccountsWithoutProvider() + 1);
+        logger.warn("account {} has no provider id", account.getId());
+      } else if (account.getProviderReconciledAt() == null
+          || account.getProviderReconciledAt().isBefore(state.getStartedAt())) {
+        report.setAccountsMissingInProvider(report.getAccountsMissingInProvider() + 1);
+        logger.warn(
+            "customer {} of account {} was not found", account.getProviderId(), account.getId());
+      }
+    }
+
+    accountMetrics.reconciliation(state.getProviderType().getValue(), report);
+
+    var nextCursor =
+        accounts.size() < state.getChunkSize()
+            ? null
+            : AccountCursor.of(accounts.getLast()).encode();
+    return new ReconciliationChunk(report, nextCursor);
+  }
+
+  /**
+   * differs compares the fields an account shares with its provider customer.
+   *
+   * @param account account as stored
+   * @param customer account as known by the provider
+   * @return boolean
+   */
+  static boolean differs(Account account, Account customer) {
+    var name = account.getFirstName() + " " + account.getLastName();
+    var customerName = customer.getFirstName() + " " + customer.getLastName();
+    return !name.equals(customerName)
+        || !Objects.equals(lowerCase(account.getEmail()), lowerCase(customer.getEmail()));
+  }
+
+  private static String lowerCase(String email) {
+    return email == null ? null : email.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * throttle waits for the next provider write slot.
+   *
+   * @param nextNanos time of the next slot
+   * @param intervalNanos minimum interval between two writes
+   * @return long time of the slot after this one
+   */
+  private static long throttle(long nextNanos, long intervalNanos) {
+    long waitNanos = nextNanos - System.nanoTime();
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while throttling repairs", e);
+      }
+    }
+    return Math.max(nextNanos, System.nanoTime()) + intervalNanos;
+  }
+}
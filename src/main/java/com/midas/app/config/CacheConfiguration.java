@@ -0,0 +1,19 @@
+package com.midas.app.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * CacheConfiguration enables the in-process account caches. The caches themselves are Caffeine
+ * caches configured with spring.cache.* properties (size, TTL and statistics for the actuator
+ * cache metrics).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+  /** ACCOUNTS_BY_ID caches accounts by id */
+  public static final String ACCOUNTS_BY_ID = "accountsById";
+
+  /** ACCOUNTS_BY_EMAIL caches accounts, or their absence, by lower-cased email */
+  public static final String ACCOUNTS_BY_EMAIL = "accountsByEmail";
+}
@@ -0,0 +1,183 @@
+package com.midas.app.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * DataSourceConfiguration gives the primary database and each read replica its own connection
+ * pool, tuned with the spring.datasource.hikari.* properties, and routes read-only transactions to
+ * the replicas through ReplicaRoutingDataSource. Without replicas every transaction goes to the
+ * primary, as before. Each pool reports its hikaricp_* metrics under its own pool tag.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties("datasource")
+public class DataSourceConfiguration {
+  /** replicas are the read replicas of the primary database */
+  private List<ReplicaProperties> replicas = new ArrayList<>();
+
+  /** maxReplicaLag is the replication lag above which reads of a replica go to the primary */
+  private Duration maxReplicaLag = Duration.ofSeconds(5);
+
+  /** replicaCheckInterval is how often the replication lag of the replicas is measured */
+  private Duration replicaCheckInterval = Duration.ofSeconds(5);
+
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private ReplicaRoutingDataSource routingDataSource;
+
+  /** ReplicaProperties are the connection settings of a read replica. */
+  @Getter
+  @Setter
+  public static class ReplicaProperties {
+    private String url;
+
+    /** username defaults to the one of the primary */
+    private String username;
+
+    /** password defaults to the one of the primary */
+    private String password;
+  }
+
+  /**
+   * routingDataSource connects to the database given by the connection details of Docker Compose
+   * support when it runs, or by spring.datasource.* otherwise.
+   */
+  @Bean(destroyMethod = "close")
+  public ReplicaRoutingDataSource routingDataSource(
+      ObjectProvider<JdbcConnectionDetails> connectionDetailsProvider,
+      DataSourceProperties dataSourceProperties,
+      Environment environment,
+      MeterRegistry meterRegistry) {
+    var connectionDetails =
+        connectionDetailsProvider.getIfAvailable(() -> connectionDetails(dataSourceProperties));
+    var primary =
+        pool(
+            "primary",
+            connectionDetails.getJdbcUrl(),
+            connectionDetails.getUsername(),
+            connectionDetails.getPassword(),
+            connectionDetails.getDriverClassName(),
+            environment,
+            meterRegistry);
+
+    Map<String, DataSource> replicaPools = new LinkedHashMap<>();
+    for (int i = 0; i < replicas.size(); i++) {
+      var replica = replicas.get(i);
+      var name = "replica-" + i;
+      var username =
+          replica.getUsername() != null ? replica.getUsername() : connectionDetails.getUsername();
+      var password =
+          replica.getPassword() != null ? replica.getPassword() : connectionDetails.getPassword();
+      var pool =
+          pool(
+              name,
+              replica.getUrl(),
+              username,
+              password,
+              connectionDetails.getDriverClassName(),
+              environment,
+              meterRegistry);
+      pool.setReadOnly(true);
+      replicaPools.put(name, pool);
+    }
+
+    routingDataSource =
+        new ReplicaRoutingDataSource(primary, replicaPools, maxReplicaLag, meterRegistry);
+    routingDataSource.checkReplicas();
+    return routingDataSource;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+
+  @Scheduled(
+      fixedDelayString = "${datasource.replica-check-interval:PT5S}",
+      initialDelayString = "${datasource.replica-check-interval:PT5S}")
+  public void checkReplicas() {
+    if (routingDataSource != null && !replicas.isEmpty()) {
+      routingDataSource.checkReplicas();
+    }
+  }
+
+  private static JdbcConnectionDetails connectionDetails(DataSourceProperties properties) {
+    return new JdbcConnectionDetails() {
+      @Override
+      public String getUsername() {
+        return properties.determineUsername();
+      }
+
+      @Override
+      public String getPassword() {
+        return properties.determinePassword();
+      }
+
+      @Override
+      public String getJdbcUrl() {
+        return properties.determineUrl();
+      }
+
+      @Override
+      public String getDriverClassName() {
+        return properties.determineDriverClassName();
+      }
+    };
+  }
+
+  /**
+   * pool creates the connection pool of a database.
+   *
+   * @param name name of the pool, used as the pool tag of its metrics
+   * @param url jdbc url of the database
+   * @param username user of the database
+   * @param password password of the user
+   * @param driverClassName class name of the JDBC driver
+   * @param environment environment holding the spring.datasource.hikari.* properties
+   * @param meterRegistry registry of the pool metrics
+   * @return HikariDataSource
+   */
+  private static HikariDataSource pool(
+      String name,
+      String url,
+      String username,
+      String password,
+      String driverClassName,
+      Environment environment,
+      MeterRegistry meterRegistry) {
+    var pool = new HikariDataSource();
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+    pool.setPoolName(name);
+    pool.setJdbcUrl(url);
+    pool.setUsername(username);
+    pool.setPassword(password);
+    pool.setDriverClassName(driverClassName);
+    pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+    return pool;
+  }
+}
@@ -0,0 +1,23 @@
+package com.midas.app.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties("idempotency")
+public class IdempotencyConfiguration {
+  /** ttl is how long the response of a request is replayed for duplicates with the same key */
+  private Duration ttl = Duration.ofHours(24);
+
+  /**
+   * attachTimeout is how long a duplicate waits for the first request to start its workflow before
+   * being rejected as a conflict. Starting a workflow takes milliseconds, so this only elapses if
+   * the instance handling the first request died in between.
+   */
+  private Duration attachTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,93 @@
+package com.midas.app.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.providers.events.AccountEventSink;
+import com.midas.app.providers.events.ApplicationAccountEventSink;
+import com.midas.app.providers.events.FileAccountEventSink;
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * OutboxConfiguration sets how the account_events outbox is drained. Events are written with the
+ * account changes they report and published in batches by every instance, see
+ * AccountEventServiceImpl. Until a sink is chosen the outbox is not drained, so that events wait
+ * for a consumer instead of being published to nobody and deleted, but only for retention, so that
+ * the outbox stays bounded.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties("outbox")
+public class OutboxConfiguration {
+  /** enabled turns the publisher of this instance on, events are still written when off */
+  private boolean enabled = true;
+
+  /** pollInterval is the pause between two drains of the outbox */
+  private Duration pollInterval = Duration.ofSeconds(1);
+
+  /** batchSize is the number of events locked, published and deleted per transaction */
+  private int batchSize = 100;
+
+  /** maxBatchesPerPoll bounds a drain, so that a large backlog does not hold the scheduler */
+  private int maxBatchesPerPoll = 10;
+
+  /** sink is where events are published, none keeps them in the outbox */
+  private Sink sink = Sink.NONE;
+
+  /** file receives the events when sink is file */
+  private Path file = Path.of("build/account-events.ndjson");
+
+  /** retention is how long events wait for a sink when sink is none, older ones are deleted */
+  private Duration retention = Duration.ofDays(7);
+
+  /** cleanupInterval is the pause between two counts of pending events and deletions */
+  private Duration cleanupInterval = Duration.ofMinutes(1);
+
+  /** Sink selects the AccountEventSink. */
+  public enum Sink {
+    /** NONE leaves the events in the outbox until a sink is configured */
+    NONE,
+    /** APPLICATION delivers events to the @EventListener methods of this instance */
+    APPLICATION,
+    /** FILE appends events to file as newline-delimited JSON */
+    FILE
+  }
+
+  /**
+   * isExpiring tells whether events are deleted once older than retention, which is only the case
+   * when no sink would publish them.
+   *
+   * @return boolean
+   */
+  public boolean isExpiring() {
+    return sink == Sink.NONE;
+  }
+
+  /**
+   * isPublishing tells whether this instance drains the outbox.
+   *
+   * @return boolean
+   */
+  public boolean isPublishing() {
+    return enabled && sink != Sink.NONE;
+  }
+
+  @Bean
+  public AccountEventSink accountEventSink(
+      ApplicationEventPublisher applicationEventPublisher, ObjectMapper objectMapper) {
+    return switch (sink) {
+      case NONE ->
+          events -> {
+            throw new IllegalStateException("outbox.sink is none, events are not published");
+          };
+      case APPLICATION -> new ApplicationAccountEventSink(applicationEventPublisher);
+      case FILE -> new FileAccountEventSink(file, objectMapper);
+    };
+  }
+}
@@ -0,0 +1,24 @@
+package com.midas.app.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties("reconciliation")
+public class ReconciliationConfiguration {
+  /** cron schedules reconciliations, "-" disables them */
+  private String cron = "-";
+
+  /** repair writes the name and email of mismatched accounts back to the payment provider */
+  private boolean repair = false;
+
+  /** chunkSize is the number of customers or accounts reconciled by one activity */
+  private int chunkSize = 1000;
+
+  /** repairRatePerSecond bounds the payment provider writes done by repairs */
+  private double repairRatePerSecond = 5;
+}
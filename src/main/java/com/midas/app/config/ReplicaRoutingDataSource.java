@@ -0,0 +1,161 @@
+package com.midas.app.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * ReplicaRoutingDataSource sends read-only transactions to the read replicas, in turn, and
+ * everything else to the primary. Replicas lagging behind the primary by more than maxLag, or not
+ * answering the lag check, are left out until they catch up; reads go to the primary when no
+ * replica is left.
+ *
+ * <p>The transaction manager opens the connection before it marks the transaction read-only, so
+ * this data source must be used through a LazyConnectionDataSourceProxy for reads to be routed.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+  static final String PRIMARY = "primary";
+  static final String ROUTING_METRIC = "datasource.routing";
+  static final String REPLICA_LAG_METRIC = "datasource.replica.lag";
+
+  /** LAG_QUERY returns how far behind the primary a replica is in seconds, 0 on a primary */
+  static final String LAG_QUERY =
+      "select case when not pg_is_in_recovery()"
+          + " or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0"
+          + " else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
+
+  private final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+  private final DataSource primary;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final Duration maxLag;
+  private final AtomicInteger next = new AtomicInteger();
+  private final Counter primaryWrites;
+  private final Counter primaryReads;
+  private final Counter replicaReads;
+
+  private static class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile double lagSeconds = Double.NaN;
+    private volatile boolean available = false;
+
+    private Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+
+  public ReplicaRoutingDataSource(
+      DataSource primary,
+      Map<String, DataSource> replicas,
+      Duration maxLag,
+      MeterRegistry meterRegistry) {
+    this.primary = primary;
+    this.maxLag = maxLag;
+
+    Map<Object, Object> targets = new HashMap<>();
+    targets.put(PRIMARY, primary);
+    replicas.forEach(
+        (name, dataSource) -> {
+          var replica = new Replica(name, dataSource);
+          this.replicas.add(replica);
+          targets.put(name, dataSource);
+          Gauge.builder(REPLICA_LAG_METRIC, replica, r -> r.lagSeconds)
+              .description("Replication lag of a read replica in seconds, NaN if unreachable")
+              .tag("pool", name)
+              .register(meterRegistry);
+        });
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(primary);
+
+    primaryWrites = routingCounter(meterRegistry, PRIMARY, "write");
+    primaryReads = routingCounter(meterRegistry, PRIMARY, "read");
+    replicaReads = routingCounter(meterRegistry, "replica", "read");
+  }
+
+  private static Counter routingCounter(MeterRegistry meterRegistry, String target, String kind) {
+    return meterRegistry.counter(ROUTING_METRIC, "target", target, "kind", kind);
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      primaryWrites.increment();
+      return PRIMARY;
+    }
+    int size = replicas.size();
+    int start = next.getAndIncrement();
+    for (int i = 0; i < size; i++) {
+      var replica = replicas.get(Math.floorMod(start + i, size));
+      if (replica.available) {
+        replicaReads.increment();
+        return replica.name;
+      }
+    }
+    primaryReads.increment();
+    return PRIMARY;
+  }
+
+  /** checkReplicas measures the lag of every replica and takes lagging ones out of rotation. */
+  public void checkReplicas() {
+    for (var replica : replicas) {
+      Double lag;
+      try {
+        lag = new JdbcTemplate(replica.dataSource).queryForObject(LAG_QUERY, Double.class);
+      } catch (RuntimeException e) {
+        logger.warn("could not check the lag of replica {}", replica.name, e);
+        lag = null;
+      }
+      updateLag(replica.name, lag);
+    }
+  }
+
+  /**
+   * updateLag records the lag of a replica.
+   *
+   * @param name name of the replica
+   * @param lagSeconds lag in seconds, null if the replica could not be reached
+   */
+  void updateLag(String name, Double lagSeconds) {
+    for (var replica : replicas) {
+      if (!replica.name.equals(name)) {
+        continue;
+      }
+      boolean available = lagSeconds != null && lagSeconds * 1000 <= maxLag.toMillis();
+      if (available != replica.available) {
+        logger.info(
+            "replica {} is {} with a lag of {} s",
+            name,
+            available ? "back in rotation" : "out of rotation",
+            lagSeconds);
+      }
+      replica.lagSeconds = lagSeconds == null ? Double.NaN : lagSeconds;
+      replica.available = available;
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    for (var replica : replicas) {
+      if (replica.dataSource instanceof AutoCloseable closeable) {
+        closeable.close();
+      }
+    }
+    if (primary instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.midas.app.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * SchedulingConfiguration enables the @Scheduled jobs of the application: the cleanup of expired
+ * idempotency keys, the draining and cleanup of the account_events outbox, the replication lag
+ * checks of the read replicas and the start of reconciliations.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {}
@@ -0,0 +1,81 @@
+package com.midas.app.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * VirtualThreadConfiguration watches the virtual threads started under
+ * spring.threads.virtual.enabled, by Tomcat and by the Temporal workers (see WorkerConfiguration).
+ * It reports virtual threads pinned to their carrier (blocking inside a synchronized block, e.g. in
+ * a JDBC driver or HTTP client) for longer than PINNING_THRESHOLD, as a counter and a log line with
+ * the first frame outside of the JDK, the code that made the pinning call.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfiguration {
+  static final Duration PINNING_THRESHOLD = Duration.ofMillis(20);
+  static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  private final Logger logger = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+  @Bean(destroyMethod = "close")
+  public RecordingStream virtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+    var pinned = meterRegistry.timer("jvm.threads.virtual.pinned");
+    var stream = new RecordingStream();
+    stream.enable(PINNED_EVENT).withThreshold(PINNING_THRESHOLD).withStackTrace();
+    stream.onEvent(
+        PINNED_EVENT,
+        event -> {
+          pinned.record(event.getDuration());
+          logger.warn(
+              "virtual thread pinned for {} ms at {}",
+              event.getDuration().toMillis(),
+              pinningFrame(event));
+        });
+    stream.startAsync();
+    return stream;
+  }
+
+  /**
+   * pinningFrame returns the first frame of a pinned event outside of the JDK. The top frames are
+   * the JDK parking or sleeping, which every pinning event shares.
+   *
+   * @param event pinned event
+   * @return String class, method and line of the frame, the top frame if all are in the JDK
+   */
+  private static String pinningFrame(RecordedEvent event) {
+    var stackTrace = event.getStackTrace();
+    if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+      return "unknown";
+    }
+    RecordedFrame frame =
+        stackTrace.getFrames().stream()
+            .filter(f -> !isJdkType(f.getMethod().getType().getName()))
+            .findFirst()
+            .orElse(stackTrace.getFrames().getFirst());
+    return frame.getMethod().getType().getName()
+        + "."
+        + frame.getMethod().getName()
+        + ":"
+        + frame.getLineNumber();
+  }
+
+  /**
+   * isJdkType tells whether a class belongs to the JDK.
+   *
+   * @param typeName fully qualified name of the class
+   * @return boolean
+   */
+  static boolean isJdkType(String typeName) {
+    return typeName.startsWith("java.") || typeName.startsWith("jdk.");
+  }
+}
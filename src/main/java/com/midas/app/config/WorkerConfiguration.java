@@ -0,0 +1,181 @@
+package com.midas.app.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.temporal.spring.boot.TemporalOptionsCustomizer;
+import io.temporal.spring.boot.WorkerOptionsCustomizer;
+import io.temporal.worker.WorkerFactoryOptions;
+import io.temporal.worker.WorkerOptions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * WorkerConfiguration tunes the Temporal worker of each task queue. Every task queue already has
+ * its own worker, with its own pollers and execution slots, so sizing the create queue apart from
+ * the update queue keeps a spike of creates from starving updates.
+ *
+ * <p>Temporal reports the slots in use and available per queue as temporal_worker_task_slots_used
+ * and temporal_worker_task_slots_available. The configured maximum is added as
+ * temporal.worker.task.slots.max with the same task_queue and worker_type tags, so utilization is
+ * used / max.
+ *
+ * <p>With spring.threads.virtual.enabled the worker factory and every worker also run their
+ * workflow threads and activity executors on virtual threads. The Temporal starter takes a single
+ * customizer per options type, so these settings live in the same customizers as the rest.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties("workers")
+public class WorkerConfiguration {
+  static final String SLOTS_MAX_METRIC = "temporal.worker.task.slots.max";
+
+  private final Logger logger = LoggerFactory.getLogger(WorkerConfiguration.class);
+
+  /**
+   * workflowCacheSize is the number of workflow executions kept in the sticky cache, shared by the
+   * workers of every task queue. Unset keeps the Temporal default.
+   */
+  private Integer workflowCacheSize;
+
+  /** queues holds the options of each task queue by task queue name */
+  private Map<String, TaskQueueOptions> queues = new HashMap<>();
+
+  /** TaskQueueOptions are the worker options of a task queue, unset ones keep the defaults. */
+  @Getter
+  @Setter
+  public static class TaskQueueOptions {
+    /** maxConcurrentActivityExecutions is the number of activities run at once */
+    private Integer maxConcurrentActivityExecutions;
+
+    /** maxConcurrentLocalActivityExecutions is the number of local activities run at once */
+    private Integer maxConcurrentLocalActivityExecutions;
+
+    /** maxConcurrentWorkflowTaskExecutions is the number of workflow tasks run at once */
+    private Integer maxConcurrentWorkflowTaskExecutions;
+
+    /** activityPollers is the number of threads polling the queue for activity tasks */
+    private Integer activityPollers;
+
+    /** workflowPollers is the number of threads polling the queue for workflow tasks */
+    private Integer workflowPollers;
+
+    /** maxActivitiesPerSecond limits the activities started per second by this worker */
+    private Double maxActivitiesPerSecond;
+
+    /**
+     * maxTaskQueueActivitiesPerSecond limits the activities started per second on the queue across
+     * every worker polling it
+     */
+    private Double maxTaskQueueActivitiesPerSecond;
+  }
+
+  @Bean
+  public TemporalOptionsCustomizer<WorkerFactoryOptions.Builder> workerFactoryOptionsCustomizer(
+      Environment environment) {
+    var virtualThreads = Threading.VIRTUAL.isActive(environment);
+    return optionsBuilder -> {
+      if (workflowCacheSize != null) {
+        optionsBuilder.setWorkflowCacheSize(workflowCacheSize);
+      }
+      if (virtualThreads) {
+        optionsBuilder.setUsingVirtualWorkflowThreads(true);
+      }
+      return optionsBuilder;
+    };
+  }
+
+  @Bean
+  public WorkerOptionsCustomizer taskQueueOptionsCustomizer(
+      MeterRegistry meterRegistry, Environment environment) {
+    var virtualThreads = Threading.VIRTUAL.isActive(environment);
+    return (optionsBuilder, workerName, taskQueue) -> {
+      var options = queues.get(taskQueue);
+      if (options != null) {
+        apply(options, optionsBuilder);
+        logger.info("applied worker options of task queue {}", taskQueue);
+      }
+      if (virtualThreads) {
+        optionsBuilder.setUsingVirtualThreads(true);
+      }
+      registerSlotGauges(
+          meterRegistry, taskQueue, WorkerOptions.newBuilder(optionsBuilder.build()));
+      return optionsBuilder;
+    };
+  }
+
+  /**
+   * apply sets the configured options of a task queue on its worker options.
+   *
+   * @param options configured options of the task queue
+   * @param builder worker options of the task queue
+   */
+  static void apply(TaskQueueOptions options, WorkerOptions.Builder builder) {
+    set(
+        options.getMaxConcurrentActivityExecutions(),
+        builder::setMaxConcurrentActivityExecutionSize);
+    set(
+        options.getMaxConcurrentLocalActivityExecutions(),
+        builder::setMaxConcurrentLocalActivityExecutionSize);
+    set(
+        options.getMaxConcurrentWorkflowTaskExecutions(),
+        builder::setMaxConcurrentWorkflowTaskExecutionSize);
+    set(options.getActivityPollers(), builder::setMaxConcurrentActivityTaskPollers);
+    set(options.getWorkflowPollers(), builder::setMaxConcurrentWorkflowTaskPollers);
+    set(options.getMaxActivitiesPerSecond(), builder::setMaxWorkerActivitiesPerSecond);
+    set(options.getMaxTaskQueueActivitiesPerSecond(), builder::setMaxTaskQueueActivitiesPerSecond);
+  }
+
+  private static <T> void set(T value, Consumer<T> setter) {
+    if (value != null) {
+      setter.accept(value);
+    }
+  }
+
+  /**
+   * registerSlotGauges reports the maximum execution slots of a task queue worker, with Temporal
+   * defaults filled in for the options left unset.
+   *
+   * @param meterRegistry registry of the application metrics
+   * @param taskQueue task queue of the worker
+   * @param builder copy of the worker options of the task queue
+   */
+  private static void registerSlotGauges(
+      MeterRegistry meterRegistry, String taskQueue, WorkerOptions.Builder builder) {
+    var options = builder.validateAndBuildWithDefaults();
+    registerSlotGauge(
+        meterRegistry,
+        taskQueue,
+        "ActivityWorker",
+        options.getMaxConcurrentActivityExecutionSize());
+    registerSlotGauge(
+        meterRegistry,
+        taskQueue,
+        "LocalActivityWorker",
+        options.getMaxConcurrentLocalActivityExecutionSize());
+    registerSlotGauge(
+        meterRegistry,
+        taskQueue,
+        "WorkflowWorker",
+        options.getMaxConcurrentWorkflowTaskExecutionSize());
+  }
+
+  private static void registerSlotGauge(
+      MeterRegistry meterRegistry, String taskQueue, String workerType, int slots) {
+    Gauge.builder(SLOTS_MAX_METRIC, () -> slots)
+        .description("Maximum execution slots of a task queue worker")
+        .tag("task_queue", taskQueue)
+        .tag("worker_type", workerType)
+        .register(meterRegistry);
+  }
+}
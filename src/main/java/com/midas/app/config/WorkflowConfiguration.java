@@ -0,0 +1,19 @@
+package com.midas.app.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties("workflows")
+public class WorkflowConfiguration {
+  /**
+   * localSaveActivity makes the create and update workflows persist accounts with a local activity
+   * instead of a regular one. It is passed to every workflow in its memo, so executions started
+   * before a change keep the mode they were started with.
+   */
+  private boolean localSaveActivity = false;
+}
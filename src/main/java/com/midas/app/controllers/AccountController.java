@@ -1,25 +1,43 @@
 package com.midas.app.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.exceptions.InvalidRequestException;
 import com.midas.app.mappers.Mapper;
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountSearch;
 import com.midas.app.services.AccountService;
 import com.midas.generated.api.AccountsApi;
 import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.AccountOperationDto;
+import com.midas.generated.model.AccountsBatchResultDto;
+import com.midas.generated.model.AccountsPageDto;
 import com.midas.generated.model.CreateAccountDto;
+import com.midas.generated.model.CreateAccountsBatchDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
 import com.midas.generated.model.UpdateAccountDto;
-import java.util.List;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.OffsetDateTime;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
 
 @Controller
 @RequiredArgsConstructor
 public class AccountController implements AccountsApi {
   private final AccountService accountService;
+  private final ObjectMapper objectMapper;
   private final Logger logger = LoggerFactory.getLogger(AccountController.class);
 
   /**
@@ -27,10 +45,12 @@ public class AccountController implements AccountsApi {
    * and attaches a supported payment provider such as &#39;stripe&#39;.
    *
    * @param createAccountDto User account details (required)
+   * @param idempotencyKey Client generated key making retries of the request safe (optional)
    * @return User account created (status code 201)
    */
   @Override
-  public ResponseEntity<AccountDto> createUserAccount(CreateAccountDto createAccountDto) {
+  public ResponseEntity<AccountDto> createUserAccount(
+      CreateAccountDto createAccountDto, String idempotencyKey) {
     logger.info("Creating account for user with email: {}", createAccountDto.getEmail());
 
     var account =
@@ -40,24 +60,258 @@ public class AccountController implements AccountsApi {
                 .lastName(createAccountDto.getLastName())
                 .email(createAccountDto.getEmail())
                 .providerType(createAccountDto.getProviderType())
-                .build());
+                .build(),
+            idempotencyKey);
 
     return new ResponseEntity<>(Mapper.toAccountDto(account), HttpStatus.CREATED);
   }
 
   /**
-   * GET /accounts : Get list of user accounts Returns a list of user accounts.
+   * POST /accounts:async : Start creating a new user account Starts creating a new user account
+   * and returns immediately with an operation that can be polled until the account is created.
+   *
+   * @param createAccountDto User account details (required)
+   * @return Account creation started (status code 202)
+   */
+  @Override
+  public ResponseEntity<AccountOperationDto> createUserAccountAsync(
+      CreateAccountDto createAccountDto) {
+    logger.info("Starting account creation for user with email: {}", createAccountDto.getEmail());
+
+    var operation =
+        accountService.createAccountAsync(
+            Account.builder()
+                .firstName(createAccountDto.getFirstName())
+                .lastName(createAccountDto.getLastName())
+                .email(createAccountDto.getEmail())
+                .providerType(createAccountDto.getProviderType())
+                .build());
+
+    return ResponseEntity.accepted()
+        .location(URI.create("/account-operations/" + operation.getId()))
+        .body(Mapper.toAccountOperationDto(operation));
+  }
+
+  /**
+   * POST /accounts:batch : Create user accounts in bulk Creates up to 100 user accounts with a
+   * single workflow and returns the result of every item, in request order.
+   *
+   * @param createAccountsBatchDto User accounts details (required)
+   * @return Result of every item of the batch (status code 200)
+   */
+  @Override
+  public ResponseEntity<AccountsBatchResultDto> createUserAccountsBatch(
+      CreateAccountsBatchDto createAccountsBatchDto) {
+    logger.info("Creating batch of {} accounts", createAccountsBatchDto.getItems().size());
+
+    var results =
+        accountService.createAccounts(
+            createAccountsBatchDto.getItems().stream()
+                .map(
+                    createAccountDto ->
+                        Account.builder()
+                            .firstName(createAccountDto.getFirstName())
+                            .lastName(createAccountDto.getLastName())
+                            .email(createAccountDto.getEmail())
+                            .providerType(createAccountDto.getProviderType())
+                            .build())
+                .toList());
+
+    var resultDto =
+        new AccountsBatchResultDto()
+            .items(results.stream().map(Mapper::toBatchItemResultDto).toList());
+
+    return new ResponseEntity<>(resultDto, HttpStatus.OK);
+  }
+
+  /**
+   * GET /account-operations/{operationId} : Get the status of an account operation Returns the
+   * status of an asynchronous account operation and the account once it has succeeded.
+   *
+   * @param operationId operationId returned when the operation was started (required)
+   * @return Account operation (status code 200)
+   */
+  @Override
+  public ResponseEntity<AccountOperationDto> getAccountOperation(String operationId) {
+    logger.info("Retrieving account operation {}", operationId);
+
+    var operation = accountService.getAccountOperation(operationId);
+
+    return new ResponseEntity<>(Mapper.toAccountOperationDto(operation), HttpStatus.OK);
+  }
+
+  /**
+   * GET /accounts : Get list of user accounts Returns a page of user accounts ordered by creation
+   * time. The ETag is a hash of the id and version of the accounts of the page, so a client
+   * polling with If-None-Match gets 304 after an index range read while the page did not change.
+   *
+   * @param limit Maximum number of items to return (optional, default to 20)
+   * @param cursor Opaque cursor returned as nextCursor by the previous page (optional)
+   * @param ifNoneMatch ETag of the representation the client already has (optional)
+   * @return Page of user accounts (status code 200) or Not modified (status code 304)
+   */
+  @Override
+  public ResponseEntity<AccountsPageDto> getUserAccounts(
+      Integer limit, String cursor, String ifNoneMatch) {
+    if (ifNoneMatch != null) {
+      var eTag = eTag(accountService.getAccountsPageVersion(limit, cursor));
+      if (isNotModified(ifNoneMatch, eTag)) {
+        return notModified(eTag);
+      }
+    }
+
+    logger.info("Retrieving accounts page with limit {}", limit);
+
+    var page = accountService.getAccounts(limit, cursor);
+    var accountsPageDto =
+        new AccountsPageDto().items(page.getAccounts()).nextCursor(page.getNextCursor());
+
+    return ResponseEntity.ok()
+        .eTag(eTag(page.getVersion()).formattedTag())
+        .cacheControl(CacheControl.noCache())
+        .body(accountsPageDto);
+  }
+
+  /**
+   * GET /accounts/{accountId} : Get a user account Returns a user account. The ETag is the version
+   * of the account, so a client polling with If-None-Match gets 304 while it did not change. The
+   * version is checked against the primary, so neither the cache of this instance nor a replica can
+   * hand out an ETag older than the latest update. Accounts without version get no ETag.
+   *
+   * @param accountId accountId generated during account creation (required)
+   * @param ifNoneMatch ETag of the representation the client already has (optional)
+   * @return User account (status code 200) or Not modified (status code 304)
+   */
+  @Override
+  public ResponseEntity<AccountDto> getUserAccount(UUID accountId, String ifNoneMatch) {
+    var account = accountService.getCurrentAccount(accountId);
+    if (account.getVersion() == null) {
+      return ResponseEntity.ok(Mapper.toAccountDto(account));
+    }
+
+    var eTag = eTag(Long.toString(account.getVersion()));
+    if (isNotModified(ifNoneMatch, eTag)) {
+      return notModified(eTag);
+    }
+
+    return ResponseEntity.ok()
+        .eTag(eTag.formattedTag())
+        .cacheControl(CacheControl.noCache())
+        .body(Mapper.toAccountDto(account));
+  }
+
+  private static ETag eTag(String version) {
+    return new ETag(version, false);
+  }
+
+  /**
+   * isNotModified tells whether the client already has the current representation. If-None-Match
+   * uses the weak comparison, so tags weakened by response compression still match.
    *
-   * @return List of user accounts (status code 200)
+   * @param ifNoneMatch If-None-Match header sent by the client, null if none
+   * @param eTag ETag of the current representation
+   * @return boolean
+   */
+  private static boolean isNotModified(String ifNoneMatch, ETag eTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    return ETag.parse(ifNoneMatch).stream()
+        .anyMatch(tag -> tag.isWildcard() || tag.compare(eTag, false));
+  }
+
+  private static <T> ResponseEntity<T> notModified(ETag eTag) {
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+        .eTag(eTag.formattedTag())
+        .cacheControl(CacheControl.noCache())
+        .build();
+  }
+
+  /**
+   * GET /accounts:search : Search user accounts Returns a page of the user accounts matching every
+   * given filter, ordered by creation time.
+   *
+   * @param email Prefix of the email (optional)
+   * @param firstName Prefix of the first name (optional)
+   * @param lastName Prefix of the last name (optional)
+   * @param name Text contained in the first or last name (optional)
+   * @param providerType Payment provider type (optional)
+   * @param createdFrom Accounts created at or after this time (optional)
+   * @param createdTo Accounts created before this time (optional)
+   * @param limit Maximum number of items to return (optional, default to 20)
+   * @param cursor Opaque cursor returned as nextCursor by the previous page (optional)
+   * @return Page of matching user accounts (status code 200)
    */
   @Override
-  public ResponseEntity<List<AccountDto>> getUserAccounts() {
-    logger.info("Retrieving all accounts");
+  public ResponseEntity<AccountsPageDto> searchUserAccounts(
+      String email,
+      String firstName,
+      String lastName,
+      String name,
+      String providerType,
+      OffsetDateTime createdFrom,
+      OffsetDateTime createdTo,
+      Integer limit,
+      String cursor) {
+    logger.info("Searching accounts page with limit {}", limit);
 
-    var accounts = accountService.getAccounts();
-    var accountsDto = accounts.stream().map(Mapper::toAccountDto).toList();
+    var search =
+        AccountSearch.builder()
+            .email(email)
+            .firstName(firstName)
+            .lastName(lastName)
+            .name(name)
+            .providerType(parseProviderType(providerType))
+            .createdFrom(createdFrom)
+            .createdTo(createdTo)
+            .build();
+    var page = accountService.searchAccounts(search, limit, cursor);
+    var accountsPageDto =
+        new AccountsPageDto().items(page.getAccounts()).nextCursor(page.getNextCursor());
 
-    return new ResponseEntity<>(accountsDto, HttpStatus.OK);
+    return new ResponseEntity<>(accountsPageDto, HttpStatus.OK);
+  }
+
+  private static ProviderTypeEnumDto parseProviderType(String providerType) {
+    if (providerType == null) {
+      return null;
+    }
+    try {
+      return ProviderTypeEnumDto.fromValue(providerType);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidRequestException("Unknown provider type " + providerType);
+    }
+  }
+
+  /**
+   * GET /accounts:export : Export all user accounts as newline-delimited JSON. Rows are written to
+   * the response as they are read from the database cursor, so heap usage stays flat and the first
+   * bytes are sent immediately. This endpoint is not part of the OpenAPI contract because the
+   * generated interface cannot return a streamed body.
+   *
+   * @param response servlet response the accounts are written to
+   * @throws IOException if the response cannot be written
+   */
+  @GetMapping(value = "/accounts:export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public void exportUserAccounts(HttpServletResponse response) throws IOException {
+    logger.info("Exporting all accounts");
+
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+    try (var writer =
+        objectMapper
+            .writerFor(AccountDto.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .withRootValueSeparator("\n")
+            .writeValues(response.getOutputStream())) {
+      accountService.exportAccounts(
+          account -> {
+            try {
+              writer.write(account);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
   }
 
   /**
@@ -68,7 +322,7 @@ public class AccountController implements AccountsApi {
    */
   @Override
   public ResponseEntity<AccountDto> updateUserAccount(
-      UUID accountId, UpdateAccountDto updateAccountDto) {
+      UUID accountId, UpdateAccountDto updateAccountDto, String idempotencyKey) {
     logger.info("Updating account details for accountId {}", accountId);
     var updatedAccount =
         accountService.updateAccount(
@@ -77,7 +331,8 @@ public class AccountController implements AccountsApi {
                 .firstName(updateAccountDto.getFirstName())
                 .lastName(updateAccountDto.getLastName())
                 .email(updateAccountDto.getEmail())
-                .build());
+                .build(),
+            idempotencyKey);
     return new ResponseEntity<>(Mapper.toAccountDto(updatedAccount), HttpStatus.OK);
   }
 }
@@ -0,0 +1,30 @@
+package com.midas.app.controllers;
+
+import com.midas.app.providers.external.stripe.StripeWebhookHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+@Controller
+@RequiredArgsConstructor
+public class StripeWebhookController {
+  private final StripeWebhookHandler stripeWebhookHandler;
+
+  /**
+   * POST /webhooks/stripe : Receive a Stripe event. Mapped by hand rather than in the OpenAPI spec
+   * because the signature is computed over the raw request body.
+   *
+   * @param payload raw Stripe event
+   * @param signature Stripe-Signature header
+   * @return Event accepted (status code 200)
+   */
+  @PostMapping("/webhooks/stripe")
+  public ResponseEntity<Void> receiveStripeEvent(
+      @RequestBody String payload, @RequestHeader("Stripe-Signature") String signature) {
+    stripeWebhookHandler.handle(payload, signature);
+    return ResponseEntity.ok().build();
+  }
+}
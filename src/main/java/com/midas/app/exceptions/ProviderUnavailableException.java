@@ -0,0 +1,33 @@
+package com.midas.app.exceptions;
+
+import java.util.List;
+import org.springframework.http.HttpStatus;
+
+public class ProviderUnavailableException extends ApiException {
+
+  static final String MESSAGE = "Payment provider unavailable";
+
+  public ProviderUnavailableException() {
+    super(HttpStatus.SERVICE_UNAVAILABLE, MESSAGE);
+  }
+
+  public ProviderUnavailableException(String message) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, MESSAGE);
+
+    super.setMessage(message);
+  }
+
+  public ProviderUnavailableException(String message, List<String> errors) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, MESSAGE);
+
+    super.setMessage(message);
+    super.setErrors(errors);
+  }
+
+  public ProviderUnavailableException(String message, String error) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, MESSAGE);
+
+    super.setMessage(message);
+    super.setErrors(error);
+  }
+}
@@ -0,0 +1,33 @@
+package com.midas.app.exceptions;
+
+import java.util.List;
+import org.springframework.http.HttpStatus;
+
+public class ResourceConflictException extends ApiException {
+
+  static final String MESSAGE = "Resource was modified concurrently";
+
+  public ResourceConflictException() {
+    super(HttpStatus.CONFLICT, MESSAGE);
+  }
+
+  public ResourceConflictException(String message) {
+    super(HttpStatus.CONFLICT, MESSAGE);
+
+    super.setMessage(message);
+  }
+
+  public ResourceConflictException(String message, List<String> errors) {
+    super(HttpStatus.CONFLICT, MESSAGE);
+
+    super.setMessage(message);
+    super.setErrors(errors);
+  }
+
+  public ResourceConflictException(String message, String error) {
+    super(HttpStatus.CONFLICT, MESSAGE);
+
+    super.setMessage(message);
+    super.setErrors(error);
+  }
+}
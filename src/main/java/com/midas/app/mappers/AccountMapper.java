@@ -0,0 +1,88 @@
+package com.midas.app.mappers;
+
+import com.midas.app.models.Account;
+import com.midas.app.providers.payment.CreateAccount;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import com.stripe.model.Customer;
+import org.mapstruct.Mapping;
+import org.mapstruct.Named;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * AccountMapper converts between accounts and their api, payment provider and Stripe
+ * representations. The implementation is generated by MapStruct at compile time as plain getter
+ * and setter calls, unmapped target properties fail the build.
+ */
+@org.mapstruct.Mapper(unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface AccountMapper {
+  AccountMapper INSTANCE = Mappers.getMapper(AccountMapper.class);
+
+  /**
+   * toAccountDto maps an account to an account dto.
+   *
+   * @param account is the account to be mapped
+   * @return AccountDto
+   */
+  AccountDto toAccountDto(Account account);
+
+  /**
+   * toCreateAccount maps an account to the details sent to a payment provider.
+   *
+   * @param account is the account to be mapped
+   * @return CreateAccount
+   */
+  @Mapping(target = "userId", source = "id")
+  CreateAccount toCreateAccount(Account account);
+
+  /**
+   * toAccount maps a Stripe customer object and payment provider type to an Account object.
+   *
+   * @param customer Stripe customer object
+   * @param providerType Payment Provider type
+   * @return Account
+   */
+  @Mapping(target = "id", ignore = true)
+  @Mapping(target = "createdAt", ignore = true)
+  @Mapping(target = "updatedAt", ignore = true)
+  @Mapping(target = "providerSyncedAt", ignore = true)
+  @Mapping(target = "providerReconciledAt", ignore = true)
+  @Mapping(target = "version", ignore = true)
+  @Mapping(target = "firstName", source = "customer.name", qualifiedByName = "firstName")
+  @Mapping(target = "lastName", source = "customer.name", qualifiedByName = "lastName")
+  @Mapping(target = "email", source = "customer.email")
+  @Mapping(target = "providerId", source = "customer.id")
+  @Mapping(target = "providerType", source = "providerType")
+  Account toAccount(Customer customer, ProviderTypeEnumDto providerType);
+
+  /**
+   * firstName returns the part of a full name before the first space.
+   *
+   * @param name full name
+   * @return String
+   */
+  @Named("firstName")
+  default String firstName(String name) {
+    if (name == null) {
+      return null;
+    }
+    int separator = name.indexOf(' ');
+    return separator < 0 ? name : name.substring(0, separator);
+  }
+
+  /**
+   * lastName returns the part of a full name after the first space.
+   *
+   * @param name full name
+   * @return String
+   */
+  @Named("lastName")
+  default String lastName(String name) {
+    if (name == null) {
+      return null;
+    }
+    int separator = name.indexOf(' ');
+    return separator < 0 ? "" : name.substring(separator + 1);
+  }
+}
@@ -1,7 +1,12 @@
 package com.midas.app.mappers;
 
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountOperation;
+import com.midas.app.models.BatchItemResult;
 import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.AccountOperationDto;
+import com.midas.generated.model.BatchItemResultDto;
+import com.midas.generated.model.OperationStatusEnumDto;
 import com.midas.generated.model.ProviderTypeEnumDto;
 import com.stripe.model.Customer;
 import lombok.NonNull;
@@ -17,19 +22,7 @@ public class Mapper {
    * @return AccountDto
    */
   public static AccountDto toAccountDto(@NonNull Account account) {
-    var accountDto = new AccountDto();
-
-    accountDto
-        .id(account.getId())
-        .firstName(account.getFirstName())
-        .lastName(account.getLastName())
-        .email(account.getEmail())
-        .providerId(account.getProviderId())
-        .providerType(account.getProviderType())
-        .createdAt(account.getCreatedAt())
-        .updatedAt(account.getUpdatedAt());
-
-    return accountDto;
+    return AccountMapper.INSTANCE.toAccountDto(account);
   }
 
   /**
@@ -40,13 +33,44 @@ public class Mapper {
    * @return Account
    */
   public static Account toAccount(@NonNull Customer customer, ProviderTypeEnumDto providerType) {
-    String[] fullName = customer.getName().split(" ");
-    return Account.builder()
-        .firstName(fullName[0])
-        .lastName(fullName[1])
-        .email(customer.getEmail())
-        .providerId(customer.getId())
-        .providerType(providerType)
-        .build();
+    return AccountMapper.INSTANCE.toAccount(customer, providerType);
+  }
+
+  /**
+   * toAccountOperationDto maps an account operation to an account operation dto.
+   *
+   * @param operation is the account operation to be mapped
+   * @return AccountOperationDto
+   */
+  public static AccountOperationDto toAccountOperationDto(@NonNull AccountOperation operation) {
+    var operationDto =
+        new AccountOperationDto()
+            .id(operation.getId())
+            .status(operation.getStatus())
+            .message(operation.getMessage());
+
+    if (operation.getAccount() != null) {
+      operationDto.account(toAccountDto(operation.getAccount()));
+    }
+
+    return operationDto;
+  }
+
+  /**
+   * toBatchItemResultDto maps the result of a batch item to a batch item result dto.
+   *
+   * @param result is the batch item result to be mapped
+   * @return BatchItemResultDto
+   */
+  public static BatchItemResultDto toBatchItemResultDto(@NonNull BatchItemResult result) {
+    var resultDto = new BatchItemResultDto().index(result.getIndex());
+
+    if (result.isSucceeded()) {
+      resultDto.status(OperationStatusEnumDto.SUCCEEDED).account(toAccountDto(result.getAccount()));
+    } else {
+      resultDto.status(OperationStatusEnumDto.FAILED).message(result.getMessage());
+    }
+
+    return resultDto;
   }
 }
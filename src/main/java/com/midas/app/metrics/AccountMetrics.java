@@ -0,0 +1,273 @@
+package com.midas.app.metrics;
+
+import com.midas.app.models.ReconciliationReport;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * AccountMetrics records the latency of every stage of the account pipeline. All meters are
+ * prefixed with "account" so that percentiles and histograms can be enabled for them at once with
+ * management.metrics.distribution.* properties.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountMetrics {
+  static final String WORKFLOW_TIMER = "account.workflow";
+  static final String ACTIVITY_TIMER = "account.activity";
+  static final String PROVIDER_TIMER = "account.provider.requests";
+  static final String PROVIDER_ERRORS = "account.provider.errors";
+  static final String BULKHEAD_WAIT = "account.provider.bulkhead.wait";
+  static final String BULKHEAD_IN_FLIGHT = "account.provider.bulkhead.in.flight";
+  static final String RATE_LIMIT_WAIT = "account.provider.rate.limit.wait";
+  static final String RATE_LIMIT_RATE = "account.provider.rate.limit.rate";
+  static final String PROVIDER_THROTTLED = "account.provider.throttled";
+  static final String PROVIDER_EVENTS = "account.provider.events";
+  static final String PROVIDER_EVENTS_QUEUED = "account.provider.events.queued";
+  static final String RECONCILIATION = "account.reconciliation";
+  static final String EVENTS = "account.events";
+  static final String EVENTS_LAG = "account.events.lag";
+  static final String EVENTS_PENDING = "account.events.pending";
+
+  private final MeterRegistry meterRegistry;
+
+  private final AtomicLong pendingAccountEvents = new AtomicLong();
+
+  /**
+   * Call is a unit of work that may throw a checked exception.
+   *
+   * @param <T> type of the result
+   * @param <E> type of the checked exception
+   */
+  @FunctionalInterface
+  public interface Call<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  /**
+   * recordWorkflow times a workflow from start to completion.
+   *
+   * @param workflow name of the workflow
+   * @param call starts the workflow and waits for its result
+   * @return T result of the workflow
+   */
+  public <T, E extends Exception> T recordWorkflow(String workflow, Call<T, E> call) throws E {
+    return record(WORKFLOW_TIMER, Tags.of("workflow", workflow), call);
+  }
+
+  /**
+   * recordActivity times the execution of an activity method.
+   *
+   * @param activity name of the activity method
+   * @param call executes the activity
+   * @return T result of the activity
+   */
+  public <T, E extends Exception> T recordActivity(String activity, Call<T, E> call) throws E {
+    return record(ACTIVITY_TIMER, Tags.of("activity", activity), call);
+  }
+
+  /**
+   * recordProviderCall times a remote call to a payment provider.
+   *
+   * @param provider name of the payment provider
+   * @param operation name of the remote operation
+   * @param call executes the remote call
+   * @return T result of the remote call
+   */
+  public <T, E extends Exception> T recordProviderCall(
+      String provider, String operation, Call<T, E> call) throws E {
+    return record(PROVIDER_TIMER, Tags.of("provider", provider, "operation", operation), call);
+  }
+
+  /**
+   * providerError counts a failed call to a payment provider.
+   *
+   * @param provider name of the payment provider
+   * @param operation name of the remote operation
+   * @param status http status returned by the provider, null if no response was received
+   */
+  public void providerError(String provider, String operation, Integer status) {
+    meterRegistry
+        .counter(
+            PROVIDER_ERRORS,
+            Tags.of(
+                "provider",
+                provider,
+                "operation",
+                operation,
+                "status",
+                status == null ? "none" : status.toString()))
+        .increment();
+  }
+
+  /**
+   * registerBulkhead exposes the number of in-flight calls of a payment provider bulkhead.
+   *
+   * @param provider name of the payment provider
+   * @param permits semaphore of the bulkhead
+   * @param maxConcurrentCalls number of permits of the semaphore
+   */
+  public void registerBulkhead(String provider, Semaphore permits, int maxConcurrentCalls) {
+    Gauge.builder(BULKHEAD_IN_FLIGHT, permits, p -> maxConcurrentCalls - p.availablePermits())
+        .tag("provider", provider)
+        .register(meterRegistry);
+  }
+
+  /**
+   * bulkheadWait records the time spent waiting for a payment provider bulkhead permit.
+   *
+   * @param provider name of the payment provider
+   * @param waitNanos time spent waiting in nanoseconds
+   * @param acquired whether a permit was acquired or the call rejected
+   */
+  public void bulkheadWait(String provider, long waitNanos, boolean acquired) {
+    meterRegistry
+        .timer(
+            BULKHEAD_WAIT,
+            Tags.of("provider", provider, "outcome", acquired ? "acquired" : "rejected"))
+        .record(waitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * registerRateLimiter exposes the current rate of a payment provider rate limiter.
+   *
+   * @param provider name of the payment provider
+   * @param rateLimiter the rate limiter
+   * @param rate reads the current number of calls allowed per second
+   */
+  public <T> void registerRateLimiter(String provider, T rateLimiter, ToDoubleFunction<T> rate) {
+    Gauge.builder(RATE_LIMIT_RATE, rateLimiter, rate)
+        .tag("provider", provider)
+        .register(meterRegistry);
+  }
+
+  /**
+   * rateLimitWait records the time a call waits for a payment provider rate limit token.
+   *
+   * @param provider name of the payment provider
+   * @param waitNanos time waited in nanoseconds
+   * @param acquired whether the call got a token or was rejected
+   */
+  public void rateLimitWait(String provider, long waitNanos, boolean acquired) {
+    meterRegistry
+        .timer(
+            RATE_LIMIT_WAIT,
+            Tags.of("provider", provider, "outcome", acquired ? "acquired" : "rejected"))
+        .record(waitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * providerThrottled counts calls rejected by a payment provider with 429.
+   *
+   * @param provider name of the payment provider
+   */
+  public void providerThrottled(String provider) {
+    meterRegistry.counter(PROVIDER_THROTTLED, Tags.of("provider", provider)).increment();
+  }
+
+  /**
+   * providerEvents counts payment provider events by what became of them.
+   *
+   * @param provider name of the payment provider
+   * @param outcome received, ignored, rejected, coalesced, applied, stale, unchanged,
+   *     unknown or failed
+   * @param count number of events
+   */
+  public void providerEvents(String provider, String outcome, int count) {
+    if (count > 0) {
+      meterRegistry
+          .counter(PROVIDER_EVENTS, Tags.of("provider", provider, "outcome", outcome))
+          .increment(count);
+    }
+  }
+
+  /**
+   * registerEventQueue exposes the number of payment provider events waiting to be applied.
+   *
+   * @param provider name of the payment provider
+   * @param queue queue of the events
+   */
+  public void registerEventQueue(String provider, Collection<?> queue) {
+    Gauge.builder(PROVIDER_EVENTS_QUEUED, queue, Collection::size)
+        .tag("provider", provider)
+        .register(meterRegistry);
+  }
+
+  /**
+   * reconciliation counts the differences found by reconciliations with a payment provider.
+   *
+   * @param provider name of the payment provider
+   * @param report counts of a reconciled chunk
+   */
+  public void reconciliation(String provider, ReconciliationReport report) {
+    reconciliation(provider, "customers.scanned", report.getCustomersScanned());
+    reconciliation(provider, "accounts.scanned", report.getAccountsScanned());
+    reconciliation(provider, "mismatched", report.getMismatched());
+    reconciliation(provider, "repaired", report.getRepaired());
+    reconciliation(provider, "applied", report.getApplied());
+    reconciliation(provider, "customers.without.account", report.getCustomersWithoutAccount());
+    reconciliation(provider, "accounts.without.provider", report.getAccountsWithoutProvider());
+    reconciliation(provider, "accounts.missing.in.provider", report.getAccountsMissingInProvider());
+  }
+
+  private void reconciliation(String provider, String kind, long count) {
+    if (count > 0) {
+      meterRegistry
+          .counter(RECONCILIATION, Tags.of("provider", provider, "kind", kind))
+          .increment(count);
+    }
+  }
+
+  /**
+   * accountEvents counts account events of the outbox by what became of them.
+   *
+   * @param outcome recorded, published, failed or expired
+   * @param count number of events
+   */
+  public void accountEvents(String outcome, int count) {
+    if (count > 0) {
+      meterRegistry.counter(EVENTS, Tags.of("outcome", outcome)).increment(count);
+    }
+  }
+
+  /**
+   * accountEventLag records the time between an account change and the publication of its event.
+   *
+   * @param lag time the event spent in the outbox
+   */
+  public void accountEventLag(Duration lag) {
+    meterRegistry.timer(EVENTS_LAG).record(lag);
+  }
+
+  /**
+   * accountEventsPending sets the number of events waiting in the outbox, exposed as a gauge
+   * registered on the first count.
+   *
+   * @param count number of events in the outbox
+   */
+  public void accountEventsPending(long count) {
+    pendingAccountEvents.set(count);
+    Gauge.builder(EVENTS_PENDING, pendingAccountEvents, AtomicLong::get).register(meterRegistry);
+  }
+
+  private <T, E extends Exception> T record(String name, Tags tags, Call<T, E> call) throws E {
+    var sample = Timer.start(meterRegistry);
+    var outcome = "error";
+    try {
+      T result = call.call();
+      outcome = "success";
+      return result;
+    } finally {
+      sample.stop(meterRegistry.timer(name, tags.and("outcome", outcome)));
+    }
+  }
+}
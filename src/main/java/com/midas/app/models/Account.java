@@ -12,9 +12,14 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Getter
 @RequiredArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity
-@Table(name = "accounts")
+@Table(
+    name = "accounts",
+    indexes = {
+      @Index(name = "idx_accounts_created_at_id", columnList = "created_at, id"),
+      @Index(name = "idx_accounts_provider_id", columnList = "provider_id")
+    })
 @EqualsAndHashCode(exclude = {"createdAt", "updatedAt"})
 public class Account {
   @Id
@@ -37,6 +42,22 @@ public class Account {
   @Column(name = "provider_type")
   private ProviderTypeEnumDto providerType;
 
+  /**
+   * providerSyncedAt is the time of the latest change of the account in the payment provider that
+   * is reflected here, provider events older than it are stale.
+   */
+  @Column(name = "provider_synced_at")
+  private OffsetDateTime providerSyncedAt;
+
+  /** providerReconciledAt is the start of the last reconciliation that found the customer */
+  @Column(name = "provider_reconciled_at")
+  private OffsetDateTime providerReconciledAt;
+
+  /** version is checked and incremented by every update, stale updates are rejected */
+  @Version
+  @Column(name = "version")
+  private Long version;
+
   @Column(name = "created_at")
   @CreationTimestamp
   private OffsetDateTime createdAt;
@@ -0,0 +1,79 @@
+package com.midas.app.models;
+
+import com.midas.app.exceptions.InvalidRequestException;
+import com.midas.generated.model.AccountDto;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * AccountCursor is the keyset position (created_at, id) of the last account returned in a page.
+ * It is handed out to clients as an opaque url-safe string.
+ */
+@Getter
+@RequiredArgsConstructor
+public class AccountCursor {
+  private static final String SEPARATOR = "|";
+
+  private final OffsetDateTime createdAt;
+  private final UUID id;
+
+  /**
+   * of creates a cursor pointing right after the given account.
+   *
+   * @param account last account of the current page
+   * @return AccountCursor
+   */
+  public static AccountCursor of(@NonNull Account account) {
+    return new AccountCursor(account.getCreatedAt(), account.getId());
+  }
+
+  /**
+   * of creates a cursor pointing right after the given account.
+   *
+   * @param account last account of the current page
+   * @return AccountCursor
+   */
+  public static AccountCursor of(@NonNull AccountDto account) {
+    return new AccountCursor(account.getCreatedAt(), account.getId());
+  }
+
+  /**
+   * encode converts the cursor to the opaque representation sent to clients.
+   *
+   * @return String
+   */
+  public String encode() {
+    String raw = createdAt.toString() + SEPARATOR + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * decode parses a cursor previously produced by {@link #encode()}.
+   *
+   * @param cursor opaque cursor received from the client
+   * @return AccountCursor
+   * @throws InvalidRequestException if the cursor is malformed
+   */
+  public static AccountCursor decode(@NonNull String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = raw.indexOf(SEPARATOR);
+      if (separator < 0) {
+        throw new InvalidRequestException("Invalid cursor " + cursor);
+      }
+      return new AccountCursor(
+          OffsetDateTime.parse(raw.substring(0, separator)),
+          UUID.fromString(raw.substring(separator + 1)));
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new InvalidRequestException("Invalid cursor " + cursor);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.midas.app.models;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import lombok.*;
+
+/**
+ * AccountEvent is a change of an account waiting in the account_events outbox. It is written in
+ * the transaction that changes the account and deleted once published, so every committed change
+ * is published at least once.
+ */
+@Setter
+@Getter
+@RequiredArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(
+    name = "account_events",
+    indexes = @Index(name = "idx_account_events_created_at", columnList = "created_at"))
+public class AccountEvent {
+  /** id grows with the order in which events are written, events are published in id order */
+  @Id
+  @Column(name = "id")
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_events_seq")
+  @SequenceGenerator(
+      name = "account_events_seq",
+      sequenceName = "account_events_seq",
+      allocationSize = 50)
+  private Long id;
+
+  @Column(name = "account_id", nullable = false)
+  private UUID accountId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "type", nullable = false, length = 20)
+  private AccountEventType type;
+
+  /**
+   * accountVersion is the version of the account after the change. Instances publish batches
+   * concurrently, so consumers order the events of an account by it.
+   */
+  @Column(name = "account_version", nullable = false)
+  private Long accountVersion;
+
+  /** payload is the account after the change, in its api representation */
+  @Column(name = "payload", nullable = false, columnDefinition = "text")
+  private String payload;
+
+  @Column(name = "created_at", nullable = false)
+  private OffsetDateTime createdAt;
+}
@@ -0,0 +1,7 @@
+package com.midas.app.models;
+
+/** AccountEventType is the kind of change an account event reports. */
+public enum AccountEventType {
+  CREATED,
+  UPDATED
+}
@@ -0,0 +1,11 @@
+package com.midas.app.models;
+
+/**
+ * AccountField is a field of an account that can be changed by an update. The payment provider
+ * keeps a copy of every field, so every change is sent to it.
+ */
+public enum AccountField {
+  FIRST_NAME,
+  LAST_NAME,
+  EMAIL
+}
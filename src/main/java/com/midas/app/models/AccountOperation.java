@@ -0,0 +1,58 @@
+package com.midas.app.models;
+
+import com.midas.app.exceptions.InvalidRequestException;
+import com.midas.generated.model.OperationStatusEnumDto;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * AccountOperation is an asynchronous account operation backed by a workflow execution. Its id is
+ * an opaque url-safe encoding of the workflow id and run id.
+ */
+@Getter
+@Builder
+public class AccountOperation {
+  private static final String SEPARATOR = "/";
+
+  private final String id;
+  private final OperationStatusEnumDto status;
+  private final Account account;
+  private final String message;
+
+  /**
+   * encodeId builds the operation id of a workflow execution.
+   *
+   * @param workflowId id of the workflow
+   * @param runId run id of the workflow execution
+   * @return String
+   */
+  public static String encodeId(@NonNull String workflowId, @NonNull String runId) {
+    String raw = workflowId + SEPARATOR + runId;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * decodeId returns the workflow id and run id an operation id was built from.
+   *
+   * @param operationId opaque operation id received from the client
+   * @return String[] of workflow id and run id
+   * @throws InvalidRequestException if the operation id is malformed
+   */
+  public static String[] decodeId(@NonNull String operationId) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(operationId), StandardCharsets.UTF_8);
+      int separator = raw.lastIndexOf(SEPARATOR);
+      if (separator <= 0 || separator == raw.length() - 1) {
+        throw new InvalidRequestException("Invalid operation id " + operationId);
+      }
+      return new String[] {raw.substring(0, separator), raw.substring(separator + 1)};
+    } catch (IllegalArgumentException e) {
+      throw new InvalidRequestException("Invalid operation id " + operationId);
+    }
+  }
+}
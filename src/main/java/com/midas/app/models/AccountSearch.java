@@ -0,0 +1,31 @@
+package com.midas.app.models;
+
+import com.midas.generated.model.ProviderTypeEnumDto;
+import java.time.OffsetDateTime;
+import lombok.Builder;
+import lombok.Getter;
+
+/** AccountSearch holds the filters of an account search, null filters match every account. */
+@Getter
+@Builder
+public class AccountSearch {
+  /** email is a prefix of the email, ignoring case */
+  private final String email;
+
+  /** firstName is a prefix of the first name, ignoring case */
+  private final String firstName;
+
+  /** lastName is a prefix of the last name, ignoring case */
+  private final String lastName;
+
+  /** name is contained in the first or last name, ignoring case */
+  private final String name;
+
+  private final ProviderTypeEnumDto providerType;
+
+  /** createdFrom is the earliest creation time, inclusive */
+  private final OffsetDateTime createdFrom;
+
+  /** createdTo is the latest creation time, exclusive */
+  private final OffsetDateTime createdTo;
+}
@@ -0,0 +1,21 @@
+package com.midas.app.models;
+
+import com.midas.generated.model.AccountDto;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class AccountsPage {
+  private final List<AccountDto> accounts;
+
+  /** nextCursor is the cursor of the following page, null when this is the last page */
+  private final String nextCursor;
+
+  /**
+   * version is a hash of the id and version of the accounts of the page, read before the page, null
+   * when the page is not versioned
+   */
+  private final String version;
+}
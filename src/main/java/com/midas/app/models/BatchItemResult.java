@@ -0,0 +1,32 @@
+package com.midas.app.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+/**
+ * BatchItemResult is the outcome of one item of a batch operation. Either account is set when the
+ * item succeeded, or message explains why it failed.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchItemResult {
+  private int index;
+  private Account account;
+  private String message;
+
+  public static BatchItemResult succeeded(int index, Account account) {
+    return new BatchItemResult(index, account, null);
+  }
+
+  public static BatchItemResult failed(int index, String message) {
+    return new BatchItemResult(index, null, message);
+  }
+
+  @JsonIgnore
+  public boolean isSucceeded() {
+    return account != null;
+  }
+}
@@ -0,0 +1,44 @@
+package com.midas.app.models;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import lombok.*;
+
+/**
+ * IdempotencyKey records the execution of a request sent with an Idempotency-Key header. The
+ * workflow execution is set once the workflow has been started, so that duplicates can wait for
+ * it, and the response once it has succeeded, so that duplicates can replay it.
+ */
+@Setter
+@Getter
+@RequiredArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(
+    name = "idempotency_keys",
+    indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+public class IdempotencyKey {
+  /** id is the operation followed by the key sent by the client */
+  @Id
+  @Column(name = "id", length = 300)
+  private String id;
+
+  @Column(name = "request_hash", nullable = false)
+  private String requestHash;
+
+  @Column(name = "workflow_id")
+  private String workflowId;
+
+  @Column(name = "run_id")
+  private String runId;
+
+  @Column(name = "response", columnDefinition = "text")
+  private String response;
+
+  @Column(name = "created_at", nullable = false)
+  private OffsetDateTime createdAt;
+
+  @Column(name = "expires_at", nullable = false)
+  private OffsetDateTime expiresAt;
+}
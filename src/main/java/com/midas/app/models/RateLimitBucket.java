@@ -0,0 +1,43 @@
+package com.midas.app.models;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import lombok.*;
+
+/**
+ * RateLimitBucket is the state of the adaptive token bucket limiting the calls to a payment
+ * provider. It is kept in memory, or in rate_limit_buckets when instances share the provider
+ * budget.
+ */
+@Setter
+@Getter
+@RequiredArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "rate_limit_buckets")
+public class RateLimitBucket {
+  /** name is the name of the payment provider */
+  @Id
+  @Column(name = "name")
+  private String name;
+
+  /** rate is the number of calls allowed per second, adapted to the throttling of the provider */
+  @Column(name = "rate", nullable = false)
+  private double rate;
+
+  /** tokens is the number of calls that can be made right away, negative when reserved ahead */
+  @Column(name = "tokens", nullable = false)
+  private double tokens;
+
+  @Column(name = "refilled_at", nullable = false)
+  private OffsetDateTime refilledAt;
+
+  /** resumeAt is the time before which no call is made, after the provider throttled us */
+  @Column(name = "resume_at")
+  private OffsetDateTime resumeAt;
+
+  /** throttledAt is the time the rate was last lowered */
+  @Column(name = "throttled_at")
+  private OffsetDateTime throttledAt;
+}
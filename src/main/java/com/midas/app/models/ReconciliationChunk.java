@@ -0,0 +1,16 @@
+package com.midas.app.models;
+
+import lombok.*;
+
+/**
+ * ReconciliationChunk is the outcome of reconciling one chunk: its counts and the cursor to resume
+ * from, null once the stream is exhausted.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationChunk {
+  private ReconciliationReport report;
+  private String nextCursor;
+}
@@ -0,0 +1,49 @@
+package com.midas.app.models;
+
+import lombok.*;
+
+/** ReconciliationReport counts the differences found between accounts and a payment provider. */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class ReconciliationReport {
+  private long customersScanned;
+  private long accountsScanned;
+
+  /** mismatched counts accounts whose name or email differs from the provider */
+  private long mismatched;
+
+  /** repaired counts mismatched accounts written back to the provider */
+  private long repaired;
+
+  /** applied counts mismatched accounts handed over to be updated from the newer customer */
+  private long applied;
+
+  /** customersWithoutAccount counts provider customers no account points to */
+  private long customersWithoutAccount;
+
+  /** accountsWithoutProvider counts accounts that were never created in the provider */
+  private long accountsWithoutProvider;
+
+  /** accountsMissingInProvider counts accounts whose provider customer was not found */
+  private long accountsMissingInProvider;
+
+  /**
+   * add adds the counts of another report to this one.
+   *
+   * @param other report of a chunk
+   */
+  public void add(ReconciliationReport other) {
+    customersScanned += other.customersScanned;
+    accountsScanned += other.accountsScanned;
+    mismatched += other.mismatched;
+    repaired += other.repaired;
+    applied += other.applied;
+    customersWithoutAccount += other.customersWithoutAccount;
+    accountsWithoutProvider += other.accountsWithoutProvider;
+    accountsMissingInProvider += other.accountsMissingInProvider;
+  }
+}
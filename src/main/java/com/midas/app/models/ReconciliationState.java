@@ -0,0 +1,47 @@
+package com.midas.app.models;
+
+import com.midas.generated.model.ProviderTypeEnumDto;
+import java.time.OffsetDateTime;
+import lombok.*;
+
+/**
+ * ReconciliationState is the checkpoint of a reconciliation, carried from one run of the workflow
+ * to the next when it continues as new.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class ReconciliationState {
+  /** Phase is the stream being reconciled */
+  public enum Phase {
+    /** CUSTOMERS streams provider customers and compares them with their accounts */
+    CUSTOMERS,
+    /** ACCOUNTS streams accounts and reports those the customer pass did not find */
+    ACCOUNTS
+  }
+
+  private ProviderTypeEnumDto providerType;
+
+  /** repair resolves mismatches in favour of the newer side, see reconcileCustomers */
+  private boolean repair;
+
+  private int chunkSize;
+
+  /** repairRatePerSecond bounds provider writes done by repairs */
+  private double repairRatePerSecond;
+
+  @Builder.Default private Phase phase = Phase.CUSTOMERS;
+
+  /** providerCursor is the id of the last customer reconciled */
+  private String providerCursor;
+
+  /** accountCursor is the keyset position of the last account reconciled */
+  private String accountCursor;
+
+  /** startedAt is the start of the first run, accounts seen by the customer pass are marked */
+  private OffsetDateTime startedAt;
+
+  @Builder.Default private ReconciliationReport report = new ReconciliationReport();
+}
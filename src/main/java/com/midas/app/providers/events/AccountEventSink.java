@@ -0,0 +1,19 @@
+package com.midas.app.providers.events;
+
+import com.midas.app.models.AccountEvent;
+import java.util.List;
+
+/**
+ * AccountEventSink delivers account events to their consumers. A broker adapter implements it by
+ * sending the batch and waiting for the broker to acknowledge it.
+ */
+public interface AccountEventSink {
+  /**
+   * publish delivers a batch of events in id order. It returns once the batch is delivered, the
+   * events are then deleted from the outbox. A batch that fails is published again later, in part
+   * or in full, so delivery is at least once.
+   *
+   * @param events events to deliver
+   */
+  void publish(List<AccountEvent> events);
+}
@@ -0,0 +1,21 @@
+package com.midas.app.providers.events;
+
+import com.midas.app.models.AccountEvent;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * ApplicationAccountEventSink delivers account events to the @EventListener methods of this
+ * instance. Listeners run in the publishing transaction, a listener throwing has the batch
+ * published again.
+ */
+@RequiredArgsConstructor
+public class ApplicationAccountEventSink implements AccountEventSink {
+  private final ApplicationEventPublisher applicationEventPublisher;
+
+  @Override
+  public void publish(List<AccountEvent> events) {
+    events.forEach(applicationEventPublisher::publishEvent);
+  }
+}
@@ -0,0 +1,85 @@
+package com.midas.app.providers.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.models.AccountEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FileAccountEventSink appends account events to a file as newline-delimited JSON, and forces them
+ * to disk before the batch counts as delivered. It stands in for a broker when running locally.
+ */
+public class FileAccountEventSink implements AccountEventSink {
+  // a lock rather than synchronized, which would pin virtual threads during the write and force
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Path file;
+  private final ObjectMapper objectMapper;
+
+  public FileAccountEventSink(Path file, ObjectMapper objectMapper) {
+    this.file = file;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public void publish(List<AccountEvent> events) {
+    var lines = new StringBuilder();
+    for (var event : events) {
+      lines.append(toJson(event)).append('\n');
+    }
+
+    lock.lock();
+    try {
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+      try (var channel =
+          FileChannel.open(
+              file,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND)) {
+        var buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(false);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * toJson formats an event as a single line of JSON, with the account as a nested object.
+   *
+   * @param event event to format
+   * @return String
+   */
+  String toJson(AccountEvent event) {
+    try {
+      var json =
+          objectMapper
+              .createObjectNode()
+              .put("id", event.getId())
+              .put("type", event.getType().name())
+              .put("accountId", event.getAccountId().toString())
+              .put("accountVersion", event.getAccountVersion())
+              .put("createdAt", event.getCreatedAt().toString());
+      json.set("account", objectMapper.readTree(event.getPayload()));
+      return objectMapper.writeValueAsString(json);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -1,12 +1,23 @@
 package com.midas.app.providers.external.stripe;
 
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.providers.payment.Bulkhead;
+import com.midas.app.providers.payment.LocalRateLimitStore;
+import com.midas.app.providers.payment.RateLimitStore;
+import com.midas.app.providers.payment.RateLimiter;
+import com.midas.app.providers.payment.SharedRateLimitStore;
+import com.midas.app.repositories.RateLimitBucketRepository;
 import com.stripe.StripeClient;
+import java.time.Clock;
+import java.time.Duration;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Getter
 @Setter
@@ -15,8 +26,114 @@ import org.springframework.context.annotation.Configuration;
 public class StripeConfiguration {
   @NonNull private String apiKey;
 
+  /**
+   * apiBase overrides the Stripe API url, to point the client at a local stand-in such as the
+   * fake server of the load test harness
+   */
+  private String apiBase;
+
+  /** connectTimeout is the timeout to open a connection to Stripe */
+  private Duration connectTimeout = Duration.ofSeconds(5);
+
+  /** readTimeout is the timeout to read a response from Stripe */
+  private Duration readTimeout = Duration.ofSeconds(20);
+
+  /**
+   * maxNetworkRetries is the number of retries done by the Stripe client itself. Activities are
+   * already retried by Temporal, so it defaults to none.
+   */
+  private int maxNetworkRetries = 0;
+
+  /** maxConcurrentRequests is the number of calls to Stripe allowed in flight at once */
+  private int maxConcurrentRequests = 20;
+
+  /** maxWait is how long a call waits for one of maxConcurrentRequests before being rejected */
+  private Duration maxWait = Duration.ofSeconds(2);
+
+  /** rateLimit is the number of calls per second made to Stripe before any throttling */
+  private double rateLimit = 25;
+
+  /** minRateLimit is the lowest rate throttling by Stripe brings the rate limit down to */
+  private double minRateLimit = 1;
+
+  /** maxRateLimit is the highest rate the rate limit grows to, under the Stripe account limit */
+  private double maxRateLimit = 90;
+
+  /** rateLimitBurst is the number of calls made at once after Stripe was left idle */
+  private double rateLimitBurst = 10;
+
+  /** rateLimitIncrease is how much the rate limit grows per second while calls wait for it */
+  private double rateLimitIncrease = 1;
+
+  /** rateLimitBackoff multiplies the rate limit when Stripe answers 429 */
+  private double rateLimitBackoff = 0.5;
+
+  /** rateLimitCooldown is the pause after a 429, and the minimum time between two rate cuts */
+  private Duration rateLimitCooldown = Duration.ofSeconds(1);
+
+  /** rateLimitMaxWait is how long a call waits for the rate limit before being rejected */
+  private Duration rateLimitMaxWait = Duration.ofSeconds(5);
+
+  /**
+   * sharedRateLimit keeps the rate limit in rate_limit_buckets, so that all instances share the
+   * Stripe account budget
+   */
+  private boolean sharedRateLimit = false;
+
+  /** webhookSecret is the signing secret of the webhook endpoint, events are rejected if unset */
+  private String webhookSecret;
+
+  /** webhookQueueCapacity is the number of events buffered before webhooks are answered 503 */
+  private int webhookQueueCapacity = 10_000;
+
+  /** webhookBatchSize is the maximum number of events applied to accounts in one transaction */
+  private int webhookBatchSize = 500;
+
+  /** webhookFlushInterval is how long events are collected into a batch before it is applied */
+  private Duration webhookFlushInterval = Duration.ofMillis(200);
+
   @Bean
   public StripeClient stripeClient() {
-    return StripeClient.builder().setApiKey(apiKey).build();
+    var builder =
+        StripeClient.builder()
+            .setApiKey(apiKey)
+            .setConnectTimeout((int) connectTimeout.toMillis())
+            .setReadTimeout((int) readTimeout.toMillis())
+            .setMaxNetworkRetries(maxNetworkRetries);
+    if (apiBase != null) {
+      builder.setApiBase(apiBase);
+    }
+    return builder.build();
+  }
+
+  @Bean
+  public Bulkhead stripeBulkhead(AccountMetrics accountMetrics) {
+    return new Bulkhead("stripe", maxConcurrentRequests, maxWait, accountMetrics);
+  }
+
+  @Bean
+  public RateLimiter stripeRateLimiter(
+      AccountMetrics accountMetrics,
+      RateLimitBucketRepository rateLimitBucketRepository,
+      PlatformTransactionManager transactionManager) {
+    var settings =
+        RateLimiter.Settings.builder()
+            .initialRate(rateLimit)
+            .minRate(minRateLimit)
+            .maxRate(maxRateLimit)
+            .burst(rateLimitBurst)
+            .increasePerSecond(rateLimitIncrease)
+            .backoffFactor(rateLimitBackoff)
+            .cooldown(rateLimitCooldown)
+            .maxWait(rateLimitMaxWait)
+            .build();
+    var clock = Clock.systemUTC();
+    var bucket = RateLimiter.newBucket("stripe", settings, clock);
+    RateLimitStore store =
+        sharedRateLimit
+            ? new SharedRateLimitStore(
+                bucket, rateLimitBucketRepository, new TransactionTemplate(transactionManager))
+            : new LocalRateLimitStore(bucket);
+    return new RateLimiter("stripe", settings, store, accountMetrics, clock);
   }
 }
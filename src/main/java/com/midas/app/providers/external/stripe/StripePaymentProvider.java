@@ -1,16 +1,28 @@
 package com.midas.app.providers.external.stripe;
 
 import com.midas.app.exceptions.ApiException;
+import com.midas.app.exceptions.ProviderUnavailableException;
 import com.midas.app.mappers.Mapper;
+import com.midas.app.metrics.AccountMetrics;
 import com.midas.app.models.Account;
+import com.midas.app.providers.payment.Bulkhead;
 import com.midas.app.providers.payment.CreateAccount;
 import com.midas.app.providers.payment.PaymentProvider;
+import com.midas.app.providers.payment.RateLimiter;
 import com.midas.generated.model.ProviderTypeEnumDto;
 import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.CustomerCreateParams;
+import com.stripe.param.CustomerListParams;
 import com.stripe.param.CustomerUpdateParams;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -22,10 +34,19 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 @Getter
 public class StripePaymentProvider implements PaymentProvider {
+  /** LIST_PAGE_SIZE is the largest page Stripe returns */
+  static final int LIST_PAGE_SIZE = 100;
+
   private final Logger logger = LoggerFactory.getLogger(StripePaymentProvider.class);
 
   private final StripeClient stripeClient;
 
+  private final AccountMetrics accountMetrics;
+
+  private final Bulkhead stripeBulkhead;
+
+  private final RateLimiter stripeRateLimiter;
+
   /** providerName is the name of the payment provider */
   @Override
   public String providerName() {
@@ -36,10 +57,11 @@ public class StripePaymentProvider implements PaymentProvider {
    * createAccount creates a new account in Stripe
    *
    * @param details is the details of the account to be created.
+   * @param idempotencyKey sent as the Stripe Idempotency-Key, null if none
    * @return Account
    */
   @Override
-  public Account createAccount(CreateAccount details) {
+  public Account createAccount(CreateAccount details, String idempotencyKey) {
     CustomerCreateParams customerCreateParams =
         CustomerCreateParams.builder()
             .setName(details.getFirstName() + " " + details.getLastName())
@@ -47,12 +69,19 @@ public class StripePaymentProvider implements PaymentProvider {
             .build();
     Customer customer;
     try {
-      customer = stripeClient.customers().create(customerCreateParams);
+      customer =
+          call(
+              "createAccount",
+              1,
+              () ->
+                  stripeClient
+                      .customers()
+                      .create(customerCreateParams, requestOptions(idempotencyKey)));
     } catch (StripeException e) {
+      accountMetrics.providerError(providerName(), "createAccount", e.getStatusCode());
       logger.error("Exception occurred while creating customer at {} ", providerName(), e);
-      throw new ApiException(
-          HttpStatus.INTERNAL_SERVER_ERROR,
-          String.format("Could not create customer at provider %s", providerName()));
+      throw providerError(
+          e, String.format("Could not create customer at provider %s", providerName()));
     }
 
     logger.info(
@@ -65,24 +94,88 @@ public class StripePaymentProvider implements PaymentProvider {
   }
 
   /**
-   * updateAccount updates an existing account in Stripe
+   * listAccounts lists Stripe customers, newest first. Pages of up to LIST_PAGE_SIZE customers are
+   * fetched lazily by the client's auto-pagination until limit customers have been read.
    *
-   * @param details is the details of the account to be updated.
+   * @param startingAfter id of the last customer of the previous call, null to start over
+   * @param limit maximum number of customers returned
+   * @return List<Account>
    */
   @Override
-  public void updateAccount(CreateAccount details, String customerId) {
-    CustomerUpdateParams customerUpdateParamsParams =
-        CustomerUpdateParams.builder()
-            .setName(details.getFirstName() + " " + details.getLastName())
-            .setEmail(details.getEmail())
+  public List<Account> listAccounts(String startingAfter, int limit) {
+    CustomerListParams customerListParams =
+        CustomerListParams.builder()
+            .setLimit((long) Math.min(limit, LIST_PAGE_SIZE))
+            .setStartingAfter(startingAfter)
             .build();
+    var providerType = ProviderTypeEnumDto.fromValue(providerName());
     try {
-      stripeClient.customers().update(customerId, customerUpdateParamsParams);
+      // auto-pagination makes one request per page
+      int pages = Math.max(1, (limit + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE);
+      return call(
+          "listAccounts",
+          pages,
+          () -> {
+            List<Account> accounts = new ArrayList<>(limit);
+            for (Customer customer :
+                stripeClient.customers().list(customerListParams).autoPagingIterable()) {
+              accounts.add(Mapper.toAccount(customer, providerType));
+              if (accounts.size() >= limit) {
+                break;
+              }
+            }
+            return accounts;
+          });
     } catch (StripeException e) {
-      logger.error("Exception occurred while creating customer at {} ", providerName(), e);
-      throw new ApiException(
-          HttpStatus.INTERNAL_SERVER_ERROR,
-          String.format("Could not create customer at provider %s", providerName()));
+      accountMetrics.providerError(providerName(), "listAccounts", e.getStatusCode());
+      logger.error("Exception occurred while listing customers at {} ", providerName(), e);
+      throw providerError(
+          e, String.format("Could not list customers at provider %s", providerName()));
+    }
+  }
+
+  /**
+   * updateAccount updates an existing account in Stripe. Only the non-null fields of the details
+   * are sent, and no request is made when there are none.
+   *
+   * @param details is the details of the account to be updated.
+   * @param customerId is the id of the Stripe customer.
+   * @param idempotencyKey sent as the Stripe Idempotency-Key, null if none
+   */
+  @Override
+  public void updateAccount(CreateAccount details, String customerId, String idempotencyKey) {
+    var builder = CustomerUpdateParams.builder();
+    boolean changed = false;
+    if (details.getFirstName() != null || details.getLastName() != null) {
+      builder.setName(
+          Stream.of(details.getFirstName(), details.getLastName())
+              .filter(Objects::nonNull)
+              .collect(Collectors.joining(" ")));
+      changed = true;
+    }
+    if (details.getEmail() != null) {
+      builder.setEmail(details.getEmail());
+      changed = true;
+    }
+    if (!changed) {
+      logger.info(
+          "account for userId {} has no changes for {}", details.getUserId(), providerName());
+      return;
+    }
+    CustomerUpdateParams customerUpdateParamsParams = builder.build();
+    try {
+      call(
+          "updateAccount",
+          1,
+          () ->
+              stripeClient
+                  .customers()
+                  .update(customerId, customerUpdateParamsParams, requestOptions(idempotencyKey)));
+    } catch (StripeException e) {
+      accountMetrics.providerError(providerName(), "updateAccount", e.getStatusCode());
+      logger.error("Exception occurred while updating customer at {} ", providerName(), e);
+      throw providerError(
+          e, String.format("Could not update customer at provider %s", providerName()));
     }
 
     logger.info(
@@ -91,4 +184,83 @@ public class StripePaymentProvider implements PaymentProvider {
         providerName(),
         customerId);
   }
+
+  /**
+   * call makes requests to Stripe once the rate limiter and the bulkhead let it through. The rate
+   * limiter is passed first, so that calls waiting for the rate do not hold bulkhead permits, and
+   * is told about requests throttled by Stripe, with the pause Stripe asked for if any.
+   *
+   * @param operation name of the remote operation
+   * @param requests number of requests made by the call
+   * @param call makes the requests
+   * @return T result of the call
+   */
+  private <T> T call(String operation, int requests, AccountMetrics.Call<T, StripeException> call)
+      throws StripeException {
+    stripeRateLimiter.acquire(requests);
+    try {
+      return stripeBulkhead.execute(
+          () -> accountMetrics.recordProviderCall(providerName(), operation, call));
+    } catch (StripeException e) {
+      if (Integer.valueOf(HttpStatus.TOO_MANY_REQUESTS.value()).equals(e.getStatusCode())) {
+        stripeRateLimiter.throttled(retryAfter(e));
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * retryAfter reads the Retry-After header of a throttled response. Only the delay in seconds is
+   * read, the date form is ignored.
+   *
+   * @param e exception thrown by the Stripe client
+   * @return Duration pause asked for by Stripe, null if none
+   */
+  static Duration retryAfter(StripeException e) {
+    if (e.getStripeError() == null || e.getStripeError().getLastResponse() == null) {
+      return null;
+    }
+    return e.getStripeError()
+        .getLastResponse()
+        .headers()
+        .firstValue("Retry-After")
+        .map(
+            value -> {
+              try {
+                return Duration.ofSeconds(Long.parseLong(value.trim()));
+              } catch (NumberFormatException ignored) {
+                return null;
+              }
+            })
+        .orElse(null);
+  }
+
+  /**
+   * providerError maps a failed Stripe call to the exception thrown to the activity. Throttling,
+   * server errors and connection failures are transient and reported as
+   * ProviderUnavailableException, which activities retry with backoff. Other errors are requests
+   * Stripe rejected, which would fail the same way again.
+   *
+   * @param e exception thrown by the Stripe client
+   * @param message message of the exception
+   * @return ApiException
+   */
+  static ApiException providerError(StripeException e, String message) {
+    Integer status = e.getStatusCode();
+    if (status == null || status == HttpStatus.TOO_MANY_REQUESTS.value() || status >= 500) {
+      return new ProviderUnavailableException(message);
+    }
+    return new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+  }
+
+  /**
+   * requestOptions returns the options of a Stripe request. Stripe stores the response of the
+   * first request with an idempotency key for 24 hours and replays it for later ones.
+   *
+   * @param idempotencyKey idempotency key, null if none
+   * @return RequestOptions
+   */
+  private static RequestOptions requestOptions(String idempotencyKey) {
+    return RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+  }
 }
@@ -0,0 +1,265 @@
+package com.midas.app.providers.external.stripe;
+
+import com.midas.app.exceptions.InvalidRequestException;
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.mappers.AccountMapper;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.services.AccountSyncService;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import com.stripe.exception.EventDataObjectDeserializationException;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Customer;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.net.Webhook;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * StripeWebhookHandler verifies Stripe webhook events and applies customer changes to accounts.
+ * Events are acknowledged as soon as they are queued in a bounded in-memory queue. A single
+ * applier thread drains it in micro-batches of up to webhookBatchSize events, keeps only the
+ * latest event per customer and applies the batch in one transaction. A full queue answers 503 so
+ * that Stripe redelivers the event later. Events still queued when the instance is killed are lost
+ * and left to reconciliation.
+ */
+@Component
+public class StripeWebhookHandler implements SmartLifecycle {
+  static final Set<String> CUSTOMER_EVENTS = Set.of("customer.created", "customer.updated");
+  static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Logger logger = LoggerFactory.getLogger(StripeWebhookHandler.class);
+
+  private final StripeConfiguration stripeConfiguration;
+
+  private final AccountSyncService accountSyncService;
+
+  private final AccountMetrics accountMetrics;
+
+  private final BlockingQueue<Account> queue;
+
+  private volatile boolean running;
+
+  private Thread applier;
+
+  public StripeWebhookHandler(
+      StripeConfiguration stripeConfiguration,
+      AccountSyncService accountSyncService,
+      AccountMetrics accountMetrics) {
+    this.stripeConfiguration = stripeConfiguration;
+    this.accountSyncService = accountSyncService;
+    this.accountMetrics = accountMetrics;
+    this.queue = new ArrayBlockingQueue<>(stripeConfiguration.getWebhookQueueCapacity());
+    accountMetrics.registerEventQueue(providerName(), queue);
+  }
+
+  /**
+   * handle verifies the signature of a webhook event and queues it if it is a customer change.
+   *
+   * @param payload raw request body, as signed by Stripe
+   * @param signature value of the Stripe-Signature header
+   */
+  public void handle(String payload, String signature) {
+    if (!StringUtils.hasText(stripeConfiguration.getWebhookSecret())) {
+      throw new ProviderUnavailableException("Stripe webhooks are not configured");
+    }
+
+    Event event;
+    try {
+      event = Webhook.constructEvent(payload, signature, stripeConfiguration.getWebhookSecret());
+    } catch (SignatureVerificationException e) {
+      throw new InvalidRequestException("Invalid Stripe signature");
+    } catch (RuntimeException e) {
+      throw new InvalidRequestException("Invalid Stripe event");
+    }
+    accountMetrics.providerEvents(providerName(), "received", 1);
+
+    var update = toAccountUpdate(event);
+    if (update == null) {
+      accountMetrics.providerEvents(providerName(), "ignored", 1);
+      return;
+    }
+    if (!queue.offer(update)) {
+      accountMetrics.providerEvents(providerName(), "rejected", 1);
+      throw new ProviderUnavailableException("Too many Stripe events queued, retry later");
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    applier = Thread.ofPlatform().name("stripe-webhook-applier").daemon().start(this::applyLoop);
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    applier.interrupt();
+    try {
+      applier.join(STOP_TIMEOUT.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * coalesce keeps the latest update of every customer, in order of first appearance. Updates with
+   * the same timestamp are ordered by arrival.
+   *
+   * @param updates updates in arrival order
+   * @return Collection<Account> one update per provider id
+   */
+  static Collection<Account> coalesce(List<Account> updates) {
+    Map<String, Account> latest = new LinkedHashMap<>();
+    for (var update : updates) {
+      latest.merge(
+          update.getProviderId(),
+          update,
+          (previous, next) ->
+              next.getProviderSyncedAt().isBefore(previous.getProviderSyncedAt())
+                  ? previous
+                  : next);
+    }
+    return latest.values();
+  }
+
+  private String providerName() {
+    return ProviderTypeEnumDto.STRIPE.getValue();
+  }
+
+  /**
+   * toAccountUpdate extracts the customer of a customer change event.
+   *
+   * @param event verified Stripe event
+   * @return Account the customer as an account, null if the event is not a customer change
+   */
+  private Account toAccountUpdate(Event event) {
+    if (!CUSTOMER_EVENTS.contains(event.getType())) {
+      return null;
+    }
+
+    StripeObject object;
+    try {
+      // events of an api version other than the one of the client can only be read unsafely
+      object =
+          event.getDataObjectDeserializer().getObject().isPresent()
+              ? event.getDataObjectDeserializer().getObject().get()
+              : event.getDataObjectDeserializer().deserializeUnsafe();
+    } catch (EventDataObjectDeserializationException e) {
+      logger.warn("could not read customer of Stripe event {}", event.getId(), e);
+      return null;
+    }
+    if (!(object instanceof Customer customer)) {
+      return null;
+    }
+
+    var update = AccountMapper.INSTANCE.toAccount(customer, ProviderTypeEnumDto.STRIPE);
+    update.setProviderSyncedAt(
+        OffsetDateTime.ofInstant(Instant.ofEpochSecond(event.getCreated()), ZoneOffset.UTC));
+    return update;
+  }
+
+  /** applyLoop applies queued events in batches until the handler is stopped. */
+  private void applyLoop() {
+    List<Account> batch = new ArrayList<>(stripeConfiguration.getWebhookBatchSize());
+    while (running) {
+      try {
+        collectBatch(batch);
+      } catch (InterruptedException e) {
+        // stopping, the interruption only ends the wait
+      }
+      apply(batch);
+    }
+
+    // apply what is still queued, without the interrupt flag that would fail connection checkout
+    Thread.interrupted();
+    queue.drainTo(batch);
+    apply(batch);
+  }
+
+  /**
+   * collectBatch waits for a first event, then collects events for up to webhookFlushInterval or
+   * until webhookBatchSize events have been collected.
+   *
+   * @param batch collected events are added to it
+   */
+  private void collectBatch(List<Account> batch) throws InterruptedException {
+    var first = queue.poll(1, TimeUnit.SECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+
+    int batchSize = stripeConfiguration.getWebhookBatchSize();
+    long deadline = System.nanoTime() + stripeConfiguration.getWebhookFlushInterval().toNanos();
+    while (batch.size() < batchSize) {
+      queue.drainTo(batch, batchSize - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= batchSize || remaining <= 0) {
+        return;
+      }
+      var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  /**
+   * apply applies a batch in one transaction. If it fails, for instance because a customer email
+   * is already used by another account, updates are applied one by one so that only the
+   * offending ones are dropped.
+   *
+   * @param batch events in arrival order, cleared once applied
+   */
+  private void apply(List<Account> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    var updates = coalesce(batch);
+    accountMetrics.providerEvents(providerName(), "coalesced", batch.size() - updates.size());
+    batch.clear();
+
+    try {
+      accountSyncService.applyProviderUpdates(providerName(), updates);
+    } catch (DataAccessException e) {
+      logger.warn(
+          "could not apply batch of {} Stripe events, applying them one by one", updates.size());
+      for (var update : updates) {
+        try {
+          accountSyncService.applyProviderUpdates(providerName(), List.of(update));
+        } catch (DataAccessException ex) {
+          accountMetrics.providerEvents(providerName(), "failed", 1);
+          logger.error("could not apply Stripe event for customer {}", update.getProviderId(), ex);
+        }
+      }
+    } catch (RuntimeException e) {
+      accountMetrics.providerEvents(providerName(), "failed", updates.size());
+      logger.error("could not apply batch of {} Stripe events", updates.size(), e);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.midas.app.providers.payment;
+
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.metrics.AccountMetrics;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulkhead bounds the number of concurrent calls to a payment provider. Callers wait up to maxWait
+ * for a permit and are rejected with ProviderUnavailableException afterwards, so a slow provider
+ * holds at most maxConcurrentCalls threads instead of every activity slot.
+ */
+public class Bulkhead {
+  private final String provider;
+  private final Semaphore permits;
+  private final Duration maxWait;
+  private final AccountMetrics accountMetrics;
+
+  public Bulkhead(
+      String provider, int maxConcurrentCalls, Duration maxWait, AccountMetrics accountMetrics) {
+    this.provider = provider;
+    this.permits = new Semaphore(maxConcurrentCalls, true);
+    this.maxWait = maxWait;
+    this.accountMetrics = accountMetrics;
+    accountMetrics.registerBulkhead(provider, permits, maxConcurrentCalls);
+  }
+
+  /**
+   * execute runs the call once a permit is available.
+   *
+   * @param call remote call to the payment provider
+   * @return T result of the call
+   * @throws ProviderUnavailableException if no permit could be acquired within maxWait
+   */
+  public <T, E extends Exception> T execute(AccountMetrics.Call<T, E> call) throws E {
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    }
+    accountMetrics.bulkheadWait(provider, System.nanoTime() - start, acquired);
+
+    if (!acquired) {
+      throw new ProviderUnavailableException(
+          String.format("Too many concurrent calls to payment provider %s", provider));
+    }
+    try {
+      return call.call();
+    } finally {
+      permits.release();
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.midas.app.providers.payment;
+
+import com.midas.app.models.RateLimitBucket;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/** LocalRateLimitStore keeps the bucket in memory, the budget is per instance. */
+public class LocalRateLimitStore implements RateLimitStore {
+  // a lock rather than synchronized, which would pin virtual threads
+  private final ReentrantLock lock = new ReentrantLock();
+  private final RateLimitBucket bucket;
+
+  public LocalRateLimitStore(RateLimitBucket bucket) {
+    this.bucket = bucket;
+  }
+
+  @Override
+  public <T> T update(Function<RateLimitBucket, T> change) {
+    lock.lock();
+    try {
+      return change.apply(bucket);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.midas.app.providers.payment;
 
 import com.midas.app.models.Account;
+import java.util.List;
 
 public interface PaymentProvider {
   /** providerName is the name of the payment provider */
@@ -10,14 +11,28 @@ public interface PaymentProvider {
    * createAccount creates a new account in the payment provider.
    *
    * @param details is the details of the account to be created.
+   * @param idempotencyKey key making retries of the same call replay the first result instead of
+   *     creating another account, null if the call must not be deduplicated
    * @return Account
    */
-  Account createAccount(CreateAccount details);
+  Account createAccount(CreateAccount details, String idempotencyKey);
+
+  /**
+   * listAccounts lists the accounts of the payment provider in the provider's own order.
+   *
+   * @param startingAfter provider id of the last account of the previous call, null to start over
+   * @param limit maximum number of accounts returned
+   * @return List<Account> fewer than limit accounts once the end of the list is reached
+   */
+  List<Account> listAccounts(String startingAfter, int limit);
 
   /**
    * updateAccount updates an existing account in the payment provider.
    *
    * @param details is the details of the account to be updated.
+   * @param providerId is the id of the account in the payment provider.
+   * @param idempotencyKey key making retries of the same call replay the first result, null if
+   *     the call must not be deduplicated
    */
-  void updateAccount(CreateAccount details, String providerId);
+  void updateAccount(CreateAccount details, String providerId, String idempotencyKey);
 }
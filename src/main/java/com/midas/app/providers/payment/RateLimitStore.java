@@ -0,0 +1,15 @@
+package com.midas.app.providers.payment;
+
+import com.midas.app.models.RateLimitBucket;
+import java.util.function.Function;
+
+/** RateLimitStore keeps the token bucket of a RateLimiter, in memory or shared by instances. */
+public interface RateLimitStore {
+  /**
+   * update applies a change to the bucket atomically.
+   *
+   * @param change reads and updates the bucket
+   * @return T result of the change
+   */
+  <T> T update(Function<RateLimitBucket, T> change);
+}
@@ -0,0 +1,189 @@
+package com.midas.app.providers.payment;
+
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.RateLimitBucket;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * RateLimiter is an adaptive token bucket in front of a payment provider. Calls take a token and
+ * wait for it when the bucket is empty. The rate grows additively while calls are held back by it,
+ * and is cut by backoffFactor when the provider throttles a call, at most once per cooldown since
+ * the calls in flight at that time are throttled together. A throttled call also pauses every call
+ * for the Retry-After of the provider, or the cooldown if it gave none.
+ *
+ * <p>This settles just under the provider limit instead of alternating between bursts of 429s and
+ * idle retry backoffs. The bucket is per instance, or shared by every instance with a
+ * SharedRateLimitStore.
+ */
+public class RateLimiter {
+  private final String provider;
+  private final Settings settings;
+  private final RateLimitStore store;
+  private final AccountMetrics accountMetrics;
+  private final Clock clock;
+
+  /** rate is the rate last seen in the bucket, read by the rate gauge without touching the store */
+  private volatile double rate;
+
+  /** Settings are the limits of a RateLimiter. */
+  @Getter
+  @Builder
+  public static class Settings {
+    /** initialRate is the number of calls per second a new bucket starts with */
+    private final double initialRate;
+
+    /** minRate is the lowest rate throttling can bring the bucket to */
+    private final double minRate;
+
+    /** maxRate is the highest rate the bucket grows to */
+    private final double maxRate;
+
+    /** burst is the number of tokens an idle bucket accumulates */
+    private final double burst;
+
+    /** increasePerSecond is how much the rate grows per second while calls wait for it */
+    private final double increasePerSecond;
+
+    /** backoffFactor multiplies the rate when the provider throttles a call */
+    private final double backoffFactor;
+
+    /** cooldown is the minimum time between two rate cuts, and the pause without Retry-After */
+    private final Duration cooldown;
+
+    /** maxWait is how long a call waits for a token before being rejected */
+    private final Duration maxWait;
+  }
+
+  public RateLimiter(
+      String provider,
+      Settings settings,
+      RateLimitStore store,
+      AccountMetrics accountMetrics,
+      Clock clock) {
+    this.provider = provider;
+    this.settings = settings;
+    this.store = store;
+    this.accountMetrics = accountMetrics;
+    this.clock = clock;
+    this.rate = settings.getInitialRate();
+    accountMetrics.registerRateLimiter(provider, this, limiter -> limiter.rate);
+  }
+
+  /**
+   * newBucket returns the state of a full bucket at the initial rate.
+   *
+   * @param provider name of the payment provider
+   * @param settings limits of the bucket
+   * @param clock clock of the bucket
+   * @return RateLimitBucket
+   */
+  public static RateLimitBucket newBucket(String provider, Settings settings, Clock clock) {
+    return RateLimitBucket.builder()
+        .name(provider)
+        .rate(settings.getInitialRate())
+        .tokens(settings.getBurst())
+        .refilledAt(OffsetDateTime.now(clock))
+        .build();
+  }
+
+  /**
+   * acquire waits until permits tokens are available and takes them.
+   *
+   * @param permits number of calls about to be made
+   * @throws ProviderUnavailableException if the tokens would not be available within maxWait
+   */
+  public void acquire(int permits) {
+    long waitNanos = reserve(permits);
+    accountMetrics.rateLimitWait(provider, Math.max(waitNanos, 0), waitNanos >= 0);
+    if (waitNanos < 0) {
+      throw new ProviderUnavailableException(
+          String.format("Rate limit of payment provider %s exceeded", provider));
+    }
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProviderUnavailableException(
+            String.format("Interrupted waiting for payment provider %s", provider));
+      }
+    }
+  }
+
+  /**
+   * throttled lowers the rate after the provider rejected a call with 429.
+   *
+   * @param retryAfter pause asked for by the provider, null if none
+   */
+  public void throttled(Duration retryAfter) {
+    accountMetrics.providerThrottled(provider);
+    store.update(bucket -> throttle(bucket, OffsetDateTime.now(clock), retryAfter));
+  }
+
+  /**
+   * reserve takes permits tokens from the bucket, borrowing them from the next refills when it is
+   * empty.
+   *
+   * @param permits number of calls about to be made
+   * @return long nanoseconds to wait before making the calls, -1 if longer than maxWait
+   */
+  long reserve(int permits) {
+    return store.update(bucket -> reserve(bucket, OffsetDateTime.now(clock), permits));
+  }
+
+  private long reserve(RateLimitBucket bucket, OffsetDateTime now, int permits) {
+    long elapsedNanos = Duration.between(bucket.getRefilledAt(), now).toNanos();
+    if (elapsedNanos > 0) {
+      double elapsed = elapsedNanos / 1e9;
+      boolean limited = bucket.getTokens() < permits;
+      boolean coolingDown =
+          bucket.getThrottledAt() != null
+              && bucket.getThrottledAt().plus(settings.getCooldown()).isAfter(now);
+      // grow only when the rate is what holds calls back, and count at most a second of idle time
+      if (limited && !coolingDown) {
+        bucket.setRate(
+            Math.min(
+                settings.getMaxRate(),
+                bucket.getRate() + settings.getIncreasePerSecond() * Math.min(elapsed, 1)));
+      }
+      bucket.setTokens(
+          Math.min(settings.getBurst(), bucket.getTokens() + bucket.getRate() * elapsed));
+      bucket.setRefilledAt(now);
+    }
+
+    double tokens = bucket.getTokens() - permits;
+    long waitNanos = tokens >= 0 ? 0 : (long) (-tokens / bucket.getRate() * 1e9);
+    if (bucket.getResumeAt() != null && bucket.getResumeAt().isAfter(now)) {
+      waitNanos = Math.max(waitNanos, Duration.between(now, bucket.getResumeAt()).toNanos());
+    }
+    if (waitNanos > settings.getMaxWait().toNanos()) {
+      return -1;
+    }
+    bucket.setTokens(tokens);
+    rate = bucket.getRate();
+    return waitNanos;
+  }
+
+  private Void throttle(RateLimitBucket bucket, OffsetDateTime now, Duration retryAfter) {
+    var resumeAt = now.plus(retryAfter == null ? settings.getCooldown() : retryAfter);
+    if (bucket.getResumeAt() == null || resumeAt.isAfter(bucket.getResumeAt())) {
+      bucket.setResumeAt(resumeAt);
+    }
+    if (bucket.getThrottledAt() == null
+        || !bucket.getThrottledAt().plus(settings.getCooldown()).isAfter(now)) {
+      bucket.setRate(
+          Math.max(settings.getMinRate(), bucket.getRate() * settings.getBackoffFactor()));
+      bucket.setThrottledAt(now);
+    }
+    // tokens taken before the throttling were granted at a rate the provider did not sustain
+    bucket.setTokens(Math.min(bucket.getTokens(), 0));
+    rate = bucket.getRate();
+    return null;
+  }
+}
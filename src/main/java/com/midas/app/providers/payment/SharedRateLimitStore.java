@@ -0,0 +1,39 @@
+package com.midas.app.providers.payment;
+
+import com.midas.app.models.RateLimitBucket;
+import com.midas.app.repositories.RateLimitBucketRepository;
+import java.util.function.Function;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * SharedRateLimitStore keeps the bucket in rate_limit_buckets, so that every instance takes its
+ * tokens from the same budget and a throttled instance lowers the rate of all of them. Each update
+ * is a short transaction holding the row lock of the bucket.
+ */
+public class SharedRateLimitStore implements RateLimitStore {
+  private final String name;
+  private final RateLimitBucketRepository repository;
+  private final TransactionTemplate transactionTemplate;
+
+  public SharedRateLimitStore(
+      RateLimitBucket initial,
+      RateLimitBucketRepository repository,
+      TransactionTemplate transactionTemplate) {
+    this.name = initial.getName();
+    this.repository = repository;
+    this.transactionTemplate = transactionTemplate;
+    repository.insertIfAbsent(
+        initial.getName(), initial.getRate(), initial.getTokens(), initial.getRefilledAt());
+  }
+
+  @Override
+  public <T> T update(Function<RateLimitBucket, T> change) {
+    return transactionTemplate.execute(
+        status ->
+            change.apply(
+                repository
+                    .findForUpdate(name)
+                    .orElseThrow(
+                        () -> new IllegalStateException("Missing rate limit bucket " + name))));
+  }
+}
@@ -0,0 +1,48 @@
+package com.midas.app.repositories;
+
+import com.midas.app.models.AccountEvent;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface AccountEventRepository extends JpaRepository<AccountEvent, Long> {
+  /**
+   * lockPending locks the oldest events of the outbox. Events locked by another instance are
+   * skipped rather than waited for, so instances publish disjoint batches in parallel. The locks
+   * are held until the end of the calling transaction.
+   *
+   * @param limit maximum number of events returned
+   * @return List<AccountEvent> in id order
+   */
+  @Query(
+      value = "select * from account_events order by id limit :limit for update skip locked",
+      nativeQuery = true)
+  List<AccountEvent> lockPending(@Param("limit") int limit);
+
+  /**
+   * deleteByIds removes published events from the outbox with a single statement.
+   *
+   * @param ids ids of the published events
+   * @return int number of deleted events
+   */
+  @Modifying
+  @Query("delete from AccountEvent e where e.id in :ids")
+  int deleteByIds(@Param("ids") Collection<Long> ids);
+
+  /**
+   * deleteCreatedBefore deletes the events written before a time, using
+   * idx_account_events_created_at.
+   *
+   * @param time events written before it are deleted
+   * @return int number of deleted events
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from AccountEvent e where e.createdAt < :time")
+  int deleteCreatedBefore(@Param("time") OffsetDateTime time);
+}
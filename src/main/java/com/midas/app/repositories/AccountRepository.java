@@ -1,10 +1,127 @@
 package com.midas.app.repositories;
 
+import com.midas.app.config.CacheConfiguration;
 import com.midas.app.models.Account;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AccountRepository extends JpaRepository<Account, UUID> {
-  Optional<Account> findByEmail(String email);
+  /**
+   * findById looks up an account by id through the accountsById cache. Cached accounts are shared,
+   * callers must copy them before making changes. Cache misses are read from a replica when there
+   * is one; updates carry the version they read, so a stale read is rejected when saved.
+   *
+   * @param id id of the account
+   * @return Optional<Account>
+   */
+  @Override
+  @Cacheable(cacheNames = CacheConfiguration.ACCOUNTS_BY_ID, key = "#p0")
+  @Transactional(readOnly = true)
+  Optional<Account> findById(UUID id);
+
+  /**
+   * findByEmail looks up an account by email, ignoring case. The lower(email) expression matches
+   * the unique index uk_accounts_email_lower so this is a single index probe. Results, including
+   * absent accounts, are cached in accountsByEmail.
+   *
+   * @param email email of the account
+   * @return Optional<Account>
+   */
+  @Cacheable(
+      cacheNames = CacheConfiguration.ACCOUNTS_BY_EMAIL,
+      key = "#p0.toLowerCase(T(java.util.Locale).ROOT)")
+  @Transactional(readOnly = true)
+  @Query("select a from Account a where lower(a.email) = lower(:email)")
+  Optional<Account> findByEmail(@Param("email") String email);
+
+  /**
+   * findVersionById returns the stored version of an account. It bypasses the cache and, unlike
+   * findById, is always read from the primary.
+   *
+   * @param id id of the account
+   * @return Optional<Long>
+   */
+  @Transactional
+  @Query("select a.version from Account a where a.id = :id")
+  Optional<Long> findVersionById(@Param("id") UUID id);
+
+  /**
+   * findCurrentById looks up an account by id on the primary, bypassing the cache.
+   *
+   * @param id id of the account
+   * @return Optional<Account>
+   */
+  @Transactional
+  @Query("select a from Account a where a.id = :id")
+  Optional<Account> findCurrentById(@Param("id") UUID id);
+
+  /**
+   * findExistingEmails returns which of the given lower-cased emails already belong to an account,
+   * probing the unique index uk_accounts_email_lower.
+   *
+   * @param emails lower-cased emails
+   * @return List<String> lower-cased emails already in use
+   */
+  @Query("select lower(a.email) from Account a where lower(a.email) in :emails")
+  List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+  /**
+   * findByProviderIdIn returns the accounts with the given payment provider ids, using
+   * idx_accounts_provider_id.
+   *
+   * @param providerIds ids of the accounts in the payment provider
+   * @return List<Account>
+   */
+  List<Account> findByProviderIdIn(Collection<String> providerIds);
+
+  /**
+   * markReconciled records that a reconciliation found the customers of the given accounts. It is
+   * a single bulk update that bypasses the persistence context and leaves updated_at untouched.
+   *
+   * @param providerIds ids of the accounts in the payment provider
+   * @param reconciledAt start of the reconciliation
+   * @return int number of updated accounts
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update Account a set a.providerReconciledAt = :reconciledAt"
+          + " where a.providerId in :providerIds")
+  int markReconciled(
+      @Param("providerIds") Collection<String> providerIds,
+      @Param("reconciledAt") OffsetDateTime reconciledAt);
+
+  /**
+   * findFirstPage returns the oldest accounts in keyset order.
+   *
+   * @param pageable carries the page size, offset is always 0
+   * @return List<Account>
+   */
+  @Query("select a from Account a order by a.createdAt, a.id")
+  List<Account> findFirstPage(Pageable pageable);
+
+  /**
+   * findPageAfter returns accounts strictly after the given keyset position. The row value
+   * comparison lets Postgres serve it as a range scan on idx_accounts_created_at_id.
+   *
+   * @param createdAt creation time of the last account of the previous page
+   * @param id id of the last account of the previous page
+   * @param pageable carries the page size, offset is always 0
+   * @return List<Account>
+   */
+  @Query(
+      "select a from Account a where (a.createdAt, a.id) > (:createdAt, :id)"
+          + " order by a.createdAt, a.id")
+  List<Account> findPageAfter(
+      @Param("createdAt") OffsetDateTime createdAt, @Param("id") UUID id, Pageable pageable);
 }
@@ -0,0 +1,257 @@
+package com.midas.app.repositories;
+
+import com.midas.app.models.AccountCursor;
+import com.midas.app.models.AccountSearch;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * AccountViewRepository serves the account list, search and export endpoints. Rows are mapped
+ * straight from the result set into AccountDto, skipping entity hydration, the persistence context
+ * and the entity to dto mapping, which roughly halves the allocations per row. Accounts read here
+ * are never managed, so changes go through AccountRepository.
+ *
+ * <p>The search query is built from the filters actually given, so that Postgres plans each
+ * combination with the indexes of its filters:
+ *
+ * <ul>
+ *   <li>email prefixes are ranges on idx_accounts_email_lower_pattern
+ *   <li>name prefixes and substrings use the trigram indexes idx_accounts_first_name_trgm and
+ *       idx_accounts_last_name_trgm
+ *   <li>creation time ranges and keyset pagination use idx_accounts_created_at_id
+ * </ul>
+ *
+ * <p>Queries join the transaction of the caller, so read-only callers are routed to a replica.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AccountViewRepository {
+  /** COLUMNS are the columns of an AccountDto, in the order read by ROW_MAPPER */
+  static final String COLUMNS =
+      "a.id, a.first_name, a.last_name, a.email, a.provider_id, a.provider_type,"
+          + " a.created_at, a.updated_at";
+
+  /** VERSION_COLUMNS are the columns the version of a page is derived from */
+  static final String VERSION_COLUMNS = "a.id, a.version, a.created_at";
+
+  /** EXPORT_FETCH_SIZE is the number of rows the JDBC driver pulls per round trip when streaming */
+  static final int EXPORT_FETCH_SIZE = 1000;
+
+  static final RowMapper<AccountDto> ROW_MAPPER = AccountViewRepository::toAccountDto;
+
+  private static final ProviderTypeEnumDto[] PROVIDER_TYPES = ProviderTypeEnumDto.values();
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  /** SearchQuery is the SQL of a search and its parameters. */
+  @Getter
+  @RequiredArgsConstructor
+  static class SearchQuery {
+    private final String sql;
+    private final Map<String, Object> parameters;
+  }
+
+  /**
+   * findPage returns the accounts after the given keyset position in keyset order.
+   *
+   * @param after keyset position of the last account of the previous page, null for the first
+   * @param limit maximum number of accounts returned
+   * @return List<AccountDto>
+   */
+  public List<AccountDto> findPage(AccountCursor after, int limit) {
+    return search(AccountSearch.builder().build(), after, limit);
+  }
+
+  /**
+   * search returns the accounts matching every filter of the search in keyset order.
+   *
+   * @param search filters of the search
+   * @param after keyset position of the last account of the previous page, null for the first
+   * @param limit maximum number of accounts returned
+   * @return List<AccountDto>
+   */
+  public List<AccountDto> search(AccountSearch search, AccountCursor after, int limit) {
+    var query = buildSearchQuery(search, after, limit);
+    return jdbcTemplate.query(query.getSql(), query.getParameters(), ROW_MAPPER);
+  }
+
+  /**
+   * findPageVersion returns a hash of the id and version of every account of a page, read with the
+   * same keyset query as findPage. Any account of the page created, updated or deleted changes it,
+   * and only the version column is read besides the index, so it is a cheap ETag for the page.
+   *
+   * @param after keyset position of the last account of the previous page, null for the first
+   * @param limit maximum number of accounts of the page
+   * @return String
+   */
+  public String findPageVersion(AccountCursor after, int limit) {
+    var query = buildSearchQuery(VERSION_COLUMNS, AccountSearch.builder().build(), after, limit);
+    return jdbcTemplate.queryForObject(
+        "select md5(coalesce(string_agg(p.id || ':' || p.version, ','"
+            + " order by p.created_at, p.id), '')) from ("
+            + query.getSql()
+            + ") p",
+        query.getParameters(),
+        String.class);
+  }
+
+  /**
+   * streamAll passes every account in keyset order to the consumer, reading them through a
+   * server-side cursor. It must run inside a transaction, the Postgres driver only honours the
+   * fetch size when autocommit is off.
+   *
+   * @param consumer is invoked once per account, in creation order
+   */
+  public void streamAll(Consumer<AccountDto> consumer) {
+    jdbcTemplate
+        .getJdbcOperations()
+        .query(
+            connection -> {
+              var statement =
+                  connection.prepareStatement(
+                      "select " + COLUMNS + " from accounts a order by a.created_at, a.id");
+              statement.setFetchSize(EXPORT_FETCH_SIZE);
+              return statement;
+            },
+            // a block body, so that the lambda is a RowCallbackHandler and not a ResultSetExtractor
+            resultSet -> {
+              consumer.accept(toAccountDto(resultSet, resultSet.getRow()));
+            });
+  }
+
+  /**
+   * toAccountDto maps the current row of a result set selecting COLUMNS to an account dto.
+   *
+   * @param resultSet result set positioned on the row
+   * @param rowNum number of the row
+   * @return AccountDto
+   * @throws SQLException if a column cannot be read
+   */
+  static AccountDto toAccountDto(ResultSet resultSet, int rowNum) throws SQLException {
+    // provider_type holds the enum ordinal
+    int ordinal = resultSet.getInt(6);
+    var providerType = resultSet.wasNull() ? null : PROVIDER_TYPES[ordinal];
+    return new AccountDto()
+        .id(resultSet.getObject(1, UUID.class))
+        .firstName(resultSet.getString(2))
+        .lastName(resultSet.getString(3))
+        .email(resultSet.getString(4))
+        .providerId(resultSet.getString(5))
+        .providerType(providerType)
+        .createdAt(resultSet.getObject(7, OffsetDateTime.class))
+        .updatedAt(resultSet.getObject(8, OffsetDateTime.class));
+  }
+
+  /**
+   * buildSearchQuery returns the SQL of a search, with a condition per filter given.
+   *
+   * @param search filters of the search
+   * @param after keyset position of the last account of the previous page, null for the first
+   * @param limit maximum number of accounts returned
+   * @return SearchQuery
+   */
+  static SearchQuery buildSearchQuery(AccountSearch search, AccountCursor after, int limit) {
+    return buildSearchQuery(COLUMNS, search, after, limit);
+  }
+
+  private static SearchQuery buildSearchQuery(
+      String columns, AccountSearch search, AccountCursor after, int limit) {
+    List<String> conditions = new ArrayList<>();
+    Map<String, Object> parameters = new LinkedHashMap<>();
+
+    if (search.getEmail() != null) {
+      // a range rather than LIKE, so that the index is usable with a bound parameter
+      var prefix = search.getEmail().toLowerCase(Locale.ROOT);
+      conditions.add("lower(a.email) ~>=~ :emailFrom");
+      parameters.put("emailFrom", prefix);
+      var upperBound = prefixUpperBound(prefix);
+      if (upperBound != null) {
+        conditions.add("lower(a.email) ~<~ :emailTo");
+        parameters.put("emailTo", upperBound);
+      }
+    }
+    if (search.getFirstName() != null) {
+      conditions.add("lower(a.first_name) like :firstName");
+      parameters.put("firstName", escapeLike(search.getFirstName()) + "%");
+    }
+    if (search.getLastName() != null) {
+      conditions.add("lower(a.last_name) like :lastName");
+      parameters.put("lastName", escapeLike(search.getLastName()) + "%");
+    }
+    if (search.getName() != null) {
+      conditions.add("(lower(a.first_name) like :name or lower(a.last_name) like :name)");
+      parameters.put("name", "%" + escapeLike(search.getName()) + "%");
+    }
+    if (search.getProviderType() != null) {
+      // provider_type holds the enum ordinal
+      conditions.add("a.provider_type = :providerType");
+      parameters.put("providerType", search.getProviderType().ordinal());
+    }
+    if (search.getCreatedFrom() != null) {
+      conditions.add("a.created_at >= :createdFrom");
+      parameters.put("createdFrom", search.getCreatedFrom());
+    }
+    if (search.getCreatedTo() != null) {
+      conditions.add("a.created_at < :createdTo");
+      parameters.put("createdTo", search.getCreatedTo());
+    }
+    if (after != null) {
+      conditions.add("(a.created_at, a.id) > (:afterCreatedAt, :afterId)");
+      parameters.put("afterCreatedAt", after.getCreatedAt());
+      parameters.put("afterId", after.getId());
+    }
+    parameters.put("limit", limit);
+
+    var sql = new StringBuilder("select ").append(columns).append(" from accounts a");
+    if (!conditions.isEmpty()) {
+      sql.append(" where ").append(String.join(" and ", conditions));
+    }
+    sql.append(" order by a.created_at, a.id limit :limit");
+    return new SearchQuery(sql.toString(), parameters);
+  }
+
+  /**
+   * prefixUpperBound returns the smallest string greater than every string starting with the
+   * prefix, in the code point order of the pattern operators.
+   *
+   * @param prefix lower-cased prefix
+   * @return String, null if there is none
+   */
+  static String prefixUpperBound(String prefix) {
+    int last = prefix.codePointBefore(prefix.length());
+    if (last == Character.MAX_CODE_POINT) {
+      return null;
+    }
+    int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+    return prefix.substring(0, prefix.length() - Character.charCount(last))
+        + Character.toString(next);
+  }
+
+  /**
+   * escapeLike lower-cases text and escapes the LIKE wildcards in it.
+   *
+   * @param text text received from the client
+   * @return String
+   */
+  static String escapeLike(String text) {
+    return text.toLowerCase(Locale.ROOT)
+        .replace("\\", "\\\\")
+        .replace("%", "\\%")
+        .replace("_", "\\_");
+  }
+}
@@ -0,0 +1,92 @@
+package com.midas.app.repositories;
+
+import com.midas.app.models.IdempotencyKey;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+  /**
+   * findById looks up a key on the primary database. Keys are read right after being claimed, a
+   * read replica may not have them yet.
+   *
+   * @param id operation followed by the key sent by the client
+   * @return Optional<IdempotencyKey>
+   */
+  @Override
+  @Transactional
+  Optional<IdempotencyKey> findById(String id);
+
+  /**
+   * insertIfAbsent claims a key with a single statement. Concurrent requests with the same key
+   * race on the primary key, exactly one of them gets 1 back. A key whose TTL has elapsed but that
+   * has not been deleted yet is claimed again, as if it were absent.
+   *
+   * @param id operation followed by the key sent by the client
+   * @param requestHash hash of the request, to detect keys reused for another request
+   * @param createdAt creation time
+   * @param expiresAt time after which the key is deleted
+   * @return int 1 if the key was claimed, 0 if it already existed and has not expired
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      value =
+          "insert into idempotency_keys (id, request_hash, created_at, expires_at)"
+              + " values (:id, :requestHash, :createdAt, :expiresAt)"
+              + " on conflict (id) do update set request_hash = excluded.request_hash,"
+              + " created_at = excluded.created_at, expires_at = excluded.expires_at,"
+              + " workflow_id = null, run_id = null, response = null"
+              + " where idempotency_keys.expires_at < excluded.created_at",
+      nativeQuery = true)
+  int insertIfAbsent(
+      @Param("id") String id,
+      @Param("requestHash") String requestHash,
+      @Param("createdAt") OffsetDateTime createdAt,
+      @Param("expiresAt") OffsetDateTime expiresAt);
+
+  /**
+   * updateExecution records the workflow execution started for a key.
+   *
+   * @param id id of the key
+   * @param workflowId id of the workflow
+   * @param runId run id of the workflow
+   * @return int number of updated keys
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update IdempotencyKey k set k.workflowId = :workflowId, k.runId = :runId where k.id = :id")
+  int updateExecution(
+      @Param("id") String id,
+      @Param("workflowId") String workflowId,
+      @Param("runId") String runId);
+
+  /**
+   * complete records the response of the first successful execution for a key.
+   *
+   * @param id id of the key
+   * @param response serialized response
+   * @return int number of updated keys
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update IdempotencyKey k set k.response = :response where k.id = :id and k.response is null")
+  int complete(@Param("id") String id, @Param("response") String response);
+
+  /**
+   * deleteExpired deletes keys whose TTL has elapsed, using idx_idempotency_keys_expires_at.
+   *
+   * @param now current time
+   * @return int number of deleted keys
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from IdempotencyKey k where k.expiresAt < :now")
+  int deleteExpired(@Param("now") OffsetDateTime now);
+}
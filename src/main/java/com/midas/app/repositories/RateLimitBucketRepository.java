@@ -0,0 +1,47 @@
+package com.midas.app.repositories;
+
+import com.midas.app.models.RateLimitBucket;
+import jakarta.persistence.LockModeType;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RateLimitBucketRepository extends JpaRepository<RateLimitBucket, String> {
+  /**
+   * insertIfAbsent creates the bucket of a payment provider unless another instance already did.
+   *
+   * @param name name of the payment provider
+   * @param rate initial number of calls per second
+   * @param tokens initial number of tokens
+   * @param refilledAt creation time
+   * @return int 1 if the bucket was created, 0 if it already existed
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      value =
+          "insert into rate_limit_buckets (name, rate, tokens, refilled_at)"
+              + " values (:name, :rate, :tokens, :refilledAt) on conflict (name) do nothing",
+      nativeQuery = true)
+  int insertIfAbsent(
+      @Param("name") String name,
+      @Param("rate") double rate,
+      @Param("tokens") double tokens,
+      @Param("refilledAt") OffsetDateTime refilledAt);
+
+  /**
+   * findForUpdate loads a bucket and locks its row until the end of the transaction, so that
+   * instances take tokens one after the other.
+   *
+   * @param name name of the payment provider
+   * @return Optional<RateLimitBucket>
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select b from RateLimitBucket b where b.name = :name")
+  Optional<RateLimitBucket> findForUpdate(@Param("name") String name);
+}
@@ -0,0 +1,24 @@
+package com.midas.app.services;
+
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountEventType;
+import java.util.List;
+
+public interface AccountEventService {
+  /**
+   * record writes the events of account changes to the outbox. It must be called in the
+   * transaction saving the accounts, so that the events are committed if and only if the changes
+   * are.
+   *
+   * @param type kind of change
+   * @param accounts accounts as saved
+   */
+  void record(AccountEventType type, List<Account> accounts);
+
+  /**
+   * publishPending publishes the events waiting in the outbox, a batch per transaction.
+   *
+   * @return int number of events published
+   */
+  int publishPending();
+}
@@ -0,0 +1,173 @@
+package com.midas.app.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.config.OutboxConfiguration;
+import com.midas.app.mappers.Mapper;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountEvent;
+import com.midas.app.models.AccountEventType;
+import com.midas.app.providers.events.AccountEventSink;
+import com.midas.app.repositories.AccountEventRepository;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AccountEventServiceImpl implements the account_events transactional outbox. Every instance
+ * drains it: a batch is locked with FOR UPDATE SKIP LOCKED, published to the sink and deleted in
+ * one transaction, so instances never publish the same batch concurrently and a batch whose
+ * publication or deletion fails stays in the outbox to be published again.
+ */
+@Service
+@RequiredArgsConstructor
+public class AccountEventServiceImpl implements AccountEventService {
+  private final Logger logger = LoggerFactory.getLogger(AccountEventServiceImpl.class);
+
+  private final AccountEventRepository accountEventRepository;
+
+  private final AccountEventSink accountEventSink;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final ObjectMapper objectMapper;
+
+  private final AccountMetrics accountMetrics;
+
+  private final OutboxConfiguration outboxConfiguration;
+
+  /**
+   * record writes one event per account to the outbox, in the transaction of the caller. The
+   * inserts are batched like those of the accounts.
+   *
+   * @param type kind of change
+   * @param accounts accounts as saved
+   */
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void record(AccountEventType type, List<Account> accounts) {
+    var now = OffsetDateTime.now();
+    List<AccountEvent> events = new ArrayList<>(accounts.size());
+    for (var account : accounts) {
+      events.add(
+          AccountEvent.builder()
+              .accountId(account.getId())
+              .type(type)
+              .accountVersion(account.getVersion())
+              .payload(toPayload(account))
+              .createdAt(now)
+              .build());
+    }
+    accountEventRepository.saveAll(events);
+    accountMetrics.accountEvents("recorded", events.size());
+  }
+
+  /**
+   * publishPending publishes full batches until the outbox is drained or maxBatchesPerPoll is
+   * reached.
+   *
+   * @return int number of events published
+   */
+  @Override
+  public int publishPending() {
+    int published = 0;
+    for (int i = 0; i < outboxConfiguration.getMaxBatchesPerPoll(); i++) {
+      var events = transactionTemplate.execute(status -> publishBatch());
+      var now = OffsetDateTime.now();
+      events.forEach(
+          event -> accountMetrics.accountEventLag(Duration.between(event.getCreatedAt(), now)));
+      accountMetrics.accountEvents("published", events.size());
+
+      published += events.size();
+      if (events.size() < outboxConfiguration.getBatchSize()) {
+        break;
+      }
+    }
+    return published;
+  }
+
+  /**
+   * publish drains the outbox on every poll interval when the publisher is enabled and a sink is
+   * configured.
+   */
+  @Scheduled(
+      fixedDelayString = "${outbox.poll-interval:PT1S}",
+      initialDelayString = "${outbox.poll-interval:PT1S}")
+  public void publish() {
+    if (!outboxConfiguration.isPublishing()) {
+      return;
+    }
+    try {
+      publishPending();
+    } catch (RuntimeException e) {
+      // the failed batch was rolled back and is published again on the next poll
+      logger.warn("could not publish account events", e);
+    }
+  }
+
+  /**
+   * cleanUp deletes the events older than retention when no sink publishes them, and refreshes the
+   * account.events.pending gauge. The count is taken on an interval rather than on every scrape,
+   * since it reads the whole outbox.
+   */
+  @Scheduled(
+      fixedDelayString = "${outbox.cleanup-interval:PT1M}",
+      initialDelayString = "${outbox.poll-interval:PT1S}")
+  public void cleanUp() {
+    try {
+      if (outboxConfiguration.isExpiring()) {
+        var deleted =
+            accountEventRepository.deleteCreatedBefore(
+                OffsetDateTime.now().minus(outboxConfiguration.getRetention()));
+        if (deleted > 0) {
+          logger.warn("deleted {} unpublished account events older than retention", deleted);
+          accountMetrics.accountEvents("expired", deleted);
+        }
+      }
+      accountMetrics.accountEventsPending(accountEventRepository.count());
+    } catch (RuntimeException e) {
+      logger.warn("could not clean up account events", e);
+    }
+  }
+
+  /**
+   * publishBatch locks the oldest events, publishes them and deletes them. It runs in a
+   * transaction, which releases the locks and keeps the events if anything fails.
+   *
+   * @return List<AccountEvent> events published
+   */
+  private List<AccountEvent> publishBatch() {
+    var events = accountEventRepository.lockPending(outboxConfiguration.getBatchSize());
+    if (events.isEmpty()) {
+      return events;
+    }
+
+    try {
+      accountEventSink.publish(events);
+    } catch (RuntimeException e) {
+      accountMetrics.accountEvents("failed", events.size());
+      throw e;
+    }
+    accountEventRepository.deleteByIds(events.stream().map(AccountEvent::getId).toList());
+    return events;
+  }
+
+  private String toPayload(Account account) {
+    try {
+      return objectMapper.writeValueAsString(Mapper.toAccountDto(account));
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -1,30 +1,113 @@
 package com.midas.app.services;
 
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountOperation;
+import com.midas.app.models.AccountSearch;
+import com.midas.app.models.AccountsPage;
+import com.midas.app.models.BatchItemResult;
+import com.midas.generated.model.AccountDto;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface AccountService {
   /**
    * createAccount creates a new account in the system and payment provider by initiating workflow.
    *
    * @param details is the details of the account to be created.
+   * @param idempotencyKey key sent by the client to make retries safe, null if none
    * @return Account
    */
-  Account createAccount(Account details);
+  Account createAccount(Account details, String idempotencyKey);
 
   /**
-   * getAccounts returns a list of accounts.
+   * createAccountAsync starts creating a new account in the system and payment provider and
+   * returns as soon as the workflow has been started.
    *
-   * @return List<Account>
+   * @param details is the details of the account to be created.
+   * @return AccountOperation
+   */
+  AccountOperation createAccountAsync(Account details);
+
+  /**
+   * createAccounts creates new accounts in the system and payment provider with a single batch
+   * workflow.
+   *
+   * @param details is the details of the accounts to be created.
+   * @return List<BatchItemResult> one result per account, in the order of details
+   */
+  List<BatchItemResult> createAccounts(List<Account> details);
+
+  /**
+   * getAccountOperation returns the status of an asynchronous account operation.
+   *
+   * @param operationId id returned when the operation was started
+   * @return AccountOperation
+   */
+  AccountOperation getAccountOperation(String operationId);
+
+  /**
+   * getAccounts returns a page of accounts ordered by creation time.
+   *
+   * @param limit maximum number of accounts in the page
+   * @param cursor opaque cursor of the previous page, null for the first page
+   * @return AccountsPage
+   */
+  AccountsPage getAccounts(int limit, String cursor);
+
+  /**
+   * getAccountsPageVersion returns the version of a page of accounts, which changes whenever an
+   * account of the page is created, updated or deleted.
+   *
+   * @param limit maximum number of accounts in the page
+   * @param cursor opaque cursor of the previous page, null for the first page
+   * @return String
+   */
+  String getAccountsPageVersion(int limit, String cursor);
+
+  /**
+   * getAccount returns an account by id.
+   *
+   * @param id id of the account
+   * @return Account
+   */
+  Account getAccount(UUID id);
+
+  /**
+   * getCurrentAccount returns the version of an account currently stored, for responses whose
+   * ETag must not lag behind updates.
+   *
+   * @param id id of the account
+   * @return Account
+   */
+  Account getCurrentAccount(UUID id);
+
+  /**
+   * searchAccounts returns a page of the accounts matching every filter of the search, ordered by
+   * creation time.
+   *
+   * @param search filters of the search
+   * @param limit maximum number of accounts in the page
+   * @param cursor opaque cursor of the previous page, null for the first page
+   * @return AccountsPage
+   */
+  AccountsPage searchAccounts(AccountSearch search, int limit, String cursor);
+
+  /**
+   * exportAccounts streams every account to the given consumer one row at a time, without
+   * materializing the table in memory.
+   *
+   * @param consumer is invoked once per account, in creation order
    */
-  List<Account> getAccounts();
+  void exportAccounts(Consumer<AccountDto> consumer);
 
   /**
    * updateAccount updates an existing account in the system and payment provider by initiating
    * workflow
    *
    * @param updatedDetails is the details of the account to be updated.
+   * @param idempotencyKey key sent by the client to make retries safe, null if none
    * @return Account
    */
-  Account updateAccount(Account updatedDetails);
+  Account updateAccount(Account updatedDetails, String idempotencyKey);
 }
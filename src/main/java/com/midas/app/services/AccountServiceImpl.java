@@ -1,91 +1,535 @@
 package com.midas.app.services;
 
+import com.midas.app.config.WorkflowConfiguration;
 import com.midas.app.exceptions.ApiException;
+import com.midas.app.exceptions.InvalidRequestException;
 import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.exceptions.ResourceConflictException;
 import com.midas.app.exceptions.ResourceNotFoundException;
+import com.midas.app.metrics.AccountMetrics;
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountCursor;
+import com.midas.app.models.AccountField;
+import com.midas.app.models.AccountOperation;
+import com.midas.app.models.AccountSearch;
+import com.midas.app.models.AccountsPage;
+import com.midas.app.models.BatchItemResult;
 import com.midas.app.repositories.AccountRepository;
+import com.midas.app.repositories.AccountViewRepository;
 import com.midas.app.workflows.CreateAccountWorkflow;
+import com.midas.app.workflows.CreateAccountsBatchWorkflow;
 import com.midas.app.workflows.UpdateAccountWorkflow;
+import com.midas.app.workflows.WorkflowMemo;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.OperationStatusEnumDto;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.enums.v1.WorkflowExecutionStatus;
+import io.temporal.api.workflow.v1.WorkflowExecutionInfo;
+import io.temporal.api.workflowservice.v1.DescribeWorkflowExecutionRequest;
 import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowExecutionAlreadyStarted;
+import io.temporal.client.WorkflowFailedException;
 import io.temporal.client.WorkflowOptions;
+import io.temporal.client.WorkflowStub;
 import io.temporal.common.RetryOptions;
+import io.temporal.failure.ApplicationFailure;
 import io.temporal.workflow.Workflow;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 @Service
 @RequiredArgsConstructor
 public class AccountServiceImpl implements AccountService {
+  static final String CREATE_ACCOUNT_OPERATION = "createAccount";
+  static final String UPDATE_ACCOUNT_OPERATION = "updateAccount";
+
+  /** CREATE_ACCOUNT_WORKFLOW_TYPE is the Temporal type of CreateAccountWorkflow executions */
+  static final String CREATE_ACCOUNT_WORKFLOW_TYPE = CreateAccountWorkflow.class.getSimpleName();
+
   private final Logger logger = Workflow.getLogger(AccountServiceImpl.class);
 
   private final WorkflowClient workflowClient;
 
   private final AccountRepository accountRepository;
 
+  private final AccountViewRepository accountViewRepository;
+
+  private final AccountMetrics accountMetrics;
+
+  private final WorkflowConfiguration workflowConfiguration;
+
+  private final IdempotencyService idempotencyService;
+
   /**
-   * createAccount creates a new account in the system or provider.
+   * createAccount creates a new account in the system or provider. With an idempotency key,
+   * retries of the request replay the first response instead of creating the account again.
    *
    * @param details is the details of the account to be created.
+   * @param idempotencyKey key sent by the client, null if none
    * @return Account
    */
   @Override
-  public Account createAccount(Account details) {
+  public Account createAccount(Account details, String idempotencyKey) {
+    try {
+      return accountMetrics.recordWorkflow(
+          "createAccount",
+          () ->
+              idempotencyService.execute(
+                  CREATE_ACCOUNT_OPERATION,
+                  idempotencyKey,
+                  details,
+                  () -> startCreateAccount(details)));
+    } catch (WorkflowFailedException e) {
+      throw translateWorkflowFailure(e);
+    }
+  }
 
-    // check for already created account with same email
-    accountRepository
-        .findByEmail(details.getEmail())
-        .ifPresent(
-            account -> {
-              throw new ResourceAlreadyExistsException(
-                  String.format("Account with email %s is already present", details.getEmail()));
-            });
+  /**
+   * createAccountAsync starts the workflow creating a new account and returns without waiting for
+   * it to complete.
+   *
+   * @param details is the details of the account to be created.
+   * @return AccountOperation
+   */
+  @Override
+  public AccountOperation createAccountAsync(Account details) {
+    checkEmailAvailable(details.getEmail());
 
-    var options = buildWorkflowOptions(CreateAccountWorkflow.QUEUE_NAME, details.getEmail());
+    var options =
+        buildWorkflowOptions(
+            CreateAccountWorkflow.QUEUE_NAME, details.getEmail(), workflowMemo());
 
-    logger.info("initiating workflow to create account for email: {}", details.getEmail());
+    logger.info("starting workflow to create account for email: {}", details.getEmail());
 
     var workflow = workflowClient.newWorkflowStub(CreateAccountWorkflow.class, options);
 
-    return workflow.createAccount(details);
+    WorkflowExecution execution;
+    try {
+      execution = WorkflowClient.start(workflow::createAccount, details);
+    } catch (WorkflowExecutionAlreadyStarted e) {
+      throw new ResourceAlreadyExistsException(
+          String.format(
+              "Account creation for email %s is already in progress", details.getEmail()));
+    }
+
+    return AccountOperation.builder()
+        .id(AccountOperation.encodeId(execution.getWorkflowId(), execution.getRunId()))
+        .status(OperationStatusEnumDto.RUNNING)
+        .build();
   }
 
   /**
-   * getAccounts returns a list of accounts.
+   * createAccounts creates new accounts with a single batch workflow. Items whose email is already
+   * in use, or repeated within the batch, are rejected upfront with one indexed query and never
+   * reach the payment provider. The workflow runs once, only its activities are retried.
    *
-   * @return List<Account>
+   * @param details is the details of the accounts to be created.
+   * @return List<BatchItemResult> one result per account, in the order of details
    */
   @Override
-  public List<Account> getAccounts() {
-    return accountRepository.findAll();
+  public List<BatchItemResult> createAccounts(List<Account> details) {
+    var emails = details.stream().map(account -> normalizeEmail(account.getEmail())).toList();
+    var existingEmails = new HashSet<>(accountRepository.findExistingEmails(emails));
+
+    var results = new BatchItemResult[details.size()];
+    var seenEmails = new HashSet<String>();
+    List<Integer> accepted = new ArrayList<>();
+    for (int i = 0; i < details.size(); i++) {
+      var email = emails.get(i);
+      if (existingEmails.contains(email) || !seenEmails.add(email)) {
+        results[i] =
+            BatchItemResult.failed(
+                i,
+                String.format(
+                    "Account with email %s is already present", details.get(i).getEmail()));
+      } else {
+        accepted.add(i);
+      }
+    }
+
+    if (!accepted.isEmpty()) {
+      // activities are retried one by one, a retry of the whole workflow would run every payment
+      // account creation of the batch again
+      var options =
+          WorkflowOptions.newBuilder(
+                  buildWorkflowOptions(
+                      CreateAccountsBatchWorkflow.QUEUE_NAME,
+                      "create-accounts-batch-" + UUID.randomUUID(),
+                      Map.of()))
+              .setRetryOptions(RetryOptions.newBuilder().setMaximumAttempts(1).build())
+              .build();
+
+      logger.info(
+          "initiating workflow to create {} accounts out of a batch of {}",
+          accepted.size(),
+          details.size());
+
+      var workflow = workflowClient.newWorkflowStub(CreateAccountsBatchWorkflow.class, options);
+      var created =
+          accountMetrics.recordWorkflow(
+              "createAccounts",
+              () -> workflow.createAccounts(accepted.stream().map(details::get).toList()));
+      for (var result : created) {
+        int index = accepted.get(result.getIndex());
+        result.setIndex(index);
+        results[index] = result;
+      }
+    }
+
+    return Arrays.asList(results);
+  }
+
+  /**
+   * getAccountOperation returns the status of an asynchronous account operation. The status comes
+   * from the workflow execution, the account is only fetched once the workflow has completed. Only
+   * executions of CreateAccountWorkflow are operations, ids of other workflows are not found.
+   *
+   * @param operationId id returned when the operation was started
+   * @return AccountOperation
+   */
+  @Override
+  public AccountOperation getAccountOperation(String operationId) {
+    var ids = AccountOperation.decodeId(operationId);
+    var operation = AccountOperation.builder().id(operationId);
+
+    var execution = describeWorkflowExecution(ids[0], ids[1]);
+    if (!CREATE_ACCOUNT_WORKFLOW_TYPE.equals(execution.getType().getName())) {
+      throw new ResourceNotFoundException("Account operation not found");
+    }
+    var status = execution.getStatus();
+    if (status == WorkflowExecutionStatus.WORKFLOW_EXECUTION_STATUS_RUNNING
+        || status == WorkflowExecutionStatus.WORKFLOW_EXECUTION_STATUS_CONTINUED_AS_NEW) {
+      return operation.status(OperationStatusEnumDto.RUNNING).build();
+    }
+    if (status != WorkflowExecutionStatus.WORKFLOW_EXECUTION_STATUS_COMPLETED
+        && status != WorkflowExecutionStatus.WORKFLOW_EXECUTION_STATUS_FAILED) {
+      return operation
+          .status(OperationStatusEnumDto.FAILED)
+          .message(String.format("Account operation ended with status %s", status))
+          .build();
+    }
+
+    var workflow =
+        workflowClient.newUntypedWorkflowStub(ids[0], Optional.of(ids[1]), Optional.empty());
+    try {
+      return operation
+          .status(OperationStatusEnumDto.SUCCEEDED)
+          .account(workflow.getResult(Account.class))
+          .build();
+    } catch (WorkflowFailedException e) {
+      var failure = translateWorkflowFailure(e);
+      return operation
+          .status(OperationStatusEnumDto.FAILED)
+          .message(
+              failure instanceof ApiException apiException
+                  ? apiException.getApiError().getMessage()
+                  : "Account operation failed")
+          .build();
+    }
+  }
+
+  /**
+   * getAccounts returns a page of accounts ordered by creation time. One extra row is fetched to
+   * find out whether a next page exists without issuing a count query. The version of the page is
+   * read first in the same transaction, so the page is at least as recent as its version.
+   *
+   * @param limit maximum number of accounts in the page
+   * @param cursor opaque cursor of the previous page, null for the first page
+   * @return AccountsPage
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public AccountsPage getAccounts(int limit, String cursor) {
+    var after = StringUtils.hasText(cursor) ? AccountCursor.decode(cursor) : null;
+    var version = accountViewRepository.findPageVersion(after, limit + 1);
+    return toPage(accountViewRepository.findPage(after, limit + 1), limit, version);
+  }
+
+  /**
+   * getAccountsPageVersion returns the version of a page of accounts, a hash of the id and version
+   * of its accounts and of the first account of the next page, so that the next cursor is covered
+   * too.
+   *
+   * @param limit maximum number of accounts in the page
+   * @param cursor opaque cursor of the previous page, null for the first page
+   * @return String
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public String getAccountsPageVersion(int limit, String cursor) {
+    var after = StringUtils.hasText(cursor) ? AccountCursor.decode(cursor) : null;
+    return accountViewRepository.findPageVersion(after, limit + 1);
+  }
+
+  /**
+   * getAccount returns an account by id.
+   *
+   * @param id id of the account
+   * @return Account, shared with the account cache and not to be changed
+   * @throws ResourceNotFoundException if there is no account with this id
+   */
+  @Override
+  public Account getAccount(UUID id) {
+    return accountRepository
+        .findById(id)
+        .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+  }
+
+  /**
+   * getCurrentAccount returns the version of an account currently stored. The version is read from
+   * the primary and, while the cached account is of that version, the cached account is returned;
+   * otherwise the cache or the replica it was read from is behind, and the account is read from the
+   * primary. An account without version, saved before versions were kept, is returned as cached.
+   *
+   * @param id id of the account
+   * @return Account, possibly shared with the account cache and not to be changed
+   * @throws ResourceNotFoundException if there is no account with this id
+   */
+  @Override
+  public Account getCurrentAccount(UUID id) {
+    var version = accountRepository.findVersionById(id);
+    var account = getAccount(id);
+    if (version.isEmpty() || version.get().equals(account.getVersion())) {
+      return account;
+    }
+    return accountRepository
+        .findCurrentById(id)
+        .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
+  }
+
+  /**
+   * searchAccounts returns a page of the accounts matching every filter of the search, ordered by
+   * creation time. Like getAccounts, one extra row tells whether a next page exists.
+   *
+   * @param search filters of the search
+   * @param limit maximum number of accounts in the page
+   * @param cursor opaque cursor of the previous page, null for the first page
+   * @return AccountsPage
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public AccountsPage searchAccounts(AccountSearch search, int limit, String cursor) {
+    var after = StringUtils.hasText(cursor) ? AccountCursor.decode(cursor) : null;
+    return toPage(accountViewRepository.search(search, after, limit + 1), limit, null);
+  }
+
+  private static AccountsPage toPage(List<AccountDto> accounts, int limit, String version) {
+    if (accounts.size() <= limit) {
+      return new AccountsPage(accounts, null, version);
+    }
+
+    var page = accounts.subList(0, limit);
+    return new AccountsPage(page, AccountCursor.of(page.getLast()).encode(), version);
+  }
+
+  /**
+   * exportAccounts streams every account to the given consumer. Rows are mapped straight to dtos,
+   * so nothing accumulates in the persistence context however large the table.
+   *
+   * @param consumer is invoked once per account, in creation order
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public void exportAccounts(Consumer<AccountDto> consumer) {
+    accountViewRepository.streamAll(consumer);
   }
 
   /**
    * updateAccount updates an existing account in the system and payment provider by initiating
-   * workflow
+   * workflow. With an idempotency key, retries of the request replay the first response instead of
+   * updating the account again, even once they change nothing. Otherwise an update that changes
+   * nothing returns the account as it is without starting a workflow.
    *
    * @param updatedDetails is the details of the account to be updated.
+   * @param idempotencyKey key sent by the client, null if none
    * @return Account
    */
   @Override
-  public Account updateAccount(Account updatedDetails) {
-    // check for existing account with the given id
+  public Account updateAccount(Account updatedDetails, String idempotencyKey) {
+    // check for existing account with the given id, copied since cached accounts are shared
     var existingDetails =
         accountRepository
             .findById(updatedDetails.getId())
+            .map(account -> account.toBuilder().build())
             .orElseThrow(() -> new ResourceNotFoundException("Account not found"));
 
-    updateExistingAccountObject(existingDetails, updatedDetails);
+    var changedFields = updateExistingAccountObject(existingDetails, updatedDetails);
+
+    try {
+      if (changedFields.isEmpty()) {
+        // a retry of an update that succeeded changes nothing, it gets the stored response
+        var replayed =
+            idempotencyService.replay(UPDATE_ACCOUNT_OPERATION, idempotencyKey, updatedDetails);
+        if (replayed.isPresent()) {
+          return replayed.get();
+        }
+        logger.info("update of account {} changes nothing, skipping", updatedDetails.getId());
+        return existingDetails;
+      }
+
+      return accountMetrics.recordWorkflow(
+          "updateAccount",
+          () ->
+              idempotencyService.execute(
+                  UPDATE_ACCOUNT_OPERATION,
+                  idempotencyKey,
+                  updatedDetails,
+                  () -> startUpdateAccount(existingDetails, changedFields)));
+    } catch (WorkflowFailedException e) {
+      throw translateWorkflowFailure(e);
+    }
+  }
+
+  /**
+   * startCreateAccount starts the workflow creating a new account.
+   *
+   * @param details is the details of the account to be created.
+   * @return WorkflowStub of the started workflow
+   */
+  private WorkflowStub startCreateAccount(Account details) {
+    checkEmailAvailable(details.getEmail());
+
+    var options =
+        buildWorkflowOptions(
+            CreateAccountWorkflow.QUEUE_NAME, details.getEmail(), workflowMemo());
+
+    logger.info("initiating workflow to create account for email: {}", details.getEmail());
+
+    var workflow = workflowClient.newWorkflowStub(CreateAccountWorkflow.class, options);
+    try {
+      WorkflowClient.start(workflow::createAccount, details);
+    } catch (WorkflowExecutionAlreadyStarted e) {
+      throw new ResourceAlreadyExistsException(
+          String.format(
+              "Account creation for email %s is already in progress", details.getEmail()));
+    }
+    return WorkflowStub.fromTyped(workflow);
+  }
+
+  /**
+   * startUpdateAccount starts the workflow updating an existing account. The account carries the
+   * version it was read at, so the update is rejected if the account changed in the meantime.
+   *
+   * @param updatedDetails is the existing account with the requested changes applied.
+   * @param changedFields fields changed by the update
+   * @return WorkflowStub of the started workflow
+   */
+  private WorkflowStub startUpdateAccount(
+      Account updatedDetails, Set<AccountField> changedFields) {
+    if (changedFields.contains(AccountField.EMAIL)) {
+      checkEmailAvailable(updatedDetails.getEmail());
+    }
 
     var options =
-        buildWorkflowOptions(UpdateAccountWorkflow.QUEUE_NAME, updatedDetails.getId().toString());
-    logger.info("initiating workflow to update account for accountId {}", updatedDetails.getId());
+        buildWorkflowOptions(
+            UpdateAccountWorkflow.QUEUE_NAME, updatedDetails.getId().toString(), workflowMemo());
+    logger.info(
+        "initiating workflow to update {} of account {}", changedFields, updatedDetails.getId());
     var workflow = workflowClient.newWorkflowStub(UpdateAccountWorkflow.class, options);
+    try {
+      WorkflowClient.start(workflow::updateAccount, updatedDetails, changedFields);
+    } catch (WorkflowExecutionAlreadyStarted e) {
+      throw new ResourceAlreadyExistsException(
+          String.format(
+              "An update of account %s is already in progress", updatedDetails.getId()));
+    }
+    return WorkflowStub.fromTyped(workflow);
+  }
+
+  /**
+   * checkEmailAvailable is a cheap cached check for an already created account with the same
+   * email, so that obvious duplicates never reach the payment provider. Concurrent duplicates, or
+   * duplicates created through another instance since the lookup was cached, are rejected by the
+   * unique index when the account is saved.
+   *
+   * @param email email of the account to be created
+   */
+  private void checkEmailAvailable(String email) {
+    accountRepository
+        .findByEmail(email)
+        .ifPresent(
+            account -> {
+              throw new ResourceAlreadyExistsException(
+                  String.format("Account with email %s is already present", email));
+            });
+  }
+
+  /**
+   * normalizeEmail returns the email the way the unique index compares it.
+   *
+   * @param email email as received
+   * @return String
+   */
+  private static String normalizeEmail(String email) {
+    return email.toLowerCase(Locale.ROOT);
+  }
 
-    return workflow.updateAccount(existingDetails);
+  /**
+   * describeWorkflowExecution returns the type and status of a workflow execution.
+   *
+   * @param workflowId id of the workflow
+   * @param runId run id of the workflow execution
+   * @return WorkflowExecutionInfo
+   */
+  private WorkflowExecutionInfo describeWorkflowExecution(String workflowId, String runId) {
+    var request =
+        DescribeWorkflowExecutionRequest.newBuilder()
+            .setNamespace(workflowClient.getOptions().getNamespace())
+            .setExecution(
+                WorkflowExecution.newBuilder().setWorkflowId(workflowId).setRunId(runId).build())
+            .build();
+    try {
+      return workflowClient
+          .getWorkflowServiceStubs()
+          .blockingStub()
+          .describeWorkflowExecution(request)
+          .getWorkflowExecutionInfo();
+    } catch (StatusRuntimeException e) {
+      if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+        throw new ResourceNotFoundException("Account operation not found");
+      }
+      if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+        throw new InvalidRequestException("Invalid operation id");
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * translateWorkflowFailure maps a workflow failure caused by a known api exception thrown in an
+   * activity back to that exception, so it is reported with the right status code.
+   *
+   * @param e exception thrown by the workflow stub
+   * @return RuntimeException
+   */
+  private RuntimeException translateWorkflowFailure(WorkflowFailedException e) {
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof ApplicationFailure failure) {
+        if (ResourceAlreadyExistsException.class.getName().equals(failure.getType())) {
+          return new ResourceAlreadyExistsException(failure.getOriginalMessage());
+        }
+        if (ResourceConflictException.class.getName().equals(failure.getType())) {
+          return new ResourceConflictException(failure.getOriginalMessage());
+        }
+      }
+    }
+    return e;
   }
 
   /**
@@ -94,17 +538,27 @@ public class AccountServiceImpl implements AccountService {
    *
    * @param existingAccount Account fetched from database
    * @param updatedDetails Account received in request
+   * @return the fields whose value changed
    */
-  private void updateExistingAccountObject(Account existingAccount, Account updatedDetails) {
-    if (StringUtils.hasText(updatedDetails.getFirstName())) {
+  static Set<AccountField> updateExistingAccountObject(
+      Account existingAccount, Account updatedDetails) {
+    Set<AccountField> changedFields = EnumSet.noneOf(AccountField.class);
+    if (StringUtils.hasText(updatedDetails.getFirstName())
+        && !updatedDetails.getFirstName().equals(existingAccount.getFirstName())) {
       existingAccount.setFirstName(updatedDetails.getFirstName());
+      changedFields.add(AccountField.FIRST_NAME);
     }
-    if ((StringUtils.hasText(updatedDetails.getLastName()))) {
+    if (StringUtils.hasText(updatedDetails.getLastName())
+        && !updatedDetails.getLastName().equals(existingAccount.getLastName())) {
       existingAccount.setLastName(updatedDetails.getLastName());
+      changedFields.add(AccountField.LAST_NAME);
     }
-    if ((StringUtils.hasText(updatedDetails.getEmail()))) {
+    if (StringUtils.hasText(updatedDetails.getEmail())
+        && !updatedDetails.getEmail().equalsIgnoreCase(existingAccount.getEmail())) {
       existingAccount.setEmail(updatedDetails.getEmail());
+      changedFields.add(AccountField.EMAIL);
     }
+    return changedFields;
   }
 
   /**
@@ -112,9 +566,11 @@ public class AccountServiceImpl implements AccountService {
    *
    * @param taskQueue name of the queue in which workflow should be initiated
    * @param workflowId id that will be used to uniquely identify workflow
+   * @param memo memo attached to the workflow execution
    * @return WorkflowOptions
    */
-  private WorkflowOptions buildWorkflowOptions(String taskQueue, String workflowId) {
+  static WorkflowOptions buildWorkflowOptions(
+      String taskQueue, String workflowId, Map<String, Object> memo) {
     return WorkflowOptions.newBuilder()
         .setTaskQueue(taskQueue)
         .setRetryOptions(
@@ -123,6 +579,16 @@ public class AccountServiceImpl implements AccountService {
                 .setDoNotRetry(new String[] {ApiException.class.getName()})
                 .build())
         .setWorkflowId(workflowId)
+        .setMemo(memo)
         .build();
   }
+
+  /**
+   * workflowMemo returns the memo passed to the create and update workflows.
+   *
+   * @return Map<String, Object>
+   */
+  private Map<String, Object> workflowMemo() {
+    return Map.of(WorkflowMemo.LOCAL_SAVE_ACTIVITY, workflowConfiguration.isLocalSaveActivity());
+  }
 }
@@ -0,0 +1,15 @@
+package com.midas.app.services;
+
+import com.midas.app.models.Account;
+import java.util.Collection;
+
+public interface AccountSyncService {
+  /**
+   * applyProviderUpdates applies changes made in a payment provider to the matching accounts.
+   *
+   * @param provider name of the payment provider
+   * @param updates accounts as known by the provider, at most one per provider id, each with the
+   *     time of the change in providerSyncedAt
+   */
+  void applyProviderUpdates(String provider, Collection<Account> updates);
+}
@@ -0,0 +1,143 @@
+package com.midas.app.services;
+
+import com.midas.app.config.CacheConfiguration;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountEventType;
+import com.midas.app.repositories.AccountRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Service
+@RequiredArgsConstructor
+public class AccountSyncServiceImpl implements AccountSyncService {
+  private final AccountRepository accountRepository;
+
+  private final CacheManager cacheManager;
+
+  private final AccountMetrics accountMetrics;
+
+  private final AccountEventService accountEventService;
+
+  /**
+   * applyProviderUpdates loads the matching accounts with one query on provider_id and changes
+   * them in place, so the whole batch is written as JDBC batched updates by a single flush. Updates
+   * older than the last change applied to an account are skipped. Provider times have a precision
+   * of a second, so an update of the same second is applied; one that would not change the
+   * account, such as the event of our own write, is skipped. Accounts unknown here are
+   * skipped too: they are either still being created by a workflow, which will save them with the
+   * provider data, or were created outside of the service. The events of the changed accounts are
+   * written to the account_events outbox in the same transaction.
+   *
+   * @param provider name of the payment provider
+   * @param updates accounts as known by the provider, at most one per provider id, each with the
+   *     time of the change in providerSyncedAt
+   */
+  @Override
+  @Transactional
+  public void applyProviderUpdates(String provider, Collection<Account> updates) {
+    Map<String, Account> updatesByProviderId =
+        updates.stream().collect(Collectors.toMap(Account::getProviderId, Function.identity()));
+
+    int stale = 0;
+    int unchanged = 0;
+    List<Account> changed = new ArrayList<>();
+    List<String> previousEmails = new ArrayList<>();
+    for (var account : accountRepository.findByProviderIdIn(updatesByProviderId.keySet())) {
+      var update = updatesByProviderId.get(account.getProviderId());
+      if (account.getProviderSyncedAt() != null
+          && update.getProviderSyncedAt().isBefore(account.getProviderSyncedAt())) {
+        stale++;
+        continue;
+      }
+      if (!changes(account, update)) {
+        unchanged++;
+        continue;
+      }
+      previousEmails.add(account.getEmail());
+      // a customer without name or email keeps the values known here
+      if (update.getFirstName() != null) {
+        account.setFirstName(update.getFirstName());
+        account.setLastName(update.getLastName());
+      }
+      if (update.getEmail() != null) {
+        account.setEmail(update.getEmail());
+      }
+      account.setProviderSyncedAt(update.getProviderSyncedAt());
+      changed.add(account);
+    }
+
+    if (!changed.isEmpty()) {
+      // flushed first, so that the events carry the incremented versions
+      accountRepository.flush();
+      accountEventService.record(AccountEventType.UPDATED, changed);
+    }
+
+    accountMetrics.providerEvents(provider, "applied", changed.size());
+    accountMetrics.providerEvents(provider, "stale", stale);
+    accountMetrics.providerEvents(provider, "unchanged", unchanged);
+    accountMetrics.providerEvents(
+        provider, "unknown", updates.size() - changed.size() - stale - unchanged);
+
+    evictAfterCommit(changed, previousEmails);
+  }
+
+  /**
+   * changes tells whether a provider update would change an account. A customer without name or
+   * email keeps the values known here.
+   *
+   * @param account account as stored
+   * @param update account as known by the provider
+   * @return boolean
+   */
+  static boolean changes(Account account, Account update) {
+    if (update.getFirstName() != null
+        && (!update.getFirstName().equals(account.getFirstName())
+            || !Objects.equals(update.getLastName(), account.getLastName()))) {
+      return true;
+    }
+    return update.getEmail() != null && !update.getEmail().equals(account.getEmail());
+  }
+
+  /**
+   * evictAfterCommit evicts changed accounts from the account caches once the transaction has
+   * committed, so that a concurrent lookup cannot cache the previous version again.
+   *
+   * @param changed changed accounts
+   * @param previousEmails emails of the changed accounts before the change
+   */
+  private void evictAfterCommit(List<Account> changed, List<String> previousEmails) {
+    if (changed.isEmpty()) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            Cache byId = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID);
+            Cache byEmail = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_EMAIL);
+            if (byId == null || byEmail == null) {
+              return;
+            }
+            for (int i = 0; i < changed.size(); i++) {
+              byId.evict(changed.get(i).getId());
+              byEmail.evict(previousEmails.get(i).toLowerCase(Locale.ROOT));
+              byEmail.evict(changed.get(i).getEmail().toLowerCase(Locale.ROOT));
+            }
+          }
+        });
+  }
+}
@@ -0,0 +1,33 @@
+package com.midas.app.services;
+
+import com.midas.app.models.Account;
+import io.temporal.client.WorkflowStub;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+  /**
+   * execute runs an account operation at most once per idempotency key. Duplicates of a
+   * successful request replay its response, duplicates of a request still in progress wait for the
+   * same workflow.
+   *
+   * @param operation name of the operation the key is scoped to
+   * @param idempotencyKey key sent by the client, null to always execute the operation
+   * @param request request of the operation, a key reused for another request is rejected
+   * @param start starts the workflow of the operation
+   * @return Account result of the workflow
+   */
+  Account execute(
+      String operation, String idempotencyKey, Object request, Supplier<WorkflowStub> start);
+
+  /**
+   * replay answers a request from its idempotency key without running the operation, when the key
+   * holds the execution of an earlier request.
+   *
+   * @param operation name of the operation the key is scoped to
+   * @param idempotencyKey key sent by the client, null if none
+   * @param request request of the operation, a key reused for another request is rejected
+   * @return Optional<Account> empty if the key does not hold an execution
+   */
+  Optional<Account> replay(String operation, String idempotencyKey, Object request);
+}
@@ -0,0 +1,268 @@
+package com.midas.app.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.config.IdempotencyConfiguration;
+import com.midas.app.exceptions.InvalidRequestException;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.models.Account;
+import com.midas.app.models.IdempotencyKey;
+import com.midas.app.repositories.IdempotencyKeyRepository;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowFailedException;
+import io.temporal.client.WorkflowStub;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+@Service
+@RequiredArgsConstructor
+public class IdempotencyServiceImpl implements IdempotencyService {
+  /** ATTACH_POLL_MIN_INTERVAL is the first wait for the first request to start its workflow */
+  static final Duration ATTACH_POLL_MIN_INTERVAL = Duration.ofMillis(50);
+
+  /** ATTACH_POLL_MAX_INTERVAL caps the wait, which doubles after every poll */
+  static final Duration ATTACH_POLL_MAX_INTERVAL = Duration.ofSeconds(1);
+
+  private final Logger logger = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+
+  private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+  private final WorkflowClient workflowClient;
+
+  private final ObjectMapper objectMapper;
+
+  private final IdempotencyConfiguration idempotencyConfiguration;
+
+  /**
+   * execute claims the key with a single insert. The request that claims it runs the operation,
+   * every other one is answered from the key: the stored response once the operation has
+   * succeeded, otherwise the result of the workflow started by the first request. A key past its
+   * TTL is treated as absent, even before it is deleted, and is claimed again.
+   *
+   * @param operation name of the operation the key is scoped to
+   * @param idempotencyKey key sent by the client, null to always execute the operation
+   * @param request request of the operation, a key reused for another request is rejected
+   * @param start starts the workflow of the operation
+   * @return Account result of the workflow
+   */
+  @Override
+  public Account execute(
+      String operation, String idempotencyKey, Object request, Supplier<WorkflowStub> start) {
+    if (!StringUtils.hasText(idempotencyKey)) {
+      return start.get().getResult(Account.class);
+    }
+
+    var id = operation + ":" + idempotencyKey;
+    var requestHash = hash(request);
+    var deadline = System.nanoTime() + idempotencyConfiguration.getAttachTimeout().toNanos();
+    var pollInterval = ATTACH_POLL_MIN_INTERVAL;
+
+    while (true) {
+      var now = OffsetDateTime.now();
+      if (idempotencyKeyRepository.insertIfAbsent(
+              id, requestHash, now, now.plus(idempotencyConfiguration.getTtl()))
+          == 1) {
+        return executeFirst(id, start);
+      }
+
+      // the first request may have failed and released the key in between, claim it again
+      Optional<IdempotencyKey> key = idempotencyKeyRepository.findById(id);
+      if (key.isEmpty() || key.get().getExpiresAt().isBefore(now)) {
+        continue;
+      }
+      var answer = answer(key.get(), requestHash);
+      if (answer.isPresent()) {
+        return answer.get();
+      }
+      var remaining = Duration.ofNanos(deadline - System.nanoTime());
+      if (remaining.isNegative() || remaining.isZero()) {
+        throw new ResourceAlreadyExistsException(
+            "A request with the same Idempotency-Key is already in progress");
+      }
+      sleep(pollInterval.compareTo(remaining) < 0 ? pollInterval : remaining);
+      pollInterval = nextPollInterval(pollInterval);
+    }
+  }
+
+  /**
+   * replay answers a request from its idempotency key without running the operation: the stored
+   * response, or the result of the workflow still running for it. Operations that turn out to have
+   * nothing to do call it, so that a retry of a request that already succeeded gets the same
+   * response rather than the current state.
+   *
+   * @param operation name of the operation the key is scoped to
+   * @param idempotencyKey key sent by the client, null if none
+   * @param request request of the operation, a key reused for another request is rejected
+   * @return Optional<Account> empty if the key does not hold an execution
+   */
+  @Override
+  public Optional<Account> replay(String operation, String idempotencyKey, Object request) {
+    if (!StringUtils.hasText(idempotencyKey)) {
+      return Optional.empty();
+    }
+    return idempotencyKeyRepository
+        .findById(operation + ":" + idempotencyKey)
+        .filter(key -> !key.getExpiresAt().isBefore(OffsetDateTime.now()))
+        .flatMap(key -> answer(key, hash(request)));
+  }
+
+  /**
+   * answer answers a duplicate request from the key of the first one.
+   *
+   * @param key key of the first request
+   * @param requestHash hash of the duplicate request
+   * @return Optional<Account> empty while the first request has not started its workflow
+   * @throws InvalidRequestException if the key was used for a different request
+   */
+  private Optional<Account> answer(IdempotencyKey key, String requestHash) {
+    if (!requestHash.equals(key.getRequestHash())) {
+      throw new InvalidRequestException(
+          "Idempotency-Key has already been used for a different request");
+    }
+    if (key.getResponse() != null) {
+      logger.info("replaying response for idempotency key {}", key.getId());
+      return Optional.of(fromJson(key.getResponse()));
+    }
+    if (key.getRunId() != null) {
+      logger.info(
+          "attaching to workflow {} for idempotency key {}", key.getWorkflowId(), key.getId());
+      return Optional.of(attach(key));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * nextPollInterval doubles the wait between two polls of a key, up to ATTACH_POLL_MAX_INTERVAL.
+   * A first request that starts its workflow at once is seen within milliseconds, one that hangs
+   * costs a read per second rather than twenty.
+   *
+   * @param interval last wait
+   * @return Duration next wait
+   */
+  static Duration nextPollInterval(Duration interval) {
+    var next = interval.multipliedBy(2);
+    return next.compareTo(ATTACH_POLL_MAX_INTERVAL) < 0 ? next : ATTACH_POLL_MAX_INTERVAL;
+  }
+
+  /** deleteExpiredKeys deletes keys whose TTL has elapsed. */
+  @Scheduled(fixedDelayString = "${idempotency.cleanup-interval:PT10M}")
+  public void deleteExpiredKeys() {
+    var deleted = idempotencyKeyRepository.deleteExpired(OffsetDateTime.now());
+    if (deleted > 0) {
+      logger.info("deleted {} expired idempotency keys", deleted);
+    }
+  }
+
+  /**
+   * executeFirst runs the operation for the request that claimed the key. Failures are not
+   * replayed: the key is released so the client can retry it, but only once the outcome is known.
+   * If the workflow was started and waiting for its result failed, the key keeps the execution and
+   * retries attach to the workflow instead of starting it again.
+   *
+   * @param id id of the key
+   * @param start starts the workflow of the operation
+   * @return Account result of the workflow
+   */
+  private Account executeFirst(String id, Supplier<WorkflowStub> start) {
+    WorkflowStub workflow;
+    try {
+      workflow = start.get();
+      var execution = workflow.getExecution();
+      idempotencyKeyRepository.updateExecution(id, execution.getWorkflowId(), execution.getRunId());
+    } catch (RuntimeException e) {
+      idempotencyKeyRepository.deleteById(id);
+      throw e;
+    }
+    return awaitResult(id, workflow);
+  }
+
+  /**
+   * attach waits for the workflow started by the first request. If that request is gone, the
+   * outcome is recorded here instead.
+   *
+   * @param key key of the first request
+   * @return Account result of the workflow
+   */
+  private Account attach(IdempotencyKey key) {
+    return awaitResult(
+        key.getId(),
+        workflowClient.newUntypedWorkflowStub(
+            key.getWorkflowId(), Optional.of(key.getRunId()), Optional.empty()));
+  }
+
+  /**
+   * awaitResult waits for the workflow of a key and records its response. A failed workflow
+   * releases the key, any other exception leaves it attached to the workflow.
+   *
+   * @param id id of the key
+   * @param workflow workflow of the key
+   * @return Account result of the workflow
+   */
+  private Account awaitResult(String id, WorkflowStub workflow) {
+    Account account;
+    try {
+      account = workflow.getResult(Account.class);
+    } catch (WorkflowFailedException e) {
+      idempotencyKeyRepository.deleteById(id);
+      throw e;
+    }
+    idempotencyKeyRepository.complete(id, toJson(account));
+    return account;
+  }
+
+  /**
+   * hash returns the SHA-256 of the JSON representation of a request.
+   *
+   * @param request request of the operation
+   * @return String hex encoded hash
+   */
+  String hash(Object request) {
+    try {
+      var json = objectMapper.writeValueAsString(request);
+      var digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(json.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private String toJson(Account account) {
+    try {
+      return objectMapper.writeValueAsString(account);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Account fromJson(String response) {
+    try {
+      return objectMapper.readValue(response, Account.class);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for idempotency key", e);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.midas.app.services;
+
+import com.midas.generated.model.ProviderTypeEnumDto;
+
+public interface ReconciliationService {
+  /**
+   * startReconciliation starts reconciling accounts with the customers of a payment provider,
+   * unless a reconciliation with that provider is already running.
+   *
+   * @param providerType payment provider to reconcile with
+   * @return String id of the reconciliation workflow
+   */
+  String startReconciliation(ProviderTypeEnumDto providerType);
+}
@@ -0,0 +1,65 @@
+package com.midas.app.services;
+
+import com.midas.app.config.ReconciliationConfiguration;
+import com.midas.app.models.ReconciliationState;
+import com.midas.app.workflows.ReconcileAccountsWorkflow;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowExecutionAlreadyStarted;
+import io.temporal.client.WorkflowOptions;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class ReconciliationServiceImpl implements ReconciliationService {
+  private final Logger logger = LoggerFactory.getLogger(ReconciliationServiceImpl.class);
+
+  private final WorkflowClient workflowClient;
+
+  private final ReconciliationConfiguration reconciliationConfiguration;
+
+  /**
+   * startReconciliation starts the reconciliation workflow. Its id is derived from the provider, so
+   * at most one reconciliation per provider runs at a time across instances.
+   *
+   * @param providerType payment provider to reconcile with
+   * @return String id of the reconciliation workflow
+   */
+  @Override
+  public String startReconciliation(ProviderTypeEnumDto providerType) {
+    var workflowId = "reconcile-accounts-" + providerType.getValue();
+    var options =
+        WorkflowOptions.newBuilder()
+            .setTaskQueue(ReconcileAccountsWorkflow.QUEUE_NAME)
+            .setWorkflowId(workflowId)
+            .build();
+    var state =
+        ReconciliationState.builder()
+            .providerType(providerType)
+            .repair(reconciliationConfiguration.isRepair())
+            .chunkSize(reconciliationConfiguration.getChunkSize())
+            .repairRatePerSecond(reconciliationConfiguration.getRepairRatePerSecond())
+            .build();
+
+    var workflow = workflowClient.newWorkflowStub(ReconcileAccountsWorkflow.class, options);
+    try {
+      WorkflowClient.start(workflow::reconcile, state);
+      logger.info("started reconciliation {}", workflowId);
+    } catch (WorkflowExecutionAlreadyStarted e) {
+      logger.info("reconciliation {} is already running", workflowId);
+    }
+    return workflowId;
+  }
+
+  /** scheduledReconciliation reconciles every payment provider on reconciliation.cron. */
+  @Scheduled(cron = "${reconciliation.cron:-}")
+  public void scheduledReconciliation() {
+    for (var providerType : ProviderTypeEnumDto.values()) {
+      startReconciliation(providerType);
+    }
+  }
+}
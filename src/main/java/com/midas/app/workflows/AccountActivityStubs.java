@@ -0,0 +1,69 @@
+package com.midas.app.workflows;
+
+import com.midas.app.activities.AccountActivity;
+import com.midas.app.exceptions.ApiException;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.exceptions.ResourceConflictException;
+import io.temporal.activity.ActivityOptions;
+import io.temporal.activity.LocalActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+
+final class AccountActivityStubs {
+  /**
+   * RETRY_OPTIONS retries activities until their workflow times out, except for failures that
+   * would happen again: conflicts, and requests the payment provider rejected (a plain
+   * ApiException, its ProviderUnavailableException subclass is transient and retried)
+   */
+  private static final RetryOptions RETRY_OPTIONS =
+      RetryOptions.newBuilder()
+          .setDoNotRetry(
+              ApiException.class.getName(),
+              ResourceAlreadyExistsException.class.getName(),
+              ResourceConflictException.class.getName())
+          .build();
+
+  // Prevent instantiation
+  private AccountActivityStubs() {}
+
+  /**
+   * newActivityStub creates the stub of regular account activities, used for payment provider
+   * calls.
+   *
+   * @return AccountActivity
+   */
+  static AccountActivity newActivityStub() {
+    return Workflow.newActivityStub(
+        AccountActivity.class,
+        ActivityOptions.newBuilder()
+            .setStartToCloseTimeout(Duration.ofMinutes(5))
+            .setRetryOptions(RETRY_OPTIONS)
+            .build());
+  }
+
+  /**
+   * newSaveActivityStub creates the stub used to persist accounts. When the workflow was started
+   * with the LOCAL_SAVE_ACTIVITY memo, saves run as local activities in the workflow worker: no
+   * task queue dispatch and a single marker event in the history instead of a scheduled, started
+   * and completed activity plus an extra workflow task.
+   *
+   * @return AccountActivity
+   */
+  static AccountActivity newSaveActivityStub() {
+    if (!Boolean.TRUE.equals(Workflow.getMemo(WorkflowMemo.LOCAL_SAVE_ACTIVITY, Boolean.class))) {
+      return newActivityStub();
+    }
+    return Workflow.newLocalActivityStub(
+        AccountActivity.class,
+        LocalActivityOptions.newBuilder()
+            .setStartToCloseTimeout(Duration.ofSeconds(10))
+            .setScheduleToCloseTimeout(Duration.ofMinutes(1))
+            .setRetryOptions(
+                RetryOptions.newBuilder(RETRY_OPTIONS)
+                    .setInitialInterval(Duration.ofMillis(100))
+                    .setMaximumInterval(Duration.ofSeconds(5))
+                    .build())
+            .build());
+  }
+}
@@ -1,11 +1,11 @@
 package com.midas.app.workflows;
 
 import com.midas.app.activities.AccountActivity;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
 import com.midas.app.models.Account;
-import io.temporal.activity.ActivityOptions;
+import io.temporal.failure.ActivityFailure;
 import io.temporal.spring.boot.WorkflowImpl;
 import io.temporal.workflow.Workflow;
-import java.time.Duration;
 import org.slf4j.Logger;
 
 @WorkflowImpl(taskQueues = CreateAccountWorkflow.QUEUE_NAME)
@@ -14,11 +14,11 @@ public class CreateAccountWorkflowImpl implements CreateAccountWorkflow {
 
   private final AccountActivity accountActivity;
 
+  private final AccountActivity saveActivity;
+
   public CreateAccountWorkflowImpl() {
-    this.accountActivity =
-        Workflow.newActivityStub(
-            AccountActivity.class,
-            ActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofMinutes(5)).build());
+    this.accountActivity = AccountActivityStubs.newActivityStub();
+    this.saveActivity = AccountActivityStubs.newSaveActivityStub();
   }
 
   /**
@@ -30,7 +30,12 @@ public class CreateAccountWorkflowImpl implements CreateAccountWorkflow {
   @Override
   public Account createAccount(Account details) {
     Account account = accountActivity.createPaymentAccount(details);
-    Account dbAccount = accountActivity.saveAccount(account);
+    Account dbAccount;
+    try {
+      dbAccount = saveActivity.saveAccount(account);
+    } catch (ActivityFailure e) {
+      throw WorkflowFailures.nonRetryable(e, ResourceAlreadyExistsException.class);
+    }
     logger.info(
         "successfully created account for email {} accountId {} providerType {} providerId {}",
         dbAccount.getEmail(),
@@ -0,0 +1,21 @@
+package com.midas.app.workflows;
+
+import com.midas.app.models.Account;
+import com.midas.app.models.BatchItemResult;
+import io.temporal.workflow.WorkflowInterface;
+import io.temporal.workflow.WorkflowMethod;
+import java.util.List;
+
+@WorkflowInterface
+public interface CreateAccountsBatchWorkflow {
+  String QUEUE_NAME = "create-accounts-batch-workflow";
+
+  /**
+   * createAccounts creates new accounts in the system and payment provider.
+   *
+   * @param details is the details of the accounts to be created.
+   * @return List<BatchItemResult> one result per account, in the order of details
+   */
+  @WorkflowMethod
+  List<BatchItemResult> createAccounts(List<Account> details);
+}
@@ -0,0 +1,141 @@
+package com.midas.app.workflows;
+
+import com.midas.app.activities.AccountActivity;
+import com.midas.app.exceptions.ApiException;
+import com.midas.app.models.Account;
+import com.midas.app.models.BatchItemResult;
+import io.temporal.activity.ActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.failure.ActivityFailure;
+import io.temporal.failure.ApplicationFailure;
+import io.temporal.spring.boot.WorkflowImpl;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+
+@WorkflowImpl(taskQueues = CreateAccountsBatchWorkflow.QUEUE_NAME)
+public class CreateAccountsBatchWorkflowImpl implements CreateAccountsBatchWorkflow {
+  /** MAX_PARALLEL_PAYMENT_ACCOUNTS bounds the number of concurrent payment provider calls */
+  static final int MAX_PARALLEL_PAYMENT_ACCOUNTS = 10;
+
+  /** SAVE_CHUNK_SIZE is the number of accounts persisted by a single saveAccounts activity */
+  static final int SAVE_CHUNK_SIZE = 200;
+
+  private final Logger logger = Workflow.getLogger(CreateAccountsBatchWorkflowImpl.class);
+
+  private final AccountActivity accountActivity;
+
+  public CreateAccountsBatchWorkflowImpl() {
+    this.accountActivity =
+        Workflow.newActivityStub(
+            AccountActivity.class,
+            ActivityOptions.newBuilder()
+                .setStartToCloseTimeout(Duration.ofMinutes(5))
+                // doNotRetry matches the exact type: ApiException is a request the provider
+                // rejected, while its subclass ProviderUnavailableException (throttling, server
+                // errors, rate limiter and bulkhead timeouts) is retried with backoff
+                .setRetryOptions(
+                    RetryOptions.newBuilder()
+                        .setMaximumAttempts(3)
+                        .setDoNotRetry(ApiException.class.getName())
+                        .build())
+                .build());
+  }
+
+  /**
+   * createAccounts creates the payment accounts with bounded parallelism, a new creation starting
+   * as soon as any other completes, then persists the successful ones in chunks.
+   *
+   * @param details is the details of the accounts to be created.
+   * @return List<BatchItemResult> one result per account, in the order of details
+   */
+  @Override
+  public List<BatchItemResult> createAccounts(List<Account> details) {
+    var results = new BatchItemResult[details.size()];
+
+    // index of the item -> pending payment account creation, in start order
+    Map<Integer, Promise<Account>> inFlight = new LinkedHashMap<>();
+    List<Integer> created = new ArrayList<>();
+    int next = 0;
+    while (next < details.size() || !inFlight.isEmpty()) {
+      if (next < details.size() && inFlight.size() < MAX_PARALLEL_PAYMENT_ACCOUNTS) {
+        inFlight.put(
+            next, Async.function(accountActivity::createPaymentAccount, details.get(next)));
+        next++;
+      } else {
+        awaitAny(inFlight, created, results);
+      }
+    }
+    Collections.sort(created);
+
+    for (int from = 0; from < created.size(); from += SAVE_CHUNK_SIZE) {
+      var indexes = created.subList(from, Math.min(from + SAVE_CHUNK_SIZE, created.size()));
+      var chunk = indexes.stream().map(index -> results[index].getAccount()).toList();
+      var saved = accountActivity.saveAccounts(chunk);
+      for (var result : saved) {
+        int index = indexes.get(result.getIndex());
+        if (!result.isSucceeded()) {
+          // an account with the same email was created since the batch was checked, the payment
+          // account is left to reconciliation
+          logger.warn(
+              "payment account {} of item {} not saved: {}",
+              results[index].getAccount().getProviderId(),
+              index,
+              result.getMessage());
+        }
+        result.setIndex(index);
+        results[index] = result;
+      }
+    }
+
+    logger.info(
+        "batch of {} accounts processed, {} created",
+        details.size(),
+        Arrays.stream(results).filter(BatchItemResult::isSucceeded).count());
+    return Arrays.asList(results);
+  }
+
+  /**
+   * awaitAny waits for any pending payment account creation to complete and records the outcome
+   * of every completed one, so that a slow item does not hold up the others.
+   *
+   * @param inFlight pending payment account creations by item index
+   * @param created indexes of the items whose payment account was created
+   * @param results results by item index
+   */
+  private void awaitAny(
+      Map<Integer, Promise<Account>> inFlight, List<Integer> created, BatchItemResult[] results) {
+    try {
+      Promise.anyOf(inFlight.values()).get();
+    } catch (ActivityFailure e) {
+      // recorded below, with the item it belongs to
+    }
+    var entries = inFlight.entrySet().iterator();
+    while (entries.hasNext()) {
+      var entry = entries.next();
+      if (!entry.getValue().isCompleted()) {
+        continue;
+      }
+      entries.remove();
+      int index = entry.getKey();
+      try {
+        results[index] = BatchItemResult.succeeded(index, entry.getValue().get());
+        created.add(index);
+      } catch (ActivityFailure e) {
+        var message =
+            e.getCause() instanceof ApplicationFailure cause
+                ? cause.getOriginalMessage()
+                : e.getMessage();
+        results[index] = BatchItemResult.failed(index, message);
+      }
+    }
+  }
+}
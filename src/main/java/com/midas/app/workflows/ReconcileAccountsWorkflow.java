@@ -0,0 +1,20 @@
+package com.midas.app.workflows;
+
+import com.midas.app.models.ReconciliationReport;
+import com.midas.app.models.ReconciliationState;
+import io.temporal.workflow.WorkflowInterface;
+import io.temporal.workflow.WorkflowMethod;
+
+@WorkflowInterface
+public interface ReconcileAccountsWorkflow {
+  String QUEUE_NAME = "reconcile-accounts-workflow";
+
+  /**
+   * reconcile compares accounts with the customers of a payment provider.
+   *
+   * @param state checkpoint to start from
+   * @return ReconciliationReport differences found
+   */
+  @WorkflowMethod
+  ReconciliationReport reconcile(ReconciliationState state);
+}
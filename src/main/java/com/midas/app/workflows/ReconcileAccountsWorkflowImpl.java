@@ -0,0 +1,80 @@
+package com.midas.app.workflows;
+
+import com.midas.app.activities.ReconciliationActivity;
+import com.midas.app.models.ReconciliationReport;
+import com.midas.app.models.ReconciliationState;
+import com.midas.app.models.ReconciliationState.Phase;
+import io.temporal.activity.ActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.spring.boot.WorkflowImpl;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.slf4j.Logger;
+
+@WorkflowImpl(taskQueues = ReconcileAccountsWorkflow.QUEUE_NAME)
+public class ReconcileAccountsWorkflowImpl implements ReconcileAccountsWorkflow {
+  /**
+   * CHUNKS_PER_RUN is the number of chunks reconciled before continuing as new, which keeps the
+   * history of a run bounded whatever the number of customers
+   */
+  static final int CHUNKS_PER_RUN = 100;
+
+  private final Logger logger = Workflow.getLogger(ReconcileAccountsWorkflowImpl.class);
+
+  private final ReconciliationActivity reconciliationActivity;
+
+  public ReconcileAccountsWorkflowImpl() {
+    this.reconciliationActivity =
+        Workflow.newActivityStub(
+            ReconciliationActivity.class,
+            ActivityOptions.newBuilder()
+                .setStartToCloseTimeout(Duration.ofMinutes(10))
+                .setHeartbeatTimeout(Duration.ofMinutes(1))
+                .setRetryOptions(RetryOptions.newBuilder().setMaximumAttempts(10).build())
+                .build());
+  }
+
+  /**
+   * reconcile streams provider customers, then accounts, one chunk per activity. Only the cursors
+   * and the counts are kept in the workflow, and every CHUNKS_PER_RUN chunks the workflow
+   * continues as new from them.
+   *
+   * @param state checkpoint to start from
+   * @return ReconciliationReport differences found
+   */
+  @Override
+  public ReconciliationReport reconcile(ReconciliationState state) {
+    if (state.getStartedAt() == null) {
+      state.setStartedAt(
+          OffsetDateTime.ofInstant(
+              Instant.ofEpochMilli(Workflow.currentTimeMillis()), ZoneOffset.UTC));
+    }
+
+    for (int chunk = 0; chunk < CHUNKS_PER_RUN; chunk++) {
+      if (state.getPhase() == Phase.CUSTOMERS) {
+        var result = reconciliationActivity.reconcileCustomers(state);
+        state.getReport().add(result.getReport());
+        state.setProviderCursor(result.getNextCursor());
+        if (result.getNextCursor() == null) {
+          state.setPhase(Phase.ACCOUNTS);
+        }
+      } else {
+        var result = reconciliationActivity.reconcileAccounts(state);
+        state.getReport().add(result.getReport());
+        state.setAccountCursor(result.getNextCursor());
+        if (result.getNextCursor() == null) {
+          logger.info(
+              "reconciliation with {} completed: {}", state.getProviderType(), state.getReport());
+          return state.getReport();
+        }
+      }
+    }
+
+    Workflow.continueAsNew(state);
+    // not reached, continueAsNew ends the run
+    return state.getReport();
+  }
+}
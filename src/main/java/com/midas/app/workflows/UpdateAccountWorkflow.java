@@ -1,8 +1,10 @@
 package com.midas.app.workflows;
 
 import com.midas.app.models.Account;
+import com.midas.app.models.AccountField;
 import io.temporal.workflow.WorkflowInterface;
 import io.temporal.workflow.WorkflowMethod;
+import java.util.Set;
 
 @WorkflowInterface
 public interface UpdateAccountWorkflow {
@@ -12,8 +14,9 @@ public interface UpdateAccountWorkflow {
    * updateAccount updates an existing account in the system and payment provider.
    *
    * @param details is the details of the account to be updated.
+   * @param changedFields fields changed by the update, null if unknown
    * @return Account
    */
   @WorkflowMethod
-  Account updateAccount(Account details);
+  Account updateAccount(Account details, Set<AccountField> changedFields);
 }
@@ -1,36 +1,57 @@
 package com.midas.app.workflows;
 
 import com.midas.app.activities.AccountActivity;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.exceptions.ResourceConflictException;
 import com.midas.app.models.Account;
-import io.temporal.activity.ActivityOptions;
+import com.midas.app.models.AccountField;
+import io.temporal.failure.ActivityFailure;
 import io.temporal.spring.boot.WorkflowImpl;
 import io.temporal.workflow.Workflow;
-import java.time.Duration;
+import java.util.Set;
 import org.slf4j.Logger;
 
 @WorkflowImpl(taskQueues = UpdateAccountWorkflow.QUEUE_NAME)
 public class UpdateAccountWorkflowImpl implements UpdateAccountWorkflow {
+  /** CHECK_VERSION_CHANGE marks the executions that check the version before the provider call */
+  static final String CHECK_VERSION_CHANGE = "checkAccountVersion";
+
   private final Logger logger = Workflow.getLogger(UpdateAccountWorkflowImpl.class);
 
   private final AccountActivity accountActivity;
 
+  private final AccountActivity saveActivity;
+
   public UpdateAccountWorkflowImpl() {
-    this.accountActivity =
-        Workflow.newActivityStub(
-            AccountActivity.class,
-            ActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofMinutes(5)).build());
+    this.accountActivity = AccountActivityStubs.newActivityStub();
+    this.saveActivity = AccountActivityStubs.newSaveActivityStub();
   }
 
   /**
-   * updateAccount updates an existing account in the system and payment provider.
+   * updateAccount updates an existing account in the payment provider and then in the system. The
+   * version of the account is checked before the provider is called, so a stale update fails with
+   * a conflict without changing anything. Executions started before changed fields were passed get
+   * null and update every field, as they did.
    *
    * @param details is the details of the account to be updated.
+   * @param changedFields fields changed by the update, null if unknown
    * @return Account
    */
   @Override
-  public Account updateAccount(Account details) {
-    accountActivity.updatePaymentAccount(details);
-    Account account = accountActivity.saveAccount(details);
+  public Account updateAccount(Account details, Set<AccountField> changedFields) {
+    checkAccountVersion(details);
+    var syncedAt = accountActivity.updatePaymentAccount(details, changedFields);
+    // executions started when the activity returned nothing keep the previous time
+    if (syncedAt != null) {
+      details.setProviderSyncedAt(syncedAt);
+    }
+    Account account;
+    try {
+      account = saveActivity.saveAccount(details);
+    } catch (ActivityFailure e) {
+      throw WorkflowFailures.nonRetryable(
+          e, ResourceAlreadyExistsException.class, ResourceConflictException.class);
+    }
     logger.info(
         "successfully updated account details for accountId {} providerType {} providerId {}",
         account.getId(),
@@ -38,4 +59,22 @@ public class UpdateAccountWorkflowImpl implements UpdateAccountWorkflow {
         account.getProviderId());
     return account;
   }
+
+  /**
+   * checkAccountVersion fails the workflow with a conflict if the account changed since it was
+   * read. Executions started before the check was added replay without it.
+   *
+   * @param details is the details of the account to be updated.
+   */
+  private void checkAccountVersion(Account details) {
+    if (Workflow.getVersion(CHECK_VERSION_CHANGE, Workflow.DEFAULT_VERSION, 1)
+        == Workflow.DEFAULT_VERSION) {
+      return;
+    }
+    try {
+      saveActivity.checkAccountVersion(details);
+    } catch (ActivityFailure e) {
+      throw WorkflowFailures.nonRetryable(e, ResourceConflictException.class);
+    }
+  }
 }
@@ -0,0 +1,32 @@
+package com.midas.app.workflows;
+
+import io.temporal.failure.ActivityFailure;
+import io.temporal.failure.ApplicationFailure;
+
+final class WorkflowFailures {
+  // Prevent instantiation
+  private WorkflowFailures() {}
+
+  /**
+   * nonRetryable converts an activity failure caused by one of the given exception types into a
+   * non retryable ApplicationFailure, so the workflow fails once instead of being retried by its
+   * retry policy. Other failures are returned untouched.
+   *
+   * @param failure activity failure caught in the workflow
+   * @param types exception types that should not be retried
+   * @return RuntimeException to be thrown by the workflow
+   */
+  @SafeVarargs
+  static RuntimeException nonRetryable(
+      ActivityFailure failure, Class<? extends Exception>... types) {
+    if (failure.getCause() instanceof ApplicationFailure cause) {
+      for (Class<? extends Exception> type : types) {
+        if (type.getName().equals(cause.getType())) {
+          return ApplicationFailure.newNonRetryableFailure(
+              cause.getOriginalMessage(), cause.getType());
+        }
+      }
+    }
+    return failure;
+  }
+}
@@ -0,0 +1,9 @@
+package com.midas.app.workflows;
+
+public final class WorkflowMemo {
+  /** LOCAL_SAVE_ACTIVITY is a Boolean memo telling workflows to save accounts locally */
+  public static final String LOCAL_SAVE_ACTIVITY = "localSaveActivity";
+
+  // Prevent instantiation
+  private WorkflowMemo() {}
+}
@@ -0,0 +1,14 @@
+-- Runs after Hibernate has created the schema (spring.jpa.defer-datasource-initialization).
+-- Objects that cannot be expressed with JPA annotations live here.
+
+-- Case-insensitive email uniqueness, also serves AccountRepository.findByEmail
+CREATE UNIQUE INDEX IF NOT EXISTS uk_accounts_email_lower ON accounts (lower(email));
+
+-- Account search, see AccountViewRepository. Email prefixes are matched as ranges with the
+-- pattern operators, which use this index whatever the collation and also in generic plans.
+CREATE INDEX IF NOT EXISTS idx_accounts_email_lower_pattern ON accounts (lower(email) text_pattern_ops);
+
+-- Trigram indexes serve both prefix and substring matches on names
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_accounts_first_name_trgm ON accounts USING gin (lower(first_name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_accounts_last_name_trgm ON accounts USING gin (lower(last_name) gin_trgm_ops);
@@ -0,0 +1,376 @@
+package com.midas.app.activities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.config.CacheConfiguration;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.exceptions.ResourceConflictException;
+import com.midas.app.mappers.AccountMapper;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountEventType;
+import com.midas.app.models.AccountField;
+import com.midas.app.models.BatchItemResult;
+import com.midas.app.providers.payment.PaymentProvider;
+import com.midas.app.providers.payment.PaymentProviderFactory;
+import com.midas.app.repositories.AccountRepository;
+import com.midas.app.services.AccountEventService;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.temporal.activity.ActivityInfo;
+import io.temporal.activity.ActivityOptions;
+import io.temporal.testing.TestActivityEnvironment;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class AccountActivityImplTest {
+  @Mock private PaymentProviderFactory paymentProviderFactory;
+
+  @Mock private PaymentProvider paymentProvider;
+
+  @Mock private AccountRepository accountRepository;
+
+  @Mock private AccountEventService accountEventService;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  private final ConcurrentMapCacheManager cacheManager =
+      new ConcurrentMapCacheManager(
+          CacheConfiguration.ACCOUNTS_BY_ID, CacheConfiguration.ACCOUNTS_BY_EMAIL);
+
+  private AccountActivityImpl accountActivity;
+
+  private TestActivityEnvironment testEnvironment;
+
+  @BeforeEach
+  void setUp() {
+    accountActivity =
+        new AccountActivityImpl(
+            paymentProviderFactory,
+            accountRepository,
+            cacheManager,
+            new AccountMetrics(new SimpleMeterRegistry()),
+            accountEventService,
+            new TransactionTemplate(transactionManager));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (testEnvironment != null) {
+      testEnvironment.close();
+    }
+  }
+
+  @Test
+  void testCreatePaymentAccountStampsSecondBeforeProviderWrite() {
+    var writtenAt = new AtomicReference<OffsetDateTime>();
+    when(paymentProviderFactory.create(ProviderTypeEnumDto.STRIPE)).thenReturn(paymentProvider);
+    when(paymentProvider.createAccount(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              writtenAt.set(OffsetDateTime.now());
+              return buildAccount(null);
+            });
+
+    var created = activityStub().createPaymentAccount(buildAccount(null));
+
+    var syncedAt = created.getProviderSyncedAt();
+    assertEquals(0, syncedAt.getNano());
+    assertFalse(syncedAt.isAfter(writtenAt.get()));
+    assertTrue(syncedAt.isAfter(writtenAt.get().minusSeconds(2)));
+  }
+
+  @Test
+  void testUpdatePaymentAccountReturnsSecondBeforeProviderWrite() {
+    var writtenAt = new AtomicReference<OffsetDateTime>();
+    when(paymentProviderFactory.create(ProviderTypeEnumDto.STRIPE)).thenReturn(paymentProvider);
+    doAnswer(
+            invocation -> {
+              writtenAt.set(OffsetDateTime.now());
+              return null;
+            })
+        .when(paymentProvider)
+        .updateAccount(any(), any(), any());
+
+    var syncedAt = activityStub().updatePaymentAccount(buildAccount(1L), Set.of());
+
+    assertEquals(0, syncedAt.getNano());
+    assertFalse(syncedAt.isAfter(writtenAt.get()));
+  }
+
+  @Test
+  void testPaymentIdempotencyKeySurvivesWorkflowRetry() {
+    // a retry of the workflow is a new run, whose activities get new ids
+    var firstRun = activityInfo("john.doe@example.com", "run-1", "activity-1");
+    var retry = activityInfo("john.doe@example.com", "run-2", "activity-7");
+    var scope =
+        AccountActivityImpl.createScope(AccountMapper.INSTANCE.toCreateAccount(buildAccount(null)));
+
+    assertEquals(
+        AccountActivityImpl.paymentIdempotencyKey(firstRun, scope),
+        AccountActivityImpl.paymentIdempotencyKey(retry, scope));
+  }
+
+  @Test
+  void testPaymentIdempotencyKeyTellsCallsOfAWorkflowApart() {
+    var info = activityInfo("create-accounts-batch-1", "run-1", "activity-1");
+    var john = AccountMapper.INSTANCE.toCreateAccount(buildAccount(null));
+    var jane = AccountMapper.INSTANCE.toCreateAccount(buildAccount(null));
+    jane.setEmail("jane.doe@example.com");
+    var before = buildAccount(1L);
+    var after = before.toBuilder().version(2L).build();
+
+    assertNotEquals(
+        AccountActivityImpl.paymentIdempotencyKey(info, AccountActivityImpl.createScope(john)),
+        AccountActivityImpl.paymentIdempotencyKey(info, AccountActivityImpl.createScope(jane)));
+    assertNotEquals(
+        AccountActivityImpl.paymentIdempotencyKey(info, updateScope(before, AccountField.EMAIL)),
+        AccountActivityImpl.paymentIdempotencyKey(info, updateScope(after, AccountField.EMAIL)));
+  }
+
+  @Test
+  void testPaymentIdempotencyKeyTellsUpdatesOfAVersionApart() {
+    // an update whose save failed leaves the version for the next one, which sends other details
+    var info = activityInfo("update-account-1", "run-1", "activity-1");
+    var account = buildAccount(1L);
+    var renamed = account.toBuilder().firstName("Jane").build();
+
+    var emailUpdate =
+        AccountActivityImpl.paymentIdempotencyKey(info, updateScope(account, AccountField.EMAIL));
+    assertNotEquals(
+        emailUpdate,
+        AccountActivityImpl.paymentIdempotencyKey(
+            info, updateScope(account, AccountField.FIRST_NAME)));
+    assertNotEquals(
+        AccountActivityImpl.paymentIdempotencyKey(
+            info, updateScope(account, AccountField.FIRST_NAME)),
+        AccountActivityImpl.paymentIdempotencyKey(
+            info, updateScope(renamed, AccountField.FIRST_NAME)));
+    assertEquals(
+        emailUpdate,
+        AccountActivityImpl.paymentIdempotencyKey(info, updateScope(account, AccountField.EMAIL)));
+  }
+
+  @Test
+  void testCheckAccountVersionAcceptsCurrentVersion() {
+    var account = buildAccount(3L);
+    when(accountRepository.findVersionById(account.getId())).thenReturn(Optional.of(3L));
+
+    accountActivity.checkAccountVersion(account);
+
+    verifyNoInteractions(paymentProviderFactory);
+  }
+
+  @Test
+  void testCheckAccountVersionRejectsStaleVersion() {
+    var account = buildAccount(3L);
+    cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID).put(account.getId(), account);
+    when(accountRepository.findVersionById(account.getId())).thenReturn(Optional.of(4L));
+
+    var e =
+        assertThrows(
+            ResourceConflictException.class, () -> accountActivity.checkAccountVersion(account));
+
+    assertEquals(HttpStatus.CONFLICT, e.getApiError().getCode());
+    assertNull(cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID).get(account.getId()));
+  }
+
+  @Test
+  void testSaveAccountRefreshesCachesAndEvictsFormerEmail() {
+    var before = buildAccount(3L);
+    var byId = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID);
+    var byEmail = cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_EMAIL);
+    byId.put(before.getId(), before);
+    byEmail.put("john.doe@example.com", before);
+    var after = before.toBuilder().email("John.Roe@example.com").version(4L).build();
+    when(accountRepository.saveAndFlush(any())).thenReturn(after);
+
+    accountActivity.saveAccount(before.toBuilder().email("John.Roe@example.com").build());
+
+    assertEquals(after, byId.get(after.getId(), Account.class));
+    assertEquals(after, byEmail.get("john.roe@example.com", Account.class));
+    assertNull(byEmail.get("john.doe@example.com"));
+  }
+
+  @Test
+  void testSaveAccountReportsDuplicateEmailAsAlreadyExists() {
+    var account = buildAccount(null);
+    when(accountRepository.saveAndFlush(any())).thenThrow(duplicateEmail());
+
+    var e =
+        assertThrows(
+            ResourceAlreadyExistsException.class, () -> accountActivity.saveAccount(account));
+
+    assertEquals(HttpStatus.CONFLICT, e.getApiError().getCode());
+    assertEquals(
+        "Account with email john.doe@example.com is already present",
+        e.getApiError().getMessage());
+    verifyNoInteractions(accountEventService);
+  }
+
+  @Test
+  void testSaveAccountRethrowsOtherIntegrityViolations() {
+    var account = buildAccount(null);
+    var violation = violation("accounts_provider_type_check");
+    when(accountRepository.saveAndFlush(any())).thenThrow(violation);
+
+    var e =
+        assertThrows(
+            DataIntegrityViolationException.class, () -> accountActivity.saveAccount(account));
+
+    assertSame(violation, e);
+  }
+
+  @Test
+  void testSaveAccountsRethrowsOtherIntegrityViolations() {
+    var accounts = List.of(buildAccount(null), buildAccount(null));
+    when(accountRepository.saveAllAndFlush(accounts))
+        .thenThrow(violation("accounts_provider_type_check"));
+
+    assertThrows(
+        DataIntegrityViolationException.class, () -> accountActivity.saveAccounts(accounts));
+
+    verify(accountRepository, never()).saveAndFlush(any());
+  }
+
+  @Test
+  void testSaveAccountReportsOptimisticLockFailureAsConflict() {
+    var account = buildAccount(3L);
+    cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID).put(account.getId(), account);
+    when(accountRepository.saveAndFlush(any()))
+        .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, account.getId()));
+
+    var e =
+        assertThrows(ResourceConflictException.class, () -> accountActivity.saveAccount(account));
+
+    assertEquals(HttpStatus.CONFLICT, e.getApiError().getCode());
+    assertNull(cacheManager.getCache(CacheConfiguration.ACCOUNTS_BY_ID).get(account.getId()));
+    verifyNoInteractions(accountEventService);
+  }
+
+  @Test
+  void testSaveAccountsInsertsAllAccountsInOneBatch() {
+    var accounts = List.of(buildAccount(null), buildAccount(null));
+    when(accountRepository.saveAllAndFlush(accounts)).thenReturn(accounts);
+
+    var results = accountActivity.saveAccounts(accounts);
+
+    assertEquals(2, results.size());
+    assertTrue(results.stream().allMatch(BatchItemResult::isSucceeded));
+    verify(accountEventService).record(AccountEventType.CREATED, accounts);
+    verify(accountRepository, never()).saveAndFlush(any());
+  }
+
+  @Test
+  void testSaveAccountsFallsBackToOneByOneOnDuplicate() {
+    var john = buildAccount(null);
+    var jane = buildAccount(null);
+    jane.setEmail("jane.doe@example.com");
+    when(accountRepository.saveAllAndFlush(List.of(john, jane)))
+        .thenAnswer(
+            invocation -> {
+              // the rolled back batch leaves the ids and versions it assigned behind
+              john.setVersion(0L);
+              jane.setVersion(0L);
+              throw duplicateEmail();
+            });
+    when(accountRepository.saveAndFlush(any()))
+        .thenAnswer(
+            invocation -> {
+              Account account = invocation.getArgument(0);
+              assertNull(account.getId());
+              assertNull(account.getVersion());
+              if (account == jane) {
+                throw duplicateEmail();
+              }
+              account.setId(UUID.randomUUID());
+              account.setVersion(0L);
+              return account;
+            });
+
+    var results = accountActivity.saveAccounts(List.of(john, jane));
+
+    assertEquals(2, results.size());
+    assertEquals(0, results.get(0).getIndex());
+    assertEquals(john, results.get(0).getAccount());
+    assertEquals(1, results.get(1).getIndex());
+    assertFalse(results.get(1).isSucceeded());
+    assertEquals(
+        "Account with email jane.doe@example.com is already present",
+        results.get(1).getMessage());
+    verify(accountEventService).record(AccountEventType.CREATED, List.of(john));
+  }
+
+  /** activityStub runs the activities in a test environment, which provides their context. */
+  private AccountActivity activityStub() {
+    testEnvironment = TestActivityEnvironment.newInstance();
+    testEnvironment.registerActivitiesImplementations(accountActivity);
+    return testEnvironment.newActivityStub(
+        AccountActivity.class,
+        ActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofMinutes(1)).build());
+  }
+
+  private static String[] updateScope(Account account, AccountField changedField) {
+    return AccountActivityImpl.updateScope(
+        account, AccountActivityImpl.providerChanges(account, Set.of(changedField)));
+  }
+
+  private static ActivityInfo activityInfo(String workflowId, String runId, String activityId) {
+    var info = mock(ActivityInfo.class);
+    when(info.getWorkflowId()).thenReturn(workflowId);
+    when(info.getActivityType()).thenReturn("CreatePaymentAccount");
+    // stubbed to show they are not part of the key
+    lenient().when(info.getRunId()).thenReturn(runId);
+    lenient().when(info.getActivityId()).thenReturn(activityId);
+    return info;
+  }
+
+  private static DataIntegrityViolationException duplicateEmail() {
+    return violation(AccountActivityImpl.UNIQUE_EMAIL_INDEX);
+  }
+
+  private static DataIntegrityViolationException violation(String constraint) {
+    return new DataIntegrityViolationException(
+        "could not execute statement",
+        new ConstraintViolationException("could not execute statement", null, constraint));
+  }
+
+  private static Account buildAccount(Long version) {
+    return Account.builder()
+        .id(UUID.randomUUID())
+        .firstName("John")
+        .lastName("Doe")
+        .email("john.doe@example.com")
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .providerId("cus_1")
+        .version(version)
+        .build();
+  }
+}
@@ -0,0 +1,139 @@
+package com.midas.app.activities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountCursor;
+import com.midas.app.models.ReconciliationState;
+import com.midas.app.providers.payment.PaymentProvider;
+import com.midas.app.providers.payment.PaymentProviderFactory;
+import com.midas.app.repositories.AccountRepository;
+import com.midas.app.services.AccountSyncService;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationActivityImplTest {
+  private static final OffsetDateTime STARTED_AT = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+
+  @Mock private PaymentProviderFactory paymentProviderFactory;
+
+  @Mock private AccountRepository accountRepository;
+
+  @Mock private AccountSyncService accountSyncService;
+
+  @Mock private PaymentProvider paymentProvider;
+
+  @Spy private AccountMetrics accountMetrics = new AccountMetrics(new SimpleMeterRegistry());
+
+  @InjectMocks private ReconciliationActivityImpl reconciliationActivity;
+
+  @Test
+  void testReconcileAccounts() {
+    var reconciled = account("cus_1", STARTED_AT);
+    var missing = account("cus_2", STARTED_AT.minusDays(1));
+    var withoutProvider = account(null, null);
+    var createdAfterStart = account("cus_3", null);
+    createdAfterStart.setCreatedAt(STARTED_AT.plusSeconds(1));
+    when(accountRepository.findFirstPage(any(Pageable.class)))
+        .thenReturn(List.of(reconciled, missing, withoutProvider, createdAfterStart));
+
+    var chunk = reconciliationActivity.reconcileAccounts(state(10));
+
+    assertEquals(4, chunk.getReport().getAccountsScanned());
+    assertEquals(1, chunk.getReport().getAccountsMissingInProvider());
+    assertEquals(1, chunk.getReport().getAccountsWithoutProvider());
+    assertNull(chunk.getNextCursor());
+  }
+
+  @Test
+  void testReconcileAccountsFullChunkReturnsCursor() {
+    var account = account("cus_1", STARTED_AT);
+    when(accountRepository.findFirstPage(any(Pageable.class))).thenReturn(List.of(account));
+
+    var chunk = reconciliationActivity.reconcileAccounts(state(1));
+
+    assertEquals(AccountCursor.of(account).encode(), chunk.getNextCursor());
+  }
+
+  @Test
+  void testRepairAppliesCustomerChangedAfterLastSync() {
+    var account = account("cus_1", null);
+    account.setProviderSyncedAt(STARTED_AT.minusDays(1));
+    var customer = account("cus_1", null);
+    customer.setEmail("changed@midas.com");
+    when(paymentProviderFactory.create(ProviderTypeEnumDto.STRIPE)).thenReturn(paymentProvider);
+    when(paymentProvider.providerName()).thenReturn("stripe");
+    when(paymentProvider.listAccounts(null, 10)).thenReturn(List.of(customer));
+    when(accountRepository.findByProviderIdIn(List.of("cus_1"))).thenReturn(List.of(account));
+    var state = state(10);
+    state.setRepair(true);
+
+    var chunk = reconciliationActivity.reconcileCustomers(state);
+
+    assertEquals(1, chunk.getReport().getMismatched());
+    assertEquals(1, chunk.getReport().getApplied());
+    assertEquals(0, chunk.getReport().getRepaired());
+    // the customer is applied as of the read, so a change that reached the account since wins
+    assertTrue(customer.getProviderSyncedAt().isAfter(STARTED_AT));
+    verify(accountSyncService).applyProviderUpdates("stripe", List.of(customer));
+    verify(paymentProvider, never()).updateAccount(any(), any(), any());
+  }
+
+  @Test
+  void testDiffers() {
+    var account = account("cus_1", null);
+    var customer = account("cus_1", null);
+    assertFalse(ReconciliationActivityImpl.differs(account, customer));
+
+    customer.setEmail(account.getEmail().toUpperCase());
+    assertFalse(ReconciliationActivityImpl.differs(account, customer));
+
+    // the provider only knows the full name, split on its first space
+    account.setFirstName("Mary Ann");
+    customer.setFirstName("Mary");
+    customer.setLastName("Ann " + account.getLastName());
+    assertFalse(ReconciliationActivityImpl.differs(account, customer));
+
+    customer.setLastName("other");
+    assertTrue(ReconciliationActivityImpl.differs(account, customer));
+  }
+
+  private static ReconciliationState state(int chunkSize) {
+    return ReconciliationState.builder()
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .phase(ReconciliationState.Phase.ACCOUNTS)
+        .chunkSize(chunkSize)
+        .startedAt(STARTED_AT)
+        .build();
+  }
+
+  private static Account account(String providerId, OffsetDateTime reconciledAt) {
+    return Account.builder()
+        .id(UUID.randomUUID())
+        .firstName("first")
+        .lastName("last")
+        .email("test@midas.com")
+        .providerId(providerId)
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .providerReconciledAt(reconciledAt)
+        .createdAt(STARTED_AT.minusDays(2))
+        .build();
+  }
+}
@@ -0,0 +1,68 @@
+package com.midas.app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.models.Account;
+import com.midas.app.repositories.AccountRepository;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+class CacheConfigurationTest {
+
+  private final AccountRepository accountRepository = mock(AccountRepository.class);
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withUserConfiguration(CacheConfiguration.class)
+          .withBean(
+              CacheManager.class,
+              () ->
+                  new ConcurrentMapCacheManager(
+                      CacheConfiguration.ACCOUNTS_BY_ID, CacheConfiguration.ACCOUNTS_BY_EMAIL))
+          .withBean(AccountRepository.class, () -> accountRepository);
+
+  @Test
+  void testFindByIdIsCached() {
+    var account = buildAccount();
+    when(accountRepository.findById(account.getId())).thenReturn(Optional.of(account));
+
+    contextRunner.run(
+        context -> {
+          var repository = context.getBean(AccountRepository.class);
+
+          assertEquals(Optional.of(account), repository.findById(account.getId()));
+          assertEquals(Optional.of(account), repository.findById(account.getId()));
+          verify(accountRepository, times(1)).findById(account.getId());
+        });
+  }
+
+  @Test
+  void testFindByEmailIsCachedIgnoringCase() {
+    var account = buildAccount();
+    when(accountRepository.findByEmail(any())).thenReturn(Optional.of(account));
+
+    contextRunner.run(
+        context -> {
+          var repository = context.getBean(AccountRepository.class);
+
+          repository.findByEmail("John.Doe@example.com");
+          assertEquals(Optional.of(account), repository.findByEmail("john.doe@EXAMPLE.com"));
+          verify(accountRepository, times(1)).findByEmail(any());
+        });
+  }
+
+  private static Account buildAccount() {
+    return Account.builder()
+        .id(UUID.randomUUID())
+        .firstName("John")
+        .lastName("Doe")
+        .email("john.doe@example.com")
+        .build();
+  }
+}
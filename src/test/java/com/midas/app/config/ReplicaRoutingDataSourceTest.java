@@ -0,0 +1,72 @@
+package com.midas.app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class ReplicaRoutingDataSourceTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final ReplicaRoutingDataSource routingDataSource = routingDataSource();
+
+  @AfterEach
+  void tearDown() {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+  }
+
+  @Test
+  void testWritesGoToPrimary() {
+    routingDataSource.updateLag("replica-0", 0.0);
+
+    assertEquals(ReplicaRoutingDataSource.PRIMARY, routingDataSource.determineCurrentLookupKey());
+  }
+
+  @Test
+  void testReadsAlternateBetweenAvailableReplicas() {
+    routingDataSource.updateLag("replica-0", 0.0);
+    routingDataSource.updateLag("replica-1", 1.0);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertEquals("replica-0", routingDataSource.determineCurrentLookupKey());
+    assertEquals("replica-1", routingDataSource.determineCurrentLookupKey());
+    assertEquals("replica-0", routingDataSource.determineCurrentLookupKey());
+  }
+
+  @Test
+  void testReadsSkipLaggingAndUnreachableReplicas() {
+    routingDataSource.updateLag("replica-0", 10.0);
+    routingDataSource.updateLag("replica-1", 0.5);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertEquals("replica-1", routingDataSource.determineCurrentLookupKey());
+    assertEquals("replica-1", routingDataSource.determineCurrentLookupKey());
+
+    routingDataSource.updateLag("replica-1", null);
+
+    assertEquals(ReplicaRoutingDataSource.PRIMARY, routingDataSource.determineCurrentLookupKey());
+    assertEquals(
+        1,
+        meterRegistry
+            .get(ReplicaRoutingDataSource.ROUTING_METRIC)
+            .tags("target", ReplicaRoutingDataSource.PRIMARY, "kind", "read")
+            .counter()
+            .count());
+  }
+
+  private ReplicaRoutingDataSource routingDataSource() {
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    replicas.put("replica-0", mock(DataSource.class));
+    replicas.put("replica-1", mock(DataSource.class));
+    return new ReplicaRoutingDataSource(
+        mock(DataSource.class), replicas, Duration.ofSeconds(5), meterRegistry);
+  }
+}
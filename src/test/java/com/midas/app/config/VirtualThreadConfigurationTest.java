@@ -0,0 +1,72 @@
+package com.midas.app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnJre;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+class VirtualThreadConfigurationTest {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withUserConfiguration(VirtualThreadConfiguration.class)
+          .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+
+  @Test
+  void testNoPinningMonitorOnPlatformThreads() {
+    contextRunner.run(
+        context -> assertEquals(0, context.getBeanNamesForType(RecordingStream.class).length));
+  }
+
+  // from Java 24 on, blocking inside synchronized no longer pins the carrier
+  @Test
+  @EnabledOnJre(JRE.JAVA_21)
+  void testPinnedVirtualThreadIsRecorded() {
+    contextRunner
+        .withPropertyValues("spring.threads.virtual.enabled=true")
+        .run(
+            context -> {
+              var pinned = context.getBean(MeterRegistry.class).timer("jvm.threads.virtual.pinned");
+              var lock = new Object();
+              Thread.ofVirtual()
+                  .start(
+                      () -> {
+                        synchronized (lock) {
+                          sleep(VirtualThreadConfiguration.PINNING_THRESHOLD.multipliedBy(3));
+                        }
+                      })
+                  .join();
+
+              // events reach the stream when the recording is flushed, about once a second
+              var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+              while (pinned.count() == 0 && System.nanoTime() < deadline) {
+                sleep(Duration.ofMillis(100));
+              }
+              assertTrue(pinned.count() > 0);
+            });
+  }
+
+  @Test
+  void testJdkFramesAreSkipped() {
+    assertTrue(VirtualThreadConfiguration.isJdkType("java.lang.VirtualThread"));
+    assertTrue(VirtualThreadConfiguration.isJdkType("jdk.internal.misc.Unsafe"));
+    assertFalse(VirtualThreadConfiguration.isJdkType("org.postgresql.core.v3.QueryExecutorImpl"));
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
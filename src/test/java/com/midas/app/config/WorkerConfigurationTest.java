@@ -0,0 +1,109 @@
+package com.midas.app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.temporal.spring.boot.TemporalOptionsCustomizer;
+import io.temporal.spring.boot.WorkerOptionsCustomizer;
+import io.temporal.worker.WorkerFactoryOptions;
+import io.temporal.worker.WorkerOptions;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.mock.env.MockEnvironment;
+
+class WorkerConfigurationTest {
+
+  private static final String TASK_QUEUE = "create-account-workflow";
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withUserConfiguration(WorkerConfiguration.class, VirtualThreadConfiguration.class)
+          .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+
+  @Test
+  void testApplySetsOnlyConfiguredOptions() {
+    var options = new WorkerConfiguration.TaskQueueOptions();
+    options.setMaxConcurrentActivityExecutions(7);
+    options.setActivityPollers(3);
+    options.setMaxTaskQueueActivitiesPerSecond(2.5);
+    var builder = WorkerOptions.newBuilder().setMaxConcurrentWorkflowTaskExecutionSize(11);
+
+    WorkerConfiguration.apply(options, builder);
+
+    var workerOptions = builder.build();
+    assertEquals(7, workerOptions.getMaxConcurrentActivityExecutionSize());
+    assertEquals(3, workerOptions.getMaxConcurrentActivityTaskPollers());
+    assertEquals(2.5, workerOptions.getMaxTaskQueueActivitiesPerSecond());
+    assertEquals(11, workerOptions.getMaxConcurrentWorkflowTaskExecutionSize());
+  }
+
+  @Test
+  void testCustomizerReportsMaximumSlots() {
+    var options = new WorkerConfiguration.TaskQueueOptions();
+    options.setMaxConcurrentActivityExecutions(7);
+    var configuration = new WorkerConfiguration();
+    configuration.setQueues(Map.of(TASK_QUEUE, options));
+    var meterRegistry = new SimpleMeterRegistry();
+
+    configuration
+        .taskQueueOptionsCustomizer(meterRegistry, new MockEnvironment())
+        .customize(WorkerOptions.newBuilder(), "worker", TASK_QUEUE);
+
+    assertEquals(
+        7,
+        meterRegistry
+            .get(WorkerConfiguration.SLOTS_MAX_METRIC)
+            .tags("task_queue", TASK_QUEUE, "worker_type", "ActivityWorker")
+            .gauge()
+            .value());
+  }
+
+  @Test
+  void testVirtualThreadsReachTheWorkers() {
+    contextRunner
+        .withPropertyValues("spring.threads.virtual.enabled=true")
+        .run(
+            context -> {
+              assertTrue(workerFactoryOptions(context).isUsingVirtualWorkflowThreads());
+              assertTrue(workerOptions(context).isUsingVirtualThreads());
+            });
+  }
+
+  @Test
+  void testPlatformThreadsWhenVirtualThreadsAreDisabled() {
+    contextRunner
+        .withPropertyValues("spring.threads.virtual.enabled=false")
+        .run(
+            context -> {
+              assertFalse(workerFactoryOptions(context).isUsingVirtualWorkflowThreads());
+              assertFalse(workerOptions(context).isUsingVirtualThreads());
+            });
+  }
+
+  /** workerFactoryOptions applies the only worker factory customizer of the context. */
+  @SuppressWarnings("unchecked")
+  private static WorkerFactoryOptions workerFactoryOptions(ApplicationContext context) {
+    var customizer =
+        (TemporalOptionsCustomizer<WorkerFactoryOptions.Builder>)
+            context
+                .getBeanProvider(
+                    ResolvableType.forClassWithGenerics(
+                        TemporalOptionsCustomizer.class, WorkerFactoryOptions.Builder.class))
+                .getObject();
+    return customizer.customize(WorkerFactoryOptions.newBuilder()).build();
+  }
+
+  /** workerOptions applies the only worker customizer of the context. */
+  private static WorkerOptions workerOptions(ApplicationContext context) {
+    return context
+        .getBean(WorkerOptionsCustomizer.class)
+        .customize(WorkerOptions.newBuilder(), "worker", TASK_QUEUE)
+        .build();
+  }
+}
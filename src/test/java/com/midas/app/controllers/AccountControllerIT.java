@@ -2,12 +2,13 @@ package com.midas.app.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
-import com.google.gson.reflect.TypeToken;
 import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.AccountsPageDto;
 import com.midas.generated.model.ProviderTypeEnumDto;
 import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
@@ -16,7 +17,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import okhttp3.*;
@@ -155,9 +155,10 @@ class AccountControllerIT {
     try (Response response = okHttpClient.newCall(getAllAccountsRequest).execute()) {
       assertEquals(200, response.code());
 
-      List<AccountDto> accountDtoList =
-          gson.fromJson(response.body().string(), new TypeToken<>() {});
+      AccountsPageDto accountsPage = gson.fromJson(response.body().string(), AccountsPageDto.class);
+      var accountDtoList = accountsPage.getItems();
       assertEquals(1, accountDtoList.size());
+      assertNull(accountsPage.getNextCursor());
 
       // assert account values
       assertEquals(ACCOUNT_ID, accountDtoList.getFirst().getId());
@@ -208,4 +209,31 @@ class AccountControllerIT {
       assertEquals(PROVIDER_ID, account.getProviderId());
     }
   }
+
+  @Test
+  @Order(6)
+  void testConditionalGetReturnsNotModified() throws IOException {
+    for (var url : new String[] {BASE_URL, BASE_URL + "/" + ACCOUNT_ID}) {
+      String eTag;
+      Request request = new Request.Builder().url(url).get().build();
+      try (Response response = okHttpClient.newCall(request).execute()) {
+        assertEquals(200, response.code());
+        eTag = response.header("ETag");
+        assertNotNull(eTag);
+      }
+
+      Request unchangedRequest =
+          new Request.Builder().url(url).header("If-None-Match", eTag).get().build();
+      try (Response response = okHttpClient.newCall(unchangedRequest).execute()) {
+        assertEquals(304, response.code());
+        assertEquals(eTag, response.header("ETag"));
+      }
+
+      Request staleRequest =
+          new Request.Builder().url(url).header("If-None-Match", "\"0\"").get().build();
+      try (Response response = okHttpClient.newCall(staleRequest).execute()) {
+        assertEquals(200, response.code());
+      }
+    }
+  }
 }
@@ -0,0 +1,117 @@
+package com.midas.app.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.models.Account;
+import com.midas.app.services.AccountService;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@ExtendWith(MockitoExtension.class)
+class AccountControllerTest {
+  @Mock private AccountService accountService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private AccountController accountController;
+
+  @BeforeEach
+  void setUp() {
+    accountController = new AccountController(accountService, objectMapper);
+  }
+
+  @Test
+  void testExportWritesOneAccountPerLine() throws Exception {
+    var john = buildAccount("john.doe@example.com");
+    var jane = buildAccount("jane.doe@example.com");
+    doAnswer(
+            invocation -> {
+              Consumer<AccountDto> consumer = invocation.getArgument(0);
+              consumer.accept(john);
+              consumer.accept(jane);
+              return null;
+            })
+        .when(accountService)
+        .exportAccounts(any());
+    var response = new MockHttpServletResponse();
+
+    accountController.exportUserAccounts(response);
+
+    assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getContentType());
+    var lines = response.getContentAsString().split("\n");
+    assertEquals(2, lines.length);
+    assertEquals(john, objectMapper.readValue(lines[0], AccountDto.class));
+    assertEquals(jane, objectMapper.readValue(lines[1], AccountDto.class));
+  }
+
+  @Test
+  void testExportOfNoAccountsIsEmpty() throws Exception {
+    var response = new MockHttpServletResponse();
+
+    accountController.exportUserAccounts(response);
+
+    assertEquals("", response.getContentAsString());
+  }
+
+  @Test
+  void testGetAccountTagsCurrentVersion() {
+    var account = account(3L);
+    when(accountService.getCurrentAccount(account.getId())).thenReturn(account);
+
+    var response = accountController.getUserAccount(account.getId(), null);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("\"3\"", response.getHeaders().getETag());
+  }
+
+  @Test
+  void testGetAccountOfCurrentVersionIsNotModified() {
+    var account = account(3L);
+    when(accountService.getCurrentAccount(account.getId())).thenReturn(account);
+
+    var response = accountController.getUserAccount(account.getId(), "W/\"3\"");
+
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+  }
+
+  @Test
+  void testGetAccountWithoutVersionHasNoETag() {
+    var account = account(null);
+    when(accountService.getCurrentAccount(account.getId())).thenReturn(account);
+
+    var response = accountController.getUserAccount(account.getId(), "\"3\"");
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertNull(response.getHeaders().getETag());
+  }
+
+  private static Account account(Long version) {
+    return Account.builder()
+        .id(UUID.randomUUID())
+        .firstName("John")
+        .lastName("Doe")
+        .email("john.doe@example.com")
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .version(version)
+        .build();
+  }
+
+  private static AccountDto buildAccount(String email) {
+    return new AccountDto().id(UUID.randomUUID()).firstName("John").lastName("Doe").email(email);
+  }
+}
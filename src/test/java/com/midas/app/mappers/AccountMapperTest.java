@@ -0,0 +1,77 @@
+package com.midas.app.mappers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.midas.app.models.Account;
+import com.midas.app.providers.payment.CreateAccount;
+import com.midas.generated.model.AccountDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import com.stripe.model.Customer;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class AccountMapperTest {
+
+  private static final UUID ID = UUID.fromString("fba5b240-0e68-4e64-aca6-f12022dc4be3");
+  private static final String FIRST_NAME = "Chandler";
+  private static final String LAST_NAME = "Bing";
+  private static final String EMAIL = "cbing@friends.com";
+  private static final String PROVIDER_ID = "cus_fhihaewhrYSDyg";
+
+  @Test
+  void testToAccountDto() {
+    OffsetDateTime now = OffsetDateTime.now();
+    Account account = buildAccount().toBuilder().createdAt(now).updatedAt(now).build();
+
+    AccountDto accountDto = AccountMapper.INSTANCE.toAccountDto(account);
+
+    assertEquals(ID, accountDto.getId());
+    assertEquals(FIRST_NAME, accountDto.getFirstName());
+    assertEquals(LAST_NAME, accountDto.getLastName());
+    assertEquals(EMAIL, accountDto.getEmail());
+    assertEquals(PROVIDER_ID, accountDto.getProviderId());
+    assertEquals(ProviderTypeEnumDto.STRIPE, accountDto.getProviderType());
+    assertEquals(now, accountDto.getCreatedAt());
+    assertEquals(now, accountDto.getUpdatedAt());
+  }
+
+  @Test
+  void testToCreateAccount() {
+    CreateAccount createAccount = AccountMapper.INSTANCE.toCreateAccount(buildAccount());
+
+    assertEquals(ID.toString(), createAccount.getUserId());
+    assertEquals(FIRST_NAME, createAccount.getFirstName());
+    assertEquals(LAST_NAME, createAccount.getLastName());
+    assertEquals(EMAIL, createAccount.getEmail());
+  }
+
+  @Test
+  void testToAccount() {
+    Customer customer = new Customer();
+    customer.setId(PROVIDER_ID);
+    customer.setName(FIRST_NAME + " " + LAST_NAME + " Jr");
+    customer.setEmail(EMAIL);
+
+    Account account = AccountMapper.INSTANCE.toAccount(customer, ProviderTypeEnumDto.STRIPE);
+
+    assertNull(account.getId());
+    assertEquals(FIRST_NAME, account.getFirstName());
+    assertEquals(LAST_NAME + " Jr", account.getLastName());
+    assertEquals(EMAIL, account.getEmail());
+    assertEquals(PROVIDER_ID, account.getProviderId());
+    assertEquals(ProviderTypeEnumDto.STRIPE, account.getProviderType());
+  }
+
+  private Account buildAccount() {
+    return Account.builder()
+        .id(ID)
+        .firstName(FIRST_NAME)
+        .lastName(LAST_NAME)
+        .email(EMAIL)
+        .providerId(PROVIDER_ID)
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .build();
+  }
+}
@@ -0,0 +1,34 @@
+package com.midas.app.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.midas.app.exceptions.InvalidRequestException;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class AccountCursorTest {
+
+  private static final UUID ID = UUID.fromString("fba5b240-0e68-4e64-aca6-f12022dc4be3");
+  private static final OffsetDateTime CREATED_AT =
+      OffsetDateTime.parse("2022-04-13T01:52:40.690387Z");
+
+  @Test
+  void testEncodeDecodeRoundTrip() {
+    Account account = Account.builder().id(ID).createdAt(CREATED_AT).build();
+
+    AccountCursor cursor = AccountCursor.decode(AccountCursor.of(account).encode());
+
+    assertEquals(ID, cursor.getId());
+    assertEquals(CREATED_AT, cursor.getCreatedAt());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"not-base64!", "bm8tc2VwYXJhdG9y", "MjAyMnxmYmE1YjI0MA"})
+  void testDecodeInvalidCursor(String cursor) {
+    assertThrows(InvalidRequestException.class, () -> AccountCursor.decode(cursor));
+  }
+}
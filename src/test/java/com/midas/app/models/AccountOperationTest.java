@@ -0,0 +1,35 @@
+package com.midas.app.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.midas.app.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class AccountOperationTest {
+
+  @Test
+  void testEncodeDecodeRoundTrip() {
+    var id = AccountOperation.encodeId("john.doe@example.com", "5f0e9a3c-1b3e-4c1e-9d1a");
+
+    assertArrayEquals(
+        new String[] {"john.doe@example.com", "5f0e9a3c-1b3e-4c1e-9d1a"},
+        AccountOperation.decodeId(id));
+  }
+
+  @Test
+  void testDecodeWorkflowIdContainingSeparator() {
+    var id = AccountOperation.encodeId("create/john.doe@example.com", "run");
+
+    assertArrayEquals(
+        new String[] {"create/john.doe@example.com", "run"}, AccountOperation.decodeId(id));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"not-base64!", "bm8tc2VwYXJhdG9y", "d2Yv", "L3J1bg"})
+  void testDecodeInvalidOperationId(String operationId) {
+    assertThrows(InvalidRequestException.class, () -> AccountOperation.decodeId(operationId));
+  }
+}
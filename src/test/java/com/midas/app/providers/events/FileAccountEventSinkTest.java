@@ -0,0 +1,52 @@
+package com.midas.app.providers.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.models.AccountEvent;
+import com.midas.app.models.AccountEventType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileAccountEventSinkTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @TempDir private Path directory;
+
+  @Test
+  void testPublishAppendsOneLinePerEvent() throws IOException {
+    var file = directory.resolve("events/account-events.ndjson");
+    var sink = new FileAccountEventSink(file, objectMapper);
+    var accountId = UUID.randomUUID();
+
+    sink.publish(List.of(event(1L, accountId, AccountEventType.CREATED, 0L)));
+    sink.publish(List.of(event(2L, accountId, AccountEventType.UPDATED, 1L)));
+
+    var lines = Files.readAllLines(file);
+    assertEquals(2, lines.size());
+    var updated = objectMapper.readTree(lines.get(1));
+    assertEquals(2L, updated.get("id").asLong());
+    assertEquals("UPDATED", updated.get("type").asText());
+    assertEquals(accountId.toString(), updated.get("accountId").asText());
+    assertEquals(1L, updated.get("accountVersion").asLong());
+    assertEquals("cbing@friends.com", updated.get("account").get("email").asText());
+  }
+
+  private static AccountEvent event(
+      Long id, UUID accountId, AccountEventType type, Long accountVersion) {
+    return AccountEvent.builder()
+        .id(id)
+        .accountId(accountId)
+        .type(type)
+        .accountVersion(accountVersion)
+        .payload("{\"email\":\"cbing@friends.com\"}")
+        .createdAt(OffsetDateTime.now())
+        .build();
+  }
+}
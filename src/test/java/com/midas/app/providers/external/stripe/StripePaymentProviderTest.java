@@ -1,25 +1,42 @@
 package com.midas.app.providers.external.stripe;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 import com.midas.app.exceptions.ApiException;
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.metrics.AccountMetrics;
 import com.midas.app.models.Account;
+import com.midas.app.providers.payment.Bulkhead;
 import com.midas.app.providers.payment.CreateAccount;
+import com.midas.app.providers.payment.LocalRateLimitStore;
+import com.midas.app.providers.payment.RateLimiter;
 import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
+import com.stripe.model.StripeError;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeResponse;
 import com.stripe.param.CustomerCreateParams;
 import com.stripe.param.CustomerUpdateParams;
 import com.stripe.service.CustomerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,11 +46,21 @@ class StripePaymentProviderTest {
   private static final String LAST_NAME = "testLastName";
   private static final String EMAIL = "testFirstName";
   private static final String PROVIDER_ID = "testCustomerId";
+  private static final String IDEMPOTENCY_KEY = "testIdempotencyKey";
 
   @Mock private StripeClient stripeClient;
 
   @Mock private CustomerService customerService;
 
+  @Spy private AccountMetrics accountMetrics = new AccountMetrics(new SimpleMeterRegistry());
+
+  @Spy
+  private Bulkhead stripeBulkhead =
+      new Bulkhead(
+          "stripe", 1, Duration.ofMillis(100), new AccountMetrics(new SimpleMeterRegistry()));
+
+  @Spy private RateLimiter stripeRateLimiter = rateLimiter();
+
   @InjectMocks private StripePaymentProvider stripePaymentProvider;
 
   @Test
@@ -42,9 +69,15 @@ class StripePaymentProviderTest {
     Customer customer = buildCustomer();
 
     when(stripeClient.customers()).thenReturn(customerService);
-    when(customerService.create(any(CustomerCreateParams.class))).thenReturn(customer);
+    when(customerService.create(any(CustomerCreateParams.class), any(RequestOptions.class)))
+        .thenReturn(customer);
+
+    Account newAccount = stripePaymentProvider.createAccount(testCreateAccount, IDEMPOTENCY_KEY);
 
-    Account newAccount = stripePaymentProvider.createAccount(testCreateAccount);
+    verify(customerService)
+        .create(
+            any(CustomerCreateParams.class),
+            argThat(options -> IDEMPOTENCY_KEY.equals(options.getIdempotencyKey())));
 
     assertEquals(PROVIDER_ID, newAccount.getProviderId());
     assertEquals(FIRST_NAME, newAccount.getFirstName());
@@ -58,7 +91,7 @@ class StripePaymentProviderTest {
     Customer customer = buildCustomer();
 
     when(stripeClient.customers()).thenReturn(customerService);
-    when(customerService.create(any(CustomerCreateParams.class)))
+    when(customerService.create(any(CustomerCreateParams.class), any(RequestOptions.class)))
         .thenThrow(
             new StripeException("Error occurred", "testRequestId", "401", 401) {
               @Override
@@ -67,7 +100,9 @@ class StripePaymentProviderTest {
               }
             });
 
-    assertThrows(ApiException.class, () -> stripePaymentProvider.createAccount(testCreateAccount));
+    assertThrows(
+        ApiException.class,
+        () -> stripePaymentProvider.createAccount(testCreateAccount, IDEMPOTENCY_KEY));
   }
 
   @ParameterizedTest
@@ -83,12 +118,84 @@ class StripePaymentProviderTest {
     }
 
     when(stripeClient.customers()).thenReturn(customerService);
-    when(customerService.update(any(String.class), any(CustomerUpdateParams.class)))
+    when(customerService.update(
+            any(String.class), any(CustomerUpdateParams.class), any(RequestOptions.class)))
         .thenReturn(buildCustomer());
 
-    stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID);
+    stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID, IDEMPOTENCY_KEY);
+
+    verify(customerService, times(1))
+        .update(
+            any(String.class),
+            any(CustomerUpdateParams.class),
+            argThat(options -> IDEMPOTENCY_KEY.equals(options.getIdempotencyKey())));
+  }
+
+  @Test
+  void testUpdateAccountWithoutChangesSkipsStripe() {
+    stripePaymentProvider.updateAccount(new CreateAccount(), PROVIDER_ID, IDEMPOTENCY_KEY);
+
+    verifyNoInteractions(stripeClient, customerService);
+  }
+
+  @Test
+  void testUpdateAccountSendsOnlyChangedFields() throws StripeException {
+    CreateAccount testCreateAccount = new CreateAccount();
+    testCreateAccount.setFirstName(FIRST_NAME);
+    testCreateAccount.setLastName(LAST_NAME);
+
+    when(stripeClient.customers()).thenReturn(customerService);
+    when(customerService.update(
+            any(String.class), any(CustomerUpdateParams.class), any(RequestOptions.class)))
+        .thenReturn(buildCustomer());
+
+    stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID, IDEMPOTENCY_KEY);
+
+    verify(customerService)
+        .update(
+            eq(PROVIDER_ID),
+            argThat(
+                params ->
+                    (FIRST_NAME + " " + LAST_NAME).equals(params.getName())
+                        && params.getEmail() == null),
+            any(RequestOptions.class));
+  }
+
+  @Test
+  void testUpdateAccountThrottled() throws StripeException {
+    CreateAccount testCreateAccount = new CreateAccount();
+    testCreateAccount.setEmail(EMAIL);
+
+    when(stripeClient.customers()).thenReturn(customerService);
+    when(customerService.update(
+            any(String.class), any(CustomerUpdateParams.class), any(RequestOptions.class)))
+        .thenThrow(new StripeException("Too many requests", "testRequestId", null, 429) {});
+
+    assertThrows(
+        ProviderUnavailableException.class,
+        () -> stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID, IDEMPOTENCY_KEY));
+    verify(stripeRateLimiter).throttled(null);
+  }
+
+  @Test
+  void testUpdateAccountThrottledWithRetryAfter() throws StripeException {
+    CreateAccount testCreateAccount = new CreateAccount();
+    testCreateAccount.setEmail(EMAIL);
 
-    verify(customerService, times(1)).update(any(String.class), any(CustomerUpdateParams.class));
+    when(stripeClient.customers()).thenReturn(customerService);
+    when(customerService.update(
+            any(String.class), any(CustomerUpdateParams.class), any(RequestOptions.class)))
+        .thenThrow(throttled("2"));
+
+    assertThrows(
+        ProviderUnavailableException.class,
+        () -> stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID, IDEMPOTENCY_KEY));
+    verify(stripeRateLimiter).throttled(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void testRetryAfterIgnoresUnreadableHeader() {
+    assertNull(StripePaymentProvider.retryAfter(throttled("Wed, 21 Oct 2015 07:28:00 GMT")));
   }
 
   @Test
@@ -97,7 +204,8 @@ class StripePaymentProviderTest {
     testCreateAccount.setEmail(EMAIL);
 
     when(stripeClient.customers()).thenReturn(customerService);
-    when(customerService.update(any(String.class), any(CustomerUpdateParams.class)))
+    when(customerService.update(
+            any(String.class), any(CustomerUpdateParams.class), any(RequestOptions.class)))
         .thenThrow(
             new StripeException("Error occurred", "testRequestId", "401", 401) {
               @Override
@@ -108,7 +216,64 @@ class StripePaymentProviderTest {
 
     assertThrows(
         ApiException.class,
-        () -> stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID));
+        () -> stripePaymentProvider.updateAccount(testCreateAccount, PROVIDER_ID, IDEMPOTENCY_KEY));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {429, 500, 503})
+  void testTransientProviderErrorIsRetryable(int status) {
+    var e = new StripeException("Error occurred", "testRequestId", null, status) {};
+
+    assertEquals(
+        ProviderUnavailableException.class,
+        StripePaymentProvider.providerError(e, "failed").getClass());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {400, 401, 402, 404})
+  void testRejectedRequestIsNotRetryable(int status) {
+    var e = new StripeException("Error occurred", "testRequestId", null, status) {};
+
+    assertEquals(ApiException.class, StripePaymentProvider.providerError(e, "failed").getClass());
+  }
+
+  @Test
+  void testConnectionFailureIsRetryable() {
+    var e = new StripeException("Connection reset", "testRequestId", null, null) {};
+
+    assertEquals(
+        ProviderUnavailableException.class,
+        StripePaymentProvider.providerError(e, "failed").getClass());
+  }
+
+  private static StripeException throttled(String retryAfter) {
+    var error = new StripeError();
+    error.setLastResponse(
+        new StripeResponse(429, HttpHeaders.of(Map.of("Retry-After", List.of(retryAfter))), "{}"));
+    var e = new StripeException("Too many requests", "testRequestId", null, 429) {};
+    e.setStripeError(error);
+    return e;
+  }
+
+  private static RateLimiter rateLimiter() {
+    var settings =
+        RateLimiter.Settings.builder()
+            .initialRate(100)
+            .minRate(1)
+            .maxRate(100)
+            .burst(100)
+            .increasePerSecond(1)
+            .backoffFactor(0.5)
+            .cooldown(Duration.ofSeconds(1))
+            .maxWait(Duration.ofSeconds(1))
+            .build();
+    var clock = Clock.systemUTC();
+    return new RateLimiter(
+        "stripe",
+        settings,
+        new LocalRateLimitStore(RateLimiter.newBucket("stripe", settings, clock)),
+        new AccountMetrics(new SimpleMeterRegistry()),
+        clock);
   }
 
   private CreateAccount buildCreateAccount() {
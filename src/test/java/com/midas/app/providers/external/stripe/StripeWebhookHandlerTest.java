@@ -0,0 +1,121 @@
+package com.midas.app.providers.external.stripe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.exceptions.InvalidRequestException;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.services.AccountSyncService;
+import com.stripe.net.Webhook;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StripeWebhookHandlerTest {
+  private static final String SECRET = "whsec_test";
+
+  @Mock private AccountSyncService accountSyncService;
+
+  private StripeWebhookHandler stripeWebhookHandler;
+
+  @BeforeEach
+  void setUp() {
+    var stripeConfiguration = new StripeConfiguration();
+    stripeConfiguration.setWebhookSecret(SECRET);
+    stripeWebhookHandler =
+        new StripeWebhookHandler(
+            stripeConfiguration, accountSyncService, new AccountMetrics(new SimpleMeterRegistry()));
+  }
+
+  @Test
+  void testHandleInvalidSignature() {
+    assertThrows(
+        InvalidRequestException.class,
+        () -> stripeWebhookHandler.handle(customerEvent("customer.updated"), "t=1,v1=invalid"));
+  }
+
+  @Test
+  void testHandleAppliesCustomerEvent() throws Exception {
+    var payload = customerEvent("customer.updated");
+
+    stripeWebhookHandler.start();
+    stripeWebhookHandler.handle(payload, sign(payload));
+    stripeWebhookHandler.stop();
+
+    verify(accountSyncService)
+        .applyProviderUpdates(
+            eq("stripe"),
+            argThat(
+                updates -> {
+                  var update = updates.iterator().next();
+                  return updates.size() == 1
+                      && "cus_test".equals(update.getProviderId())
+                      && "first".equals(update.getFirstName())
+                      && "last".equals(update.getLastName())
+                      && "test@midas.com".equals(update.getEmail());
+                }));
+  }
+
+  @Test
+  void testHandleIgnoresOtherEvents() throws Exception {
+    var payload = customerEvent("customer.deleted");
+
+    stripeWebhookHandler.start();
+    stripeWebhookHandler.handle(payload, sign(payload));
+    stripeWebhookHandler.stop();
+
+    verifyNoInteractions(accountSyncService);
+  }
+
+  @Test
+  void testCoalesceKeepsLatestUpdatePerCustomer() {
+    var now = OffsetDateTime.now();
+    List<Account> updates = new ArrayList<>();
+    updates.add(update("cus_1", "old", now));
+    updates.add(update("cus_2", "only", now));
+    updates.add(update("cus_1", "new", now.plusSeconds(1)));
+    updates.add(update("cus_1", "stale", now.minusSeconds(1)));
+
+    var coalesced = List.copyOf(StripeWebhookHandler.coalesce(updates));
+
+    assertEquals(2, coalesced.size());
+    assertEquals("new", coalesced.get(0).getFirstName());
+    assertEquals("only", coalesced.get(1).getFirstName());
+  }
+
+  private static Account update(String providerId, String firstName, OffsetDateTime syncedAt) {
+    return Account.builder()
+        .providerId(providerId)
+        .firstName(firstName)
+        .providerSyncedAt(syncedAt)
+        .build();
+  }
+
+  private static String customerEvent(String type) {
+    return """
+        {"id": "evt_test", "object": "event", "type": "%s", "created": %d,
+         "data": {"object": {"id": "cus_test", "object": "customer", "name": "first last",
+                             "email": "test@midas.com"}}}
+        """
+        .formatted(type, System.currentTimeMillis() / 1000);
+  }
+
+  private static String sign(String payload) throws Exception {
+    long timestamp = System.currentTimeMillis() / 1000;
+    return "t="
+        + timestamp
+        + ",v1="
+        + Webhook.Util.computeHmacSha256(SECRET, timestamp + "." + payload);
+  }
+}
@@ -0,0 +1,64 @@
+package com.midas.app.providers.payment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.metrics.AccountMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BulkheadTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final Bulkhead bulkhead =
+      new Bulkhead("stripe", 1, Duration.ofMillis(50), new AccountMetrics(meterRegistry));
+
+  @Test
+  void testExecuteSuccess() {
+    assertEquals("done", bulkhead.execute(() -> "done"));
+    assertEquals("done", bulkhead.execute(() -> "done"));
+  }
+
+  @Test
+  void testExecuteRejectedWhenSaturated() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> inFlight =
+        CompletableFuture.supplyAsync(
+            () ->
+                bulkhead.execute(
+                    () -> {
+                      started.countDown();
+                      awaitQuietly(release);
+                      return "done";
+                    }));
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+
+    assertThrows(ProviderUnavailableException.class, () -> bulkhead.execute(() -> "rejected"));
+    assertEquals(
+        1,
+        meterRegistry
+            .get("account.provider.bulkhead.wait")
+            .tag("outcome", "rejected")
+            .timer()
+            .count());
+
+    release.countDown();
+    assertEquals("done", inFlight.get(1, TimeUnit.SECONDS));
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
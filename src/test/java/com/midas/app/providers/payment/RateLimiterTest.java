@@ -0,0 +1,113 @@
+package com.midas.app.providers.payment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.RateLimitBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  private static final RateLimiter.Settings SETTINGS =
+      RateLimiter.Settings.builder()
+          .initialRate(10)
+          .minRate(1)
+          .maxRate(20)
+          .burst(2)
+          .increasePerSecond(2)
+          .backoffFactor(0.5)
+          .cooldown(Duration.ofSeconds(1))
+          .maxWait(Duration.ofSeconds(2))
+          .build();
+
+  private final TestClock clock = new TestClock();
+
+  private final RateLimitBucket bucket = RateLimiter.newBucket("stripe", SETTINGS, clock);
+
+  private final RateLimiter rateLimiter =
+      new RateLimiter(
+          "stripe",
+          SETTINGS,
+          new LocalRateLimitStore(bucket),
+          new AccountMetrics(new SimpleMeterRegistry()),
+          clock);
+
+  @Test
+  void testReserveWaitsOnceBurstIsSpent() {
+    assertEquals(0, rateLimiter.reserve(1));
+    assertEquals(0, rateLimiter.reserve(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimiter.reserve(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(200), rateLimiter.reserve(1));
+  }
+
+  @Test
+  void testReserveRejectsBeyondMaxWait() {
+    assertEquals(-1, rateLimiter.reserve(30));
+    assertEquals(2, bucket.getTokens());
+    assertThrows(ProviderUnavailableException.class, () -> rateLimiter.acquire(30));
+  }
+
+  @Test
+  void testRateGrowsWhileCallsWaitForIt() {
+    rateLimiter.reserve(2);
+    clock.advance(Duration.ofMillis(500));
+    rateLimiter.reserve(10);
+
+    assertEquals(11, bucket.getRate());
+  }
+
+  @Test
+  void testRateDoesNotGrowWhenIdle() {
+    clock.advance(Duration.ofMinutes(1));
+    rateLimiter.reserve(1);
+
+    assertEquals(10, bucket.getRate());
+  }
+
+  @Test
+  void testThrottledCutsRateOncePerCooldownAndPauses() {
+    rateLimiter.throttled(null);
+    rateLimiter.throttled(null);
+
+    assertEquals(5, bucket.getRate());
+    assertEquals(Duration.ofSeconds(1).toNanos(), rateLimiter.reserve(1));
+
+    clock.advance(Duration.ofSeconds(1));
+    rateLimiter.throttled(Duration.ofMillis(1500));
+
+    assertEquals(2.5, bucket.getRate());
+    assertEquals(Duration.ofMillis(1500).toNanos(), rateLimiter.reserve(1));
+  }
+
+  private static class TestClock extends Clock {
+    private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
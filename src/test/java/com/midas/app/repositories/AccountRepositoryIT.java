@@ -0,0 +1,51 @@
+package com.midas.app.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.midas.app.models.Account;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * AccountRepositoryIT checks on the Postgres of compose.yaml that emails are unique and looked up
+ * regardless of case, through the lower(email) index of schema.sql.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AccountRepositoryIT {
+
+  @Autowired private AccountRepository accountRepository;
+
+  @Test
+  void testEmailIsUniqueIgnoringCase() {
+    accountRepository.saveAndFlush(buildAccount("Unique.Email@example.com"));
+
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () -> accountRepository.saveAndFlush(buildAccount("unique.email@EXAMPLE.com")));
+  }
+
+  @Test
+  void testFindByEmailIgnoresCase() {
+    var saved = accountRepository.saveAndFlush(buildAccount("Find.Email@example.com"));
+
+    assertEquals(
+        saved.getId(),
+        accountRepository.findByEmail("FIND.EMAIL@example.com").map(Account::getId).orElseThrow());
+  }
+
+  private static Account buildAccount(String email) {
+    return Account.builder()
+        .firstName("John")
+        .lastName("Doe")
+        .email(email)
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .providerId("cus_1")
+        .build();
+  }
+}
@@ -0,0 +1,176 @@
+package com.midas.app.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.midas.app.mappers.Mapper;
+import com.midas.app.models.AccountCursor;
+import com.midas.app.models.AccountSearch;
+import jakarta.persistence.EntityManager;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * AccountViewRepositoryIT checks on the Postgres of compose.yaml that rows are read as the entity
+ * path would map them, and that every search filter is served by its index. Plans are taken on
+ * analyzed data where each filter is selective.
+ */
+@DataJpaTest
+@Import(AccountViewRepository.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AccountViewRepositoryIT {
+
+  private static final int ACCOUNTS = 20_000;
+  private static final OffsetDateTime START = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+
+  @Autowired private EntityManager entityManager;
+
+  @Autowired private AccountRepository accountRepository;
+
+  @Autowired private AccountViewRepository accountViewRepository;
+
+  @BeforeEach
+  void setup() {
+    entityManager
+        .createNativeQuery(
+            "insert into accounts"
+                + " (id, first_name, last_name, email, provider_type, version, created_at)"
+                + " select gen_random_uuid(), 'First' || i, 'Last' || i,"
+                + " 'user' || i || '@example.com', 0, 0, :start + i * interval '1 second'"
+                + " from generate_series(1, :accounts) i")
+        .setParameter("start", START)
+        .setParameter("accounts", ACCOUNTS)
+        .executeUpdate();
+    entityManager.createNativeQuery("analyze accounts").executeUpdate();
+  }
+
+  @Test
+  void testFindPageMapsLikeEntities() {
+    var entities =
+        accountRepository.findFirstPage(PageRequest.ofSize(10)).stream()
+            .map(Mapper::toAccountDto)
+            .toList();
+    var accounts = accountViewRepository.findPage(null, 10);
+
+    assertEquals(entities.size(), accounts.size());
+    for (int i = 0; i < entities.size(); i++) {
+      var expected = entities.get(i);
+      var actual = accounts.get(i);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getFirstName(), actual.getFirstName());
+      assertEquals(expected.getLastName(), actual.getLastName());
+      assertEquals(expected.getEmail(), actual.getEmail());
+      assertEquals(expected.getProviderId(), actual.getProviderId());
+      assertEquals(expected.getProviderType(), actual.getProviderType());
+      assertEquals(expected.getCreatedAt().toInstant(), actual.getCreatedAt().toInstant());
+      assertNull(actual.getUpdatedAt());
+    }
+
+    var next = accountViewRepository.findPage(AccountCursor.of(accounts.getLast()), 1);
+    assertEquals(START.plusSeconds(11).toInstant(), next.getFirst().getCreatedAt().toInstant());
+  }
+
+  @Test
+  void testPageVersionFollowsTheAccountsOfThePage() {
+    var version = accountViewRepository.findPageVersion(null, 11);
+    assertEquals(version, accountViewRepository.findPageVersion(null, 11));
+
+    bumpVersion(12);
+    assertEquals(version, accountViewRepository.findPageVersion(null, 11));
+
+    bumpVersion(11);
+    var changed = accountViewRepository.findPageVersion(null, 11);
+    assertNotEquals(version, changed);
+
+    var cursor = AccountCursor.of(accountViewRepository.findPage(null, 1).getFirst());
+    assertNotEquals(changed, accountViewRepository.findPageVersion(cursor, 11));
+  }
+
+  @Test
+  void testStreamAllReadsEveryAccountInKeysetOrder() {
+    var count = new AtomicInteger();
+    var last = new AtomicReference<OffsetDateTime>();
+    accountViewRepository.streamAll(
+        account -> {
+          count.incrementAndGet();
+          if (last.get() != null) {
+            assertFalse(account.getCreatedAt().isBefore(last.get()));
+          }
+          last.set(account.getCreatedAt());
+        });
+
+    var total = entityManager.createNativeQuery("select count(*) from accounts").getSingleResult();
+    assertEquals(((Number) total).intValue(), count.get());
+  }
+
+  @Test
+  void testEmailPrefixUsesPatternIndex() {
+    assertPlanUses(
+        AccountSearch.builder().email("USER1234").build(), "idx_accounts_email_lower_pattern");
+  }
+
+  @Test
+  void testFirstNamePrefixUsesTrigramIndex() {
+    assertPlanUses(
+        AccountSearch.builder().firstName("first1234").build(), "idx_accounts_first_name_trgm");
+  }
+
+  @Test
+  void testNameUsesBothTrigramIndexes() {
+    assertPlanUses(
+        AccountSearch.builder().name("12345").build(),
+        "idx_accounts_first_name_trgm",
+        "idx_accounts_last_name_trgm");
+  }
+
+  @Test
+  void testCreatedRangeAndCursorUseKeysetIndex() {
+    var createdFrom = START.plusSeconds(ACCOUNTS - 100);
+    assertPlanUses(
+        AccountSearch.builder().createdFrom(createdFrom).build(), "idx_accounts_created_at_id");
+    assertPlanUses(
+        AccountSearch.builder().build(),
+        new AccountCursor(createdFrom, UUID.randomUUID()),
+        "idx_accounts_created_at_id");
+  }
+
+  private void assertPlanUses(AccountSearch search, String... indexes) {
+    assertPlanUses(search, null, indexes);
+  }
+
+  private void assertPlanUses(AccountSearch search, AccountCursor after, String... indexes) {
+    var query = AccountViewRepository.buildSearchQuery(search, after, 21);
+    var explain = entityManager.createNativeQuery("explain " + query.getSql());
+    query.getParameters().forEach(explain::setParameter);
+    @SuppressWarnings("unchecked")
+    List<Object> lines = explain.getResultList();
+    var plan = lines.stream().map(Object::toString).collect(Collectors.joining("\n"));
+
+    for (var index : indexes) {
+      assertTrue(plan.contains(index), () -> "expected " + index + " in plan\n" + plan);
+    }
+    assertFalse(plan.contains("Seq Scan"), () -> "unexpected sequential scan in plan\n" + plan);
+  }
+
+  private void bumpVersion(int account) {
+    entityManager
+        .createNativeQuery(
+            "update accounts set version = version + 1 where created_at = :createdAt")
+        .setParameter("createdAt", START.plusSeconds(account))
+        .executeUpdate();
+  }
+}
@@ -0,0 +1,103 @@
+package com.midas.app.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.midas.app.models.AccountCursor;
+import com.midas.app.models.AccountSearch;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class AccountViewRepositoryTest {
+  private static final String SELECT =
+      "select " + AccountViewRepository.COLUMNS + " from accounts a";
+
+  @Test
+  void testBuildQueryWithoutFilters() {
+    var query = AccountViewRepository.buildSearchQuery(AccountSearch.builder().build(), null, 21);
+
+    assertEquals(SELECT + " order by a.created_at, a.id limit :limit", query.getSql());
+    assertEquals(Map.of("limit", 21), query.getParameters());
+  }
+
+  @Test
+  void testBuildQueryWithFiltersAndCursor() {
+    var createdFrom = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+    var after = new AccountCursor(createdFrom, UUID.randomUUID());
+    var search =
+        AccountSearch.builder()
+            .email("CBing")
+            .firstName("Chan_")
+            .providerType(ProviderTypeEnumDto.STRIPE)
+            .createdFrom(createdFrom)
+            .build();
+
+    var query = AccountViewRepository.buildSearchQuery(search, after, 21);
+
+    assertEquals(
+        SELECT
+            + " where lower(a.email) ~>=~ :emailFrom"
+            + " and lower(a.email) ~<~ :emailTo and lower(a.first_name) like :firstName"
+            + " and a.provider_type = :providerType and a.created_at >= :createdFrom"
+            + " and (a.created_at, a.id) > (:afterCreatedAt, :afterId)"
+            + " order by a.created_at, a.id limit :limit",
+        query.getSql());
+    assertEquals("cbing", query.getParameters().get("emailFrom"));
+    assertEquals("cbinh", query.getParameters().get("emailTo"));
+    assertEquals("chan\\_%", query.getParameters().get("firstName"));
+    assertEquals(ProviderTypeEnumDto.STRIPE.ordinal(), query.getParameters().get("providerType"));
+  }
+
+  @Test
+  void testPrefixUpperBound() {
+    assertEquals("a\uE000", AccountViewRepository.prefixUpperBound("a\uD7FF"));
+    assertNull(
+        AccountViewRepository.prefixUpperBound(
+            "a" + Character.toString(Character.MAX_CODE_POINT)));
+  }
+
+  @Test
+  void testEscapeLike() {
+    assertEquals("50\\%\\_off\\\\", AccountViewRepository.escapeLike("50%_OFF\\"));
+  }
+
+  @Test
+  void testToAccountDto() throws SQLException {
+    var id = UUID.randomUUID();
+    var createdAt = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+    var resultSet = mock(ResultSet.class);
+    when(resultSet.getObject(1, UUID.class)).thenReturn(id);
+    when(resultSet.getString(2)).thenReturn("Chandler");
+    when(resultSet.getString(3)).thenReturn("Bing");
+    when(resultSet.getString(4)).thenReturn("cbing@friends.com");
+    when(resultSet.getString(5)).thenReturn("cus_fhihaewhrYSDyg");
+    when(resultSet.getInt(6)).thenReturn(ProviderTypeEnumDto.STRIPE.ordinal());
+    when(resultSet.getObject(7, OffsetDateTime.class)).thenReturn(createdAt);
+
+    var account = AccountViewRepository.toAccountDto(resultSet, 1);
+
+    assertEquals(id, account.getId());
+    assertEquals("Chandler", account.getFirstName());
+    assertEquals("Bing", account.getLastName());
+    assertEquals("cbing@friends.com", account.getEmail());
+    assertEquals("cus_fhihaewhrYSDyg", account.getProviderId());
+    assertEquals(ProviderTypeEnumDto.STRIPE, account.getProviderType());
+    assertEquals(createdAt, account.getCreatedAt());
+    assertNull(account.getUpdatedAt());
+  }
+
+  @Test
+  void testToAccountDtoWithoutProviderType() throws SQLException {
+    var resultSet = mock(ResultSet.class);
+    when(resultSet.wasNull()).thenReturn(true);
+
+    assertNull(AccountViewRepository.toAccountDto(resultSet, 1).getProviderType());
+  }
+}
@@ -0,0 +1,167 @@
+package com.midas.app.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.config.OutboxConfiguration;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountEvent;
+import com.midas.app.models.AccountEventType;
+import com.midas.app.providers.events.AccountEventSink;
+import com.midas.app.repositories.AccountEventRepository;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class AccountEventServiceImplTest {
+  @Mock private AccountEventRepository accountEventRepository;
+
+  @Mock private AccountEventSink accountEventSink;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final OutboxConfiguration outboxConfiguration = new OutboxConfiguration();
+
+  private AccountEventServiceImpl accountEventService;
+
+  @BeforeEach
+  void setUp() {
+    outboxConfiguration.setBatchSize(2);
+    accountEventService =
+        new AccountEventServiceImpl(
+            accountEventRepository,
+            accountEventSink,
+            new TransactionTemplate(transactionManager),
+            new ObjectMapper().findAndRegisterModules(),
+            new AccountMetrics(meterRegistry),
+            outboxConfiguration);
+  }
+
+  @Test
+  void testRecordWritesAccountAsPayload() {
+    var account =
+        Account.builder()
+            .id(UUID.randomUUID())
+            .firstName("Chandler")
+            .lastName("Bing")
+            .email("cbing@friends.com")
+            .providerType(ProviderTypeEnumDto.STRIPE)
+            .version(3L)
+            .build();
+
+    accountEventService.record(AccountEventType.UPDATED, List.of(account));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<AccountEvent>> events = ArgumentCaptor.forClass(List.class);
+    verify(accountEventRepository).saveAll(events.capture());
+    var event = events.getValue().getFirst();
+    assertEquals(account.getId(), event.getAccountId());
+    assertEquals(AccountEventType.UPDATED, event.getType());
+    assertEquals(3L, event.getAccountVersion());
+    assertTrue(event.getPayload().contains("\"email\":\"cbing@friends.com\""));
+  }
+
+  @Test
+  void testPublishPendingDrainsFullBatches() {
+    var first = List.of(event(1L), event(2L));
+    var second = List.of(event(3L));
+    when(accountEventRepository.lockPending(2)).thenReturn(first, second);
+
+    assertEquals(3, accountEventService.publishPending());
+
+    verify(accountEventSink).publish(first);
+    verify(accountEventSink).publish(second);
+    verify(accountEventRepository).deleteByIds(List.of(1L, 2L));
+    verify(accountEventRepository).deleteByIds(List.of(3L));
+    verify(accountEventRepository, times(2)).lockPending(2);
+    assertEquals(3, meterRegistry.counter("account.events", "outcome", "published").count());
+  }
+
+  @Test
+  void testPublishPendingKeepsEventsWhenSinkFails() {
+    var events = List.of(event(1L));
+    when(accountEventRepository.lockPending(2)).thenReturn(events);
+    doThrow(new IllegalStateException("broker down")).when(accountEventSink).publish(events);
+
+    assertThrows(IllegalStateException.class, () -> accountEventService.publishPending());
+
+    verify(accountEventRepository, never()).deleteByIds(any());
+    verify(transactionManager).rollback(any());
+    assertEquals(1, meterRegistry.counter("account.events", "outcome", "failed").count());
+  }
+
+  @Test
+  void testPublishWithoutSinkKeepsEvents() {
+    accountEventService.publish();
+
+    verifyNoInteractions(accountEventRepository, accountEventSink);
+  }
+
+  @Test
+  void testPublishWithSinkDrainsOutbox() {
+    outboxConfiguration.setSink(OutboxConfiguration.Sink.FILE);
+    var events = List.of(event(1L));
+    when(accountEventRepository.lockPending(2)).thenReturn(events);
+
+    accountEventService.publish();
+
+    verify(accountEventSink).publish(events);
+    verify(accountEventRepository).deleteByIds(List.of(1L));
+  }
+
+  @Test
+  void testCleanUpWithoutSinkDeletesEventsOlderThanRetention() {
+    var before = OffsetDateTime.now().minus(outboxConfiguration.getRetention());
+    when(accountEventRepository.deleteCreatedBefore(any())).thenReturn(2);
+    when(accountEventRepository.count()).thenReturn(5L);
+
+    accountEventService.cleanUp();
+
+    ArgumentCaptor<OffsetDateTime> time = ArgumentCaptor.forClass(OffsetDateTime.class);
+    verify(accountEventRepository).deleteCreatedBefore(time.capture());
+    assertFalse(time.getValue().isBefore(before));
+    assertEquals(2, meterRegistry.counter("account.events", "outcome", "expired").count());
+    assertEquals(5, meterRegistry.get("account.events.pending").gauge().value());
+  }
+
+  @Test
+  void testCleanUpWithSinkKeepsEvents() {
+    outboxConfiguration.setSink(OutboxConfiguration.Sink.FILE);
+    when(accountEventRepository.count()).thenReturn(3L);
+
+    accountEventService.cleanUp();
+
+    verify(accountEventRepository, never()).deleteCreatedBefore(any());
+    assertEquals(3, meterRegistry.get("account.events.pending").gauge().value());
+  }
+
+  private static AccountEvent event(Long id) {
+    return AccountEvent.builder()
+        .id(id)
+        .accountId(UUID.randomUUID())
+        .type(AccountEventType.CREATED)
+        .accountVersion(0L)
+        .payload("{}")
+        .createdAt(OffsetDateTime.now())
+        .build();
+  }
+}
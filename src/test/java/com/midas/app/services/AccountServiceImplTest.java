@@ -0,0 +1,402 @@
+package com.midas.app.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.activities.AccountActivity;
+import com.midas.app.config.WorkflowConfiguration;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.exceptions.ResourceConflictException;
+import com.midas.app.exceptions.ResourceNotFoundException;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountField;
+import com.midas.app.models.AccountOperation;
+import com.midas.app.models.BatchItemResult;
+import com.midas.app.repositories.AccountRepository;
+import com.midas.app.repositories.AccountViewRepository;
+import com.midas.app.workflows.CreateAccountWorkflow;
+import com.midas.app.workflows.CreateAccountWorkflowImpl;
+import com.midas.app.workflows.CreateAccountsBatchWorkflow;
+import com.midas.app.workflows.UpdateAccountWorkflow;
+import com.midas.generated.model.OperationStatusEnumDto;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.enums.v1.EventType;
+import io.temporal.api.enums.v1.RetryState;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowFailedException;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.failure.ApplicationFailure;
+import io.temporal.testing.TestWorkflowEnvironment;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+
+@ExtendWith(MockitoExtension.class)
+class AccountServiceImplTest {
+  private static final UUID ACCOUNT_ID = UUID.randomUUID();
+
+  @Mock private WorkflowClient workflowClient;
+
+  @Mock private AccountRepository accountRepository;
+
+  @Mock private AccountViewRepository accountViewRepository;
+
+  @Mock private IdempotencyService idempotencyService;
+
+  private AccountServiceImpl accountService;
+
+  @BeforeEach
+  void setUp() {
+    accountService =
+        new AccountServiceImpl(
+            workflowClient,
+            accountRepository,
+            accountViewRepository,
+            new AccountMetrics(new SimpleMeterRegistry()),
+            new WorkflowConfiguration(),
+            idempotencyService);
+  }
+
+  @Test
+  void testUpdateExistingAccountObjectReturnsChangedFields() {
+    var existing = buildAccount();
+    var update =
+        Account.builder().firstName("Jane").lastName("").email("JOHN.DOE@example.com").build();
+
+    var changedFields = AccountServiceImpl.updateExistingAccountObject(existing, update);
+
+    assertEquals(Set.of(AccountField.FIRST_NAME), changedFields);
+    assertEquals("Jane", existing.getFirstName());
+    assertEquals("Doe", existing.getLastName());
+    assertEquals("john.doe@example.com", existing.getEmail());
+  }
+
+  @Test
+  void testUpdateExistingAccountObjectChangesEveryField() {
+    var existing = buildAccount();
+    var update =
+        Account.builder().firstName("Jane").lastName("Roe").email("jane.roe@example.com").build();
+
+    var changedFields = AccountServiceImpl.updateExistingAccountObject(existing, update);
+
+    assertEquals(
+        Set.of(AccountField.FIRST_NAME, AccountField.LAST_NAME, AccountField.EMAIL),
+        changedFields);
+    assertEquals("jane.roe@example.com", existing.getEmail());
+  }
+
+  @Test
+  void testUpdateAccountWithoutChangesSkipsWorkflow() {
+    var existing = buildAccount();
+    when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.of(existing));
+
+    var update =
+        Account.builder().id(ACCOUNT_ID).firstName("John").email("John.Doe@example.com").build();
+
+    var account = accountService.updateAccount(update, "key");
+
+    assertEquals(existing, account);
+    verify(idempotencyService, never()).execute(any(), any(), any(), any());
+    verifyNoInteractions(workflowClient);
+  }
+
+  @Test
+  void testRetriedUpdateReplaysStoredResponse() {
+    // the first attempt already renamed the account, the retry finds nothing left to change
+    var existing = buildAccount();
+    existing.setFirstName("Jane");
+    when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.of(existing));
+    var update = Account.builder().id(ACCOUNT_ID).firstName("Jane").build();
+    var stored = existing.toBuilder().version(2L).build();
+    when(idempotencyService.replay(AccountServiceImpl.UPDATE_ACCOUNT_OPERATION, "key", update))
+        .thenReturn(Optional.of(stored));
+
+    var account = accountService.updateAccount(update, "key");
+
+    assertEquals(stored, account);
+    verify(idempotencyService, never()).execute(any(), any(), any(), any());
+    verifyNoInteractions(workflowClient);
+  }
+
+  @Test
+  void testGetCurrentAccountReturnsCachedAccountOfCurrentVersion() {
+    var cached = buildAccount();
+    when(accountRepository.findVersionById(ACCOUNT_ID)).thenReturn(Optional.of(1L));
+    when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.of(cached));
+
+    assertEquals(cached, accountService.getCurrentAccount(ACCOUNT_ID));
+    verify(accountRepository, never()).findCurrentById(any());
+  }
+
+  @Test
+  void testGetCurrentAccountReadsPrimaryWhenCacheIsBehind() {
+    var cached = buildAccount();
+    var current = cached.toBuilder().firstName("Jane").version(2L).build();
+    when(accountRepository.findVersionById(ACCOUNT_ID)).thenReturn(Optional.of(2L));
+    when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.of(cached));
+    when(accountRepository.findCurrentById(ACCOUNT_ID)).thenReturn(Optional.of(current));
+
+    assertEquals(current, accountService.getCurrentAccount(ACCOUNT_ID));
+  }
+
+  @Test
+  void testUpdateAccountConflictIsReportedAsConflict() {
+    when(accountRepository.findById(ACCOUNT_ID)).thenReturn(Optional.of(buildAccount()));
+    when(idempotencyService.execute(
+            eq(AccountServiceImpl.UPDATE_ACCOUNT_OPERATION), eq("key"), any(), any()))
+        .thenThrow(
+            workflowFailure(
+                "UpdateAccountWorkflow",
+                ResourceConflictException.class,
+                "Account was modified concurrently"));
+
+    var e =
+        assertThrows(
+            ResourceConflictException.class,
+            () ->
+                accountService.updateAccount(
+                    Account.builder().id(ACCOUNT_ID).firstName("Jane").build(), "key"));
+
+    assertEquals(HttpStatus.CONFLICT, e.getApiError().getCode());
+    assertEquals("Account was modified concurrently", e.getApiError().getMessage());
+  }
+
+  @Test
+  void testCreateAccountDuplicateEmailIsReportedAsAlreadyExists() {
+    // a concurrent request took the email after the check, the unique index rejected the save
+    when(idempotencyService.execute(
+            eq(AccountServiceImpl.CREATE_ACCOUNT_OPERATION), eq("key"), any(), any()))
+        .thenThrow(
+            workflowFailure(
+                "CreateAccountWorkflow",
+                ResourceAlreadyExistsException.class,
+                "Account with email john.doe@example.com is already present"));
+
+    var e =
+        assertThrows(
+            ResourceAlreadyExistsException.class,
+            () -> accountService.createAccount(buildNewAccount("john.doe@example.com"), "key"));
+
+    assertEquals(HttpStatus.CONFLICT, e.getApiError().getCode());
+    assertEquals(
+        "Account with email john.doe@example.com is already present",
+        e.getApiError().getMessage());
+  }
+
+  @Test
+  void testCreateAccountAsyncRejectsKnownEmail() {
+    when(accountRepository.findByEmail("JOHN.DOE@example.com"))
+        .thenReturn(Optional.of(buildAccount()));
+
+    assertThrows(
+        ResourceAlreadyExistsException.class,
+        () -> accountService.createAccountAsync(buildNewAccount("JOHN.DOE@example.com")));
+    verifyNoInteractions(workflowClient);
+  }
+
+  @Test
+  void testCreateAccountAsyncReportsCreatedAccount() {
+    var accountActivity = mock(AccountActivity.class, withSettings().withoutAnnotations());
+    when(accountActivity.createPaymentAccount(any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(accountActivity.saveAccount(any()))
+        .thenAnswer(
+            invocation -> {
+              Account account = invocation.getArgument(0);
+              account.setId(ACCOUNT_ID);
+              return account;
+            });
+
+    try (var testEnvironment = startCreateAccountWorker(accountActivity)) {
+      var service = serviceOn(testEnvironment);
+      var started = service.createAccountAsync(buildNewAccount("john.doe@example.com"));
+      assertEquals(OperationStatusEnumDto.RUNNING, started.getStatus());
+      awaitOperation(testEnvironment, started.getId());
+
+      var operation = service.getAccountOperation(started.getId());
+
+      assertEquals(started.getId(), operation.getId());
+      assertEquals(OperationStatusEnumDto.SUCCEEDED, operation.getStatus());
+      assertEquals(ACCOUNT_ID, operation.getAccount().getId());
+    }
+  }
+
+  @Test
+  void testCreateAccountAsyncReportsFailureMessage() {
+    var accountActivity = mock(AccountActivity.class, withSettings().withoutAnnotations());
+    when(accountActivity.createPaymentAccount(any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(accountActivity.saveAccount(any()))
+        .thenThrow(
+            new ResourceAlreadyExistsException(
+                "Account with email john.doe@example.com is already present"));
+
+    try (var testEnvironment = startCreateAccountWorker(accountActivity)) {
+      var service = serviceOn(testEnvironment);
+      var started = service.createAccountAsync(buildNewAccount("john.doe@example.com"));
+      awaitOperation(testEnvironment, started.getId());
+
+      var operation = service.getAccountOperation(started.getId());
+
+      assertEquals(OperationStatusEnumDto.FAILED, operation.getStatus());
+      assertEquals(
+          "Account with email john.doe@example.com is already present", operation.getMessage());
+      verify(accountActivity).saveAccount(any());
+    }
+  }
+
+  @Test
+  void testOperationOfAnotherWorkflowIsNotFound() {
+    try (var testEnvironment = TestWorkflowEnvironment.newInstance()) {
+      testEnvironment.start();
+      // no worker polls the queue, so the update stays running
+      var execution =
+          testEnvironment
+              .getWorkflowClient()
+              .newUntypedWorkflowStub(
+                  UpdateAccountWorkflow.class.getSimpleName(),
+                  WorkflowOptions.newBuilder()
+                      .setTaskQueue(UpdateAccountWorkflow.QUEUE_NAME)
+                      .setWorkflowId(ACCOUNT_ID.toString())
+                      .build())
+              .start(buildAccount(), Set.of(AccountField.FIRST_NAME));
+      var service = serviceOn(testEnvironment);
+
+      assertThrows(
+          ResourceNotFoundException.class,
+          () ->
+              service.getAccountOperation(
+                  AccountOperation.encodeId(execution.getWorkflowId(), execution.getRunId())));
+    }
+  }
+
+  @Test
+  void testCreateAccountsRejectsKnownAndRepeatedEmailsBeforeWorkflow() {
+    var john = buildNewAccount("John.Doe@example.com");
+    var jane = buildNewAccount("jane.doe@example.com");
+    var janeAgain = buildNewAccount("JANE.DOE@example.com");
+    var joe = buildNewAccount("joe.doe@example.com");
+    when(accountRepository.findExistingEmails(
+            List.of(
+                "john.doe@example.com",
+                "jane.doe@example.com",
+                "jane.doe@example.com",
+                "joe.doe@example.com")))
+        .thenReturn(List.of("john.doe@example.com"));
+    var workflow = mock(CreateAccountsBatchWorkflow.class);
+    var options = ArgumentCaptor.forClass(WorkflowOptions.class);
+    when(workflowClient.newWorkflowStub(eq(CreateAccountsBatchWorkflow.class), options.capture()))
+        .thenReturn(workflow);
+    when(workflow.createAccounts(List.of(jane, joe)))
+        .thenReturn(
+            List.of(BatchItemResult.succeeded(0, jane), BatchItemResult.failed(1, "provider")));
+
+    var results = accountService.createAccounts(List.of(john, jane, janeAgain, joe));
+
+    assertEquals(4, results.size());
+    assertEquals(
+        "Account with email John.Doe@example.com is already present",
+        results.get(0).getMessage());
+    assertEquals(jane, results.get(1).getAccount());
+    assertEquals(
+        "Account with email JANE.DOE@example.com is already present",
+        results.get(2).getMessage());
+    assertEquals(3, results.get(3).getIndex());
+    assertEquals("provider", results.get(3).getMessage());
+    // a retry of the workflow would create the payment accounts again
+    assertEquals(1, options.getValue().getRetryOptions().getMaximumAttempts());
+  }
+
+  @Test
+  void testCreateAccountsWithOnlyKnownEmailsSkipsWorkflow() {
+    when(accountRepository.findExistingEmails(List.of("john.doe@example.com")))
+        .thenReturn(List.of("john.doe@example.com"));
+
+    var results = accountService.createAccounts(List.of(buildNewAccount("john.doe@example.com")));
+
+    assertFalse(results.get(0).isSucceeded());
+    verifyNoInteractions(workflowClient);
+  }
+
+  /** startCreateAccountWorker runs CreateAccountWorkflowImpl on the given activities. */
+  private static TestWorkflowEnvironment startCreateAccountWorker(AccountActivity activity) {
+    var testEnvironment = TestWorkflowEnvironment.newInstance();
+    var worker = testEnvironment.newWorker(CreateAccountWorkflow.QUEUE_NAME);
+    worker.registerWorkflowImplementationTypes(CreateAccountWorkflowImpl.class);
+    worker.registerActivitiesImplementations(activity);
+    testEnvironment.start();
+    return testEnvironment;
+  }
+
+  /** serviceOn builds the service on the client of a test environment. */
+  private AccountServiceImpl serviceOn(TestWorkflowEnvironment testEnvironment) {
+    return new AccountServiceImpl(
+        testEnvironment.getWorkflowClient(),
+        accountRepository,
+        accountViewRepository,
+        new AccountMetrics(new SimpleMeterRegistry()),
+        new WorkflowConfiguration(),
+        idempotencyService);
+  }
+
+  /** awaitOperation waits for the workflow of an operation to complete, whatever its outcome. */
+  private static void awaitOperation(TestWorkflowEnvironment testEnvironment, String operationId) {
+    var ids = AccountOperation.decodeId(operationId);
+    var workflow =
+        testEnvironment
+            .getWorkflowClient()
+            .newUntypedWorkflowStub(ids[0], Optional.of(ids[1]), Optional.empty());
+    try {
+      workflow.getResult(Account.class);
+    } catch (WorkflowFailedException e) {
+      // reported by the operation
+    }
+  }
+
+  private static WorkflowFailedException workflowFailure(
+      String workflowType, Class<? extends Exception> type, String message) {
+    return new WorkflowFailedException(
+        WorkflowExecution.newBuilder().setWorkflowId(ACCOUNT_ID.toString()).build(),
+        workflowType,
+        EventType.EVENT_TYPE_WORKFLOW_EXECUTION_FAILED,
+        0,
+        RetryState.RETRY_STATE_NON_RETRYABLE_FAILURE,
+        ApplicationFailure.newNonRetryableFailure(message, type.getName()));
+  }
+
+  private static Account buildNewAccount(String email) {
+    return Account.builder()
+        .firstName("John")
+        .lastName("Doe")
+        .email(email)
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .build();
+  }
+
+  private static Account buildAccount() {
+    return Account.builder()
+        .id(ACCOUNT_ID)
+        .firstName("John")
+        .lastName("Doe")
+        .email("john.doe@example.com")
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .providerId("cus_1")
+        .version(1L)
+        .build();
+  }
+}
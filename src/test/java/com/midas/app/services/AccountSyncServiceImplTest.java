@@ -0,0 +1,156 @@
+package com.midas.app.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.config.CacheConfiguration;
+import com.midas.app.metrics.AccountMetrics;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountEventType;
+import com.midas.app.repositories.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class AccountSyncServiceImplTest {
+  private static final String PROVIDER = "stripe";
+
+  /** SYNCED_AT is the second of our own write to the provider */
+  private static final OffsetDateTime SYNCED_AT = OffsetDateTime.parse("2024-01-01T10:00:00Z");
+
+  @Mock private AccountRepository accountRepository;
+
+  @Mock private AccountEventService accountEventService;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private AccountSyncServiceImpl accountSyncService;
+
+  @BeforeEach
+  void setUp() {
+    accountSyncService =
+        new AccountSyncServiceImpl(
+            accountRepository,
+            new ConcurrentMapCacheManager(
+                CacheConfiguration.ACCOUNTS_BY_ID, CacheConfiguration.ACCOUNTS_BY_EMAIL),
+            new AccountMetrics(meterRegistry),
+            accountEventService);
+    TransactionSynchronizationManager.initSynchronization();
+  }
+
+  @AfterEach
+  void tearDown() {
+    TransactionSynchronizationManager.clearSynchronization();
+  }
+
+  @Test
+  void testDashboardEditInSameSecondAsOwnWriteIsApplied() {
+    // the dashboard edit lands after our write, within the second it was stamped with
+    var account = buildAccount();
+    var update = buildUpdate("john.dashboard@example.com", SYNCED_AT);
+    when(accountRepository.findByProviderIdIn(any())).thenReturn(List.of(account));
+
+    accountSyncService.applyProviderUpdates(PROVIDER, List.of(update));
+
+    assertEquals("john.dashboard@example.com", account.getEmail());
+    verify(accountRepository).flush();
+    verify(accountEventService).record(AccountEventType.UPDATED, List.of(account));
+    assertEquals(1, providerEvents("applied"));
+  }
+
+  @Test
+  void testLaterDashboardEditIsApplied() {
+    var account = buildAccount();
+    var update = buildUpdate("john.dashboard@example.com", SYNCED_AT.plusSeconds(1));
+    when(accountRepository.findByProviderIdIn(any())).thenReturn(List.of(account));
+
+    accountSyncService.applyProviderUpdates(PROVIDER, List.of(update));
+
+    assertEquals("john.dashboard@example.com", account.getEmail());
+    assertEquals(SYNCED_AT.plusSeconds(1), account.getProviderSyncedAt());
+  }
+
+  @Test
+  void testEditBeforeOwnWriteIsStale() {
+    var account = buildAccount();
+    var update = buildUpdate("john.old@example.com", SYNCED_AT.minusSeconds(1));
+    when(accountRepository.findByProviderIdIn(any())).thenReturn(List.of(account));
+
+    accountSyncService.applyProviderUpdates(PROVIDER, List.of(update));
+
+    assertEquals("john.doe@example.com", account.getEmail());
+    verifyNoInteractions(accountEventService);
+    assertEquals(1, providerEvents("stale"));
+  }
+
+  @Test
+  void testEventOfOwnWriteChangesNothing() {
+    var account = buildAccount();
+    var update = buildUpdate("john.doe@example.com", SYNCED_AT);
+    when(accountRepository.findByProviderIdIn(any())).thenReturn(List.of(account));
+
+    accountSyncService.applyProviderUpdates(PROVIDER, List.of(update));
+
+    assertEquals(SYNCED_AT, account.getProviderSyncedAt());
+    verify(accountRepository, never()).flush();
+    verifyNoInteractions(accountEventService);
+    assertEquals(1, providerEvents("unchanged"));
+  }
+
+  @Test
+  void testChanges() {
+    var account = buildAccount();
+
+    assertFalse(AccountSyncServiceImpl.changes(account, Account.builder().build()));
+    assertFalse(
+        AccountSyncServiceImpl.changes(
+            account, Account.builder().firstName("John").lastName("Doe").build()));
+    assertTrue(
+        AccountSyncServiceImpl.changes(
+            account, Account.builder().firstName("John").lastName("Roe").build()));
+    assertTrue(
+        AccountSyncServiceImpl.changes(
+            account, Account.builder().email("john.roe@example.com").build()));
+  }
+
+  private double providerEvents(String outcome) {
+    return meterRegistry
+        .counter("account.provider.events", "provider", PROVIDER, "outcome", outcome)
+        .count();
+  }
+
+  private static Account buildAccount() {
+    return Account.builder()
+        .id(UUID.randomUUID())
+        .firstName("John")
+        .lastName("Doe")
+        .email("john.doe@example.com")
+        .providerId("cus_1")
+        .providerSyncedAt(SYNCED_AT)
+        .version(1L)
+        .build();
+  }
+
+  private static Account buildUpdate(String email, OffsetDateTime syncedAt) {
+    return Account.builder()
+        .firstName("John")
+        .lastName("Doe")
+        .email(email)
+        .providerId("cus_1")
+        .providerSyncedAt(syncedAt)
+        .build();
+  }
+}
@@ -0,0 +1,280 @@
+package com.midas.app.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midas.app.config.IdempotencyConfiguration;
+import com.midas.app.exceptions.InvalidRequestException;
+import com.midas.app.exceptions.ResourceAlreadyExistsException;
+import com.midas.app.models.Account;
+import com.midas.app.models.IdempotencyKey;
+import com.midas.app.repositories.IdempotencyKeyRepository;
+import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.enums.v1.EventType;
+import io.temporal.api.enums.v1.RetryState;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowFailedException;
+import io.temporal.client.WorkflowStub;
+import io.temporal.failure.ApplicationFailure;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+  private static final String OPERATION = "createAccount";
+  private static final String KEY = "testKey";
+
+  @Mock private IdempotencyKeyRepository idempotencyKeyRepository;
+
+  @Mock private WorkflowClient workflowClient;
+
+  @Mock private WorkflowStub workflowStub;
+
+  @Mock private Supplier<WorkflowStub> start;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private IdempotencyServiceImpl idempotencyService;
+
+  @BeforeEach
+  void setUp() {
+    idempotencyService =
+        new IdempotencyServiceImpl(
+            idempotencyKeyRepository, workflowClient, objectMapper, new IdempotencyConfiguration());
+  }
+
+  @Test
+  void testExecuteWithoutKey() {
+    var account = buildAccount();
+    when(start.get()).thenReturn(workflowStub);
+    when(workflowStub.getResult(Account.class)).thenReturn(account);
+
+    assertEquals(account, idempotencyService.execute(OPERATION, null, account, start));
+    verifyNoInteractions(idempotencyKeyRepository);
+  }
+
+  @Test
+  void testExecuteFirstRequestStoresResponse() throws Exception {
+    var account = buildAccount();
+    when(idempotencyKeyRepository.insertIfAbsent(anyString(), anyString(), any(), any()))
+        .thenReturn(1);
+    when(start.get()).thenReturn(workflowStub);
+    when(workflowStub.getExecution())
+        .thenReturn(WorkflowExecution.newBuilder().setWorkflowId("wf").setRunId("run").build());
+    when(workflowStub.getResult(Account.class)).thenReturn(account);
+
+    assertEquals(account, idempotencyService.execute(OPERATION, KEY, account, start));
+    verify(idempotencyKeyRepository).updateExecution(OPERATION + ":" + KEY, "wf", "run");
+    verify(idempotencyKeyRepository)
+        .complete(OPERATION + ":" + KEY, objectMapper.writeValueAsString(account));
+  }
+
+  @Test
+  void testExecuteFirstRequestFailureReleasesKey() {
+    when(idempotencyKeyRepository.insertIfAbsent(anyString(), anyString(), any(), any()))
+        .thenReturn(1);
+    when(start.get()).thenThrow(new IllegalStateException("failed"));
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> idempotencyService.execute(OPERATION, KEY, buildAccount(), start));
+    verify(idempotencyKeyRepository).deleteById(OPERATION + ":" + KEY);
+  }
+
+  @Test
+  void testExecuteFirstRequestWorkflowFailureReleasesKey() {
+    startWorkflow();
+    when(workflowStub.getResult(Account.class))
+        .thenThrow(
+            new WorkflowFailedException(
+                WorkflowExecution.newBuilder().setWorkflowId("wf").setRunId("run").build(),
+                "CreateAccountWorkflow",
+                EventType.EVENT_TYPE_WORKFLOW_EXECUTION_FAILED,
+                0,
+                RetryState.RETRY_STATE_NON_RETRYABLE_FAILURE,
+                ApplicationFailure.newNonRetryableFailure("failed", "type")));
+
+    assertThrows(
+        WorkflowFailedException.class,
+        () -> idempotencyService.execute(OPERATION, KEY, buildAccount(), start));
+    verify(idempotencyKeyRepository).deleteById(OPERATION + ":" + KEY);
+  }
+
+  @Test
+  void testExecuteFirstRequestKeepsKeyOfRunningWorkflow() {
+    startWorkflow();
+    // the request gave up waiting, the workflow goes on and retries attach to it
+    when(workflowStub.getResult(Account.class))
+        .thenThrow(new IllegalStateException("Interrupted while waiting"));
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> idempotencyService.execute(OPERATION, KEY, buildAccount(), start));
+    verify(idempotencyKeyRepository).updateExecution(OPERATION + ":" + KEY, "wf", "run");
+    verify(idempotencyKeyRepository, never()).deleteById(any());
+  }
+
+  @Test
+  void testExecuteDuplicateReplaysResponse() throws Exception {
+    var account = buildAccount();
+    var first = executeFirst(account);
+    first.setResponse(objectMapper.writeValueAsString(account));
+
+    assertEquals(account, idempotencyService.execute(OPERATION, KEY, account, start));
+    verifyNoInteractions(start);
+  }
+
+  @Test
+  void testExecuteDuplicateAttachesToRunningWorkflow() {
+    var account = buildAccount();
+    var first = executeFirst(account);
+    first.setWorkflowId("wf");
+    first.setRunId("run");
+    when(workflowClient.newUntypedWorkflowStub(
+            eq("wf"), eq(Optional.of("run")), eq(Optional.empty())))
+        .thenReturn(workflowStub);
+    when(workflowStub.getResult(Account.class)).thenReturn(account);
+
+    assertEquals(account, idempotencyService.execute(OPERATION, KEY, account, start));
+    verifyNoInteractions(start);
+  }
+
+  @Test
+  void testExecuteKeyReusedForDifferentRequest() {
+    executeFirst(buildAccount());
+
+    var other = buildAccount();
+    other.setEmail("other@midas.com");
+    assertThrows(
+        InvalidRequestException.class,
+        () -> idempotencyService.execute(OPERATION, KEY, other, start));
+  }
+
+  @Test
+  void testExecuteExpiredKeyIsNotReplayed() throws Exception {
+    var account = buildAccount();
+    var expired =
+        IdempotencyKey.builder()
+            .id(OPERATION + ":" + KEY)
+            .requestHash("other")
+            .response(objectMapper.writeValueAsString(buildAccount()))
+            .expiresAt(OffsetDateTime.now().minusMinutes(1))
+            .build();
+    // the key is found expired, then claimed again by the next insert
+    when(idempotencyKeyRepository.insertIfAbsent(anyString(), anyString(), any(), any()))
+        .thenReturn(0, 1);
+    when(idempotencyKeyRepository.findById(OPERATION + ":" + KEY)).thenReturn(Optional.of(expired));
+    when(start.get()).thenReturn(workflowStub);
+    when(workflowStub.getExecution())
+        .thenReturn(WorkflowExecution.newBuilder().setWorkflowId("wf").setRunId("run").build());
+    when(workflowStub.getResult(Account.class)).thenReturn(account);
+
+    assertEquals(account, idempotencyService.execute(OPERATION, KEY, account, start));
+    verify(start).get();
+  }
+
+  @Test
+  void testExecuteDuplicateGivesUpAfterAttachTimeout() {
+    executeFirst(buildAccount());
+    var configuration = new IdempotencyConfiguration();
+    configuration.setAttachTimeout(Duration.ofMillis(200));
+    idempotencyService =
+        new IdempotencyServiceImpl(
+            idempotencyKeyRepository, workflowClient, objectMapper, configuration);
+
+    assertThrows(
+        ResourceAlreadyExistsException.class,
+        () -> idempotencyService.execute(OPERATION, KEY, buildAccount(), start));
+    // waits of 50, 100 and the remaining 50ms, where a fixed 50ms poll reads the key 5 times
+    verify(idempotencyKeyRepository, atMost(4)).findById(OPERATION + ":" + KEY);
+    verifyNoInteractions(start);
+  }
+
+  @Test
+  void testReplayReturnsStoredResponse() throws Exception {
+    var account = buildAccount();
+    var first = storedKey(account);
+    first.setResponse(objectMapper.writeValueAsString(account));
+
+    assertEquals(Optional.of(account), idempotencyService.replay(OPERATION, KEY, account));
+  }
+
+  @Test
+  void testReplayWithoutKeyOrExecutionIsEmpty() {
+    var account = buildAccount();
+    assertEquals(Optional.empty(), idempotencyService.replay(OPERATION, null, account));
+
+    when(idempotencyKeyRepository.findById(OPERATION + ":" + KEY)).thenReturn(Optional.empty());
+    assertEquals(Optional.empty(), idempotencyService.replay(OPERATION, KEY, account));
+  }
+
+  @Test
+  void testReplayRejectsKeyReusedForDifferentRequest() {
+    storedKey(buildAccount());
+
+    var other = buildAccount();
+    other.setEmail("other@midas.com");
+    assertThrows(
+        InvalidRequestException.class, () -> idempotencyService.replay(OPERATION, KEY, other));
+  }
+
+  @Test
+  void testNextPollIntervalDoublesUpToMax() {
+    var interval = IdempotencyServiceImpl.ATTACH_POLL_MIN_INTERVAL;
+    assertEquals(Duration.ofMillis(100), IdempotencyServiceImpl.nextPollInterval(interval));
+    for (int i = 0; i < 10; i++) {
+      interval = IdempotencyServiceImpl.nextPollInterval(interval);
+    }
+    assertEquals(IdempotencyServiceImpl.ATTACH_POLL_MAX_INTERVAL, interval);
+  }
+
+  /** startWorkflow stubs a first request that claims the key and starts its workflow. */
+  private void startWorkflow() {
+    when(idempotencyKeyRepository.insertIfAbsent(anyString(), anyString(), any(), any()))
+        .thenReturn(1);
+    when(start.get()).thenReturn(workflowStub);
+    when(workflowStub.getExecution())
+        .thenReturn(WorkflowExecution.newBuilder().setWorkflowId("wf").setRunId("run").build());
+  }
+
+  /** executeFirst stubs the key recorded by a first request with account. */
+  private IdempotencyKey executeFirst(Account account) {
+    when(idempotencyKeyRepository.insertIfAbsent(anyString(), anyString(), any(), any()))
+        .thenReturn(0);
+    return storedKey(account);
+  }
+
+  /** storedKey stubs the lookup of the key recorded by a first request with account. */
+  private IdempotencyKey storedKey(Account account) {
+    var first =
+        IdempotencyKey.builder()
+            .id(OPERATION + ":" + KEY)
+            .requestHash(idempotencyService.hash(account))
+            .expiresAt(OffsetDateTime.now().plusHours(1))
+            .build();
+    when(idempotencyKeyRepository.findById(OPERATION + ":" + KEY)).thenReturn(Optional.of(first));
+    return first;
+  }
+
+  private static Account buildAccount() {
+    return Account.builder()
+        .id(UUID.fromString("5f0e9a3c-1b3e-4c1e-9d1a-2b3c4d5e6f70"))
+        .firstName("testFirstName")
+        .lastName("testLastName")
+        .email("test@midas.com")
+        .build();
+  }
+}
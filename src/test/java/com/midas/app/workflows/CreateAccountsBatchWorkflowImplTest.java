@@ -0,0 +1,154 @@
+package com.midas.app.workflows;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.activities.AccountActivity;
+import com.midas.app.exceptions.ApiException;
+import com.midas.app.exceptions.ProviderUnavailableException;
+import com.midas.app.models.Account;
+import com.midas.app.models.BatchItemResult;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.http.HttpStatus;
+
+class CreateAccountsBatchWorkflowImplTest {
+  private final AccountActivity accountActivity =
+      mock(AccountActivity.class, withSettings().withoutAnnotations());
+
+  private TestWorkflowEnvironment testEnvironment;
+
+  @BeforeEach
+  void setUp() {
+    testEnvironment = TestWorkflowEnvironment.newInstance();
+    Worker worker = testEnvironment.newWorker(CreateAccountsBatchWorkflow.QUEUE_NAME);
+    worker.registerWorkflowImplementationTypes(CreateAccountsBatchWorkflowImpl.class);
+    worker.registerActivitiesImplementations(accountActivity);
+    testEnvironment.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    testEnvironment.close();
+  }
+
+  @Test
+  void testProviderFailureFailsOnlyItsItem() {
+    when(accountActivity.createPaymentAccount(any()))
+        .thenAnswer(
+            invocation -> {
+              Account account = invocation.getArgument(0);
+              if (account.getEmail().startsWith("jane")) {
+                throw new ApiException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, "Could not create customer at provider");
+              }
+              account.setProviderId("cus_" + account.getFirstName());
+              return account;
+            });
+    when(accountActivity.saveAccounts(any())).thenAnswer(invocation -> saved(invocation));
+
+    var results = newWorkflow().createAccounts(batch());
+
+    assertEquals(3, results.size());
+    assertResult(results.get(0), 0, "john@example.com");
+    assertEquals(1, results.get(1).getIndex());
+    assertFalse(results.get(1).isSucceeded());
+    assertEquals("Could not create customer at provider", results.get(1).getMessage());
+    assertResult(results.get(2), 2, "joe@example.com");
+    // the request rejected by the provider is not retried, and the failed item is never saved
+    verify(accountActivity, times(3)).createPaymentAccount(any());
+    verify(accountActivity).saveAccounts(argThat(accounts -> accounts.size() == 2));
+  }
+
+  @Test
+  void testUnavailableProviderIsRetried() {
+    var attempts = new AtomicInteger();
+    when(accountActivity.createPaymentAccount(any()))
+        .thenAnswer(
+            invocation -> {
+              Account account = invocation.getArgument(0);
+              if (account.getEmail().startsWith("jane") && attempts.incrementAndGet() < 3) {
+                throw new ProviderUnavailableException("Stripe answered 429");
+              }
+              return account;
+            });
+    when(accountActivity.saveAccounts(any())).thenAnswer(invocation -> saved(invocation));
+
+    var results = newWorkflow().createAccounts(batch());
+
+    assertResult(results.get(1), 1, "jane@example.com");
+    assertEquals(3, attempts.get());
+    verify(accountActivity).saveAccounts(argThat(accounts -> accounts.size() == 3));
+  }
+
+  @Test
+  void testSaveFailureIsReportedAtItsItem() {
+    when(accountActivity.createPaymentAccount(any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(accountActivity.saveAccounts(any()))
+        .thenAnswer(
+            invocation -> {
+              var results = saved(invocation);
+              results.set(1, BatchItemResult.failed(1, "Account is already present"));
+              return results;
+            });
+
+    var results = newWorkflow().createAccounts(batch());
+
+    assertResult(results.get(0), 0, "john@example.com");
+    assertEquals(1, results.get(1).getIndex());
+    assertEquals("Account is already present", results.get(1).getMessage());
+    assertResult(results.get(2), 2, "joe@example.com");
+  }
+
+  private CreateAccountsBatchWorkflow newWorkflow() {
+    return testEnvironment
+        .getWorkflowClient()
+        .newWorkflowStub(
+            CreateAccountsBatchWorkflow.class,
+            WorkflowOptions.newBuilder()
+                .setTaskQueue(CreateAccountsBatchWorkflow.QUEUE_NAME)
+                .build());
+  }
+
+  private static List<Account> batch() {
+    return List.of(buildAccount("john"), buildAccount("jane"), buildAccount("joe"));
+  }
+
+  private static List<BatchItemResult> saved(InvocationOnMock invocation) {
+    List<Account> accounts = invocation.getArgument(0);
+    List<BatchItemResult> results = new ArrayList<>();
+    for (int i = 0; i < accounts.size(); i++) {
+      results.add(BatchItemResult.succeeded(i, accounts.get(i)));
+    }
+    return results;
+  }
+
+  private static void assertResult(BatchItemResult result, int index, String email) {
+    assertEquals(index, result.getIndex());
+    assertTrue(result.isSucceeded());
+    assertEquals(email, result.getAccount().getEmail());
+  }
+
+  private static Account buildAccount(String name) {
+    return Account.builder()
+        .firstName(name)
+        .lastName("Doe")
+        .email(name + "@example.com")
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .build();
+  }
+}
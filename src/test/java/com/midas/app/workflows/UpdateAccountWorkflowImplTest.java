@@ -0,0 +1,99 @@
+package com.midas.app.workflows;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.midas.app.activities.AccountActivity;
+import com.midas.app.exceptions.ResourceConflictException;
+import com.midas.app.models.Account;
+import com.midas.app.models.AccountField;
+import com.midas.generated.model.ProviderTypeEnumDto;
+import io.temporal.client.WorkflowFailedException;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.failure.ApplicationFailure;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UpdateAccountWorkflowImplTest {
+  private final AccountActivity accountActivity =
+      mock(AccountActivity.class, withSettings().withoutAnnotations());
+
+  private TestWorkflowEnvironment testEnvironment;
+
+  private Worker worker;
+
+  @BeforeEach
+  void setUp() {
+    testEnvironment = TestWorkflowEnvironment.newInstance();
+    worker = testEnvironment.newWorker(UpdateAccountWorkflow.QUEUE_NAME);
+    worker.registerWorkflowImplementationTypes(UpdateAccountWorkflowImpl.class);
+    worker.registerActivitiesImplementations(accountActivity);
+    testEnvironment.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    testEnvironment.close();
+  }
+
+  @Test
+  void testUpdateChecksVersionBeforeProvider() {
+    var account = buildAccount();
+    when(accountActivity.saveAccount(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    var updated = newWorkflow().updateAccount(account, Set.of(AccountField.EMAIL));
+
+    assertEquals(account.getId(), updated.getId());
+    var inOrder = inOrder(accountActivity);
+    inOrder.verify(accountActivity).checkAccountVersion(any());
+    inOrder.verify(accountActivity).updatePaymentAccount(any(), any());
+    inOrder.verify(accountActivity).saveAccount(any());
+  }
+
+  @Test
+  void testStaleUpdateNeverReachesProvider() {
+    doThrow(new ResourceConflictException("Account was modified concurrently"))
+        .when(accountActivity)
+        .checkAccountVersion(any());
+    var workflow = newWorkflow();
+    var account = buildAccount();
+
+    var e =
+        assertThrows(
+            WorkflowFailedException.class,
+            () -> workflow.updateAccount(account, Set.of(AccountField.EMAIL)));
+
+    var failure = (ApplicationFailure) e.getCause();
+    assertEquals(ResourceConflictException.class.getName(), failure.getType());
+    verify(accountActivity).checkAccountVersion(any());
+    verify(accountActivity, never()).updatePaymentAccount(any(), any());
+    verify(accountActivity, never()).saveAccount(any());
+  }
+
+  private UpdateAccountWorkflow newWorkflow() {
+    return testEnvironment
+        .getWorkflowClient()
+        .newWorkflowStub(
+            UpdateAccountWorkflow.class,
+            WorkflowOptions.newBuilder().setTaskQueue(UpdateAccountWorkflow.QUEUE_NAME).build());
+  }
+
+  private static Account buildAccount() {
+    return Account.builder()
+        .id(UUID.randomUUID())
+        .firstName("John")
+        .lastName("Doe")
+        .email("john.doe@example.com")
+        .providerType(ProviderTypeEnumDto.STRIPE)
+        .providerId("cus_1")
+        .version(1L)
+        .build();
+  }
+}